@@ -43,6 +43,9 @@ import io.vertx.core.json.JsonArray;
 import java.util.List;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.guides.wiki.database.SqlQuery;
+import io.vertx.guides.wiki.database.PageNameFilter;
+import io.vertx.guides.wiki.markdown.MarkdownRenderPool;
+import java.io.File;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import java.util.HashMap;
@@ -137,14 +140,46 @@ public class WikiDatabaseServiceVertxProxyHandler extends ProxyHandler {
           service.savePage(json.getValue("id") == null ? null : (json.getLong("id").intValue()), (java.lang.String)json.getValue("markdown"), createHandler(msg));
           break;
         }
+        case "patchPage": {
+          service.patchPage(json.getValue("id") == null ? null : (json.getLong("id").intValue()), json.getValue("baseRevision") == null ? null : (json.getLong("baseRevision").intValue()), (io.vertx.core.json.JsonArray)json.getValue("edits"), createHandler(msg));
+          break;
+        }
         case "deletePage": {
           service.deletePage(json.getValue("id") == null ? null : (json.getLong("id").intValue()), createHandler(msg));
           break;
         }
+        case "fetchPageName": {
+          service.fetchPageName(json.getValue("id") == null ? null : (json.getLong("id").intValue()), createHandler(msg));
+          break;
+        }
         case "fetchAllPagesData": {
           service.fetchAllPagesData(createListHandler(msg));
           break;
         }
+        case "fetchExistingPages": {
+          service.fetchExistingPages(convertList(json.getJsonArray("names").getList()), createListHandler(msg));
+          break;
+        }
+        case "fetchPagesAfter": {
+          service.fetchPagesAfter(json.getValue("afterId") == null ? null : (json.getLong("afterId").intValue()), json.getValue("limit") == null ? null : (json.getLong("limit").intValue()), createListHandler(msg));
+          break;
+        }
+        case "importPages": {
+          service.importPages((io.vertx.core.json.JsonArray)json.getValue("pages"), createHandler(msg));
+          break;
+        }
+        case "fetchRecentChanges": {
+          service.fetchRecentChanges(json.getValue("limit") == null ? null : (json.getLong("limit").intValue()), createHandler(msg));
+          break;
+        }
+        case "fetchBacklinks": {
+          service.fetchBacklinks((java.lang.String)json.getValue("name"), createListHandler(msg));
+          break;
+        }
+        case "fetchOrphanedPages": {
+          service.fetchOrphanedPages(createListHandler(msg));
+          break;
+        }
 
 
         default: {
@@ -1,31 +1,177 @@
 package io.vertx.guides.wiki;
 
 import io.vertx.core.*;
+import io.vertx.ext.web.client.WebClient;
 import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+import io.vertx.guides.wiki.http.HotSetSnapshot;
+import io.vertx.guides.wiki.http.HttpServerVerticle;
+import io.vertx.guides.wiki.http.RenderedPageCache;
+import io.vertx.guides.wiki.markdown.MarkdownRenderer;
+import io.vertx.guides.wiki.markdown.WikiLinks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class MainVerticle extends AbstractVerticle {
+    public static final String CONFIG_WARMUP_SNAPSHOT_FILE = "warmup.snapshot.file";
+    public static final String CONFIG_WARMUP_SNAPSHOT_INTERVAL = "warmup.snapshot.interval_ms";
+    public static final String CONFIG_WARMUP_SNAPSHOT_SIZE = "warmup.snapshot.size";
+    public static final String CONFIG_WARMUP_BUDGET = "warmup.budget_ms";
+    public static final String CONFIG_WARMUP_REQUESTS = "warmup.requests";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MainVerticle.class);
 
     @Override
     public void start(Future<Void> startFuture) throws Exception {
+        long startedAt = System.nanoTime();
+        long deadline = System.currentTimeMillis() + config().getLong(CONFIG_WARMUP_BUDGET, 5000L);
+        File snapshotFile = new File(config().getString(CONFIG_WARMUP_SNAPSHOT_FILE, "db/hot-set.snapshot"));
+        RenderedPageCache renderedPages = RenderedPageCache.shared(vertx);
+
+        /*
+         * The hot set recorded by the previous run prefills the rendered page cache, so that the most requested pages
+         * are served without rendering right after a restart.
+         */
+        Future<List<String[]>> snapshotLoading = Future.future();
+        vertx.<List<String[]>>executeBlocking(future -> {
+            try {
+                future.complete(HotSetSnapshot.read(snapshotFile));
+            } catch (Exception e) {
+                LOGGER.warn("Ignoring the hot set snapshot", e);
+                future.complete(new ArrayList<>());
+            }
+        }, timed("hot set snapshot loading", startedAt, snapshotLoading));
+
+        /*
+         * The snapshot, the database verticle and the HTTP verticles are all started at the same time: the HTTP
+         * verticles hold early requests until the database announces it is ready (see Readiness).
+         */
         Future<String> dbVerticleDeployment = Future.future();
-        vertx.deployVerticle(new WikiDatabaseVerticle(), dbVerticleDeployment.completer());
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(config()),
+                timed("database verticle deployment", startedAt, dbVerticleDeployment));
 
-        dbVerticleDeployment.compose(id -> {
+        Future<String> httpVerticleDeployment = Future.future();
+        vertx.deployVerticle(
+                "io.vertx.guides.wiki.http.HttpServerVerticle",
+                new DeploymentOptions().setInstances(httpInstances()).setConfig(config()),
+                timed("HTTP verticle deployment", startedAt, httpVerticleDeployment));
 
-            Future<String> httpVerticleDeployment = Future.future();
-            vertx.deployVerticle(
-                    "io.vertx.guides.wiki.http.HttpServerVerticle",
-                    new DeploymentOptions().setInstances(2),
-                    httpVerticleDeployment.completer());
+        List<String> hotPages = new ArrayList<>();
+        CompositeFuture.all(snapshotLoading, dbVerticleDeployment, httpVerticleDeployment).compose(all -> {
+            for (String[] entry : snapshotLoading.result()) {
+                renderedPages.put(entry[0], entry[1], entry[2]);
+                hotPages.add(entry[0]);
+            }
+            LOGGER.info("Prefilled the rendered page cache with {} hot pages", hotPages.size());
 
-            return httpVerticleDeployment;
+            Future<Void> warmUp = Future.future();
+            warmUp(hotPages, deadline).setHandler(timed("warm-up", startedAt, warmUp));
+            return warmUp;
 
         }).setHandler(ar -> {
             if (ar.succeeded()) {
+                long interval = config().getLong(CONFIG_WARMUP_SNAPSHOT_INTERVAL, 60_000L);
+                int size = config().getInteger(CONFIG_WARMUP_SNAPSHOT_SIZE, 100);
+                vertx.setPeriodic(interval, timer -> saveHotSet(renderedPages, snapshotFile, size));
+                Readiness.markReady(vertx, Readiness.WARM_UP);
+                LOGGER.info("Startup completed in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
                 startFuture.complete();
             } else {
                 startFuture.fail(ar.cause());
             }
         });
     }
+
+    /**
+     * One HTTP verticle instance per core by default, each running on its own event loop. Vert.x creates twice as
+     * many event loops as there are cores, so the other half is left to the database service and the clients.
+     */
+    private int httpInstances() {
+        return config().getInteger(HttpServerVerticle.CONFIG_HTTP_SERVER_INSTANCES,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Logs when a startup phase completes, relative to the beginning of the startup.
+     */
+    private <T> Handler<AsyncResult<T>> timed(String phase, long startedAt, Future<T> future) {
+        return ar -> {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            if (ar.succeeded()) {
+                LOGGER.info("Startup phase '{}' completed at +{} ms", phase, elapsed);
+            } else {
+                LOGGER.error("Startup phase '{}' failed at +{} ms", phase, elapsed);
+            }
+            future.handle(ar);
+        };
+    }
+
+    /**
+     * Exercises the markdown processor on a worker thread, then replays requests for the hot pages against the
+     * local HTTP server, so that the JIT and the template engine are warm before the node reports ready. Whatever is
+     * left when the startup budget runs out is skipped. The requests carry a header that keeps them out of the page
+     * view counts.
+     */
+    private Future<Void> warmUp(List<String> hotPages, long deadline) {
+        Future<Void> markdownWarmUp = Future.future();
+        vertx.executeBlocking(future -> {
+            String sample = "# Warm-up\n\nSome *markdown* with a [link](/wiki/Home), a [[Wiki link]] and a list:\n\n"
+                    + "- one\n- two\n";
+            for (int i = 0; i < 1_000 && System.currentTimeMillis() < deadline; i++) {
+                MarkdownRenderer.render(sample);
+            }
+            future.complete();
+        }, false, markdownWarmUp.completer());
+
+        return markdownWarmUp.compose(v -> {
+            List<String> paths = new ArrayList<>();
+            int requests = config().getInteger(CONFIG_WARMUP_REQUESTS, 50);
+            for (int i = 0; i < requests; i++) {
+                if (i % 2 == 0 || hotPages.isEmpty()) {
+                    paths.add("/");
+                } else {
+                    paths.add(WikiLinks.pagePath(hotPages.get((i / 2) % hotPages.size())));
+                }
+            }
+            WebClient client = WebClient.create(vertx);
+            Future<Void> requestsWarmUp = Future.future();
+            warmUpRequests(client, paths, 0, deadline, requestsWarmUp);
+            return requestsWarmUp.map(done -> {
+                client.close();
+                return done;
+            });
+        });
+    }
+
+    private void warmUpRequests(WebClient client, List<String> paths, int index, long deadline, Future<Void> done) {
+        if (index == paths.size() || System.currentTimeMillis() >= deadline) {
+            LOGGER.info("Warm-up issued {} requests", index);
+            done.complete();
+            return;
+        }
+        int port = config().getInteger(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, 8080);
+        client.get(port, "localhost", paths.get(index))
+                .putHeader(HttpServerVerticle.WARM_UP_HEADER, "true")
+                .send(ar -> warmUpRequests(client, paths, index + 1, deadline, done));
+    }
+
+    private void saveHotSet(RenderedPageCache renderedPages, File snapshotFile, int size) {
+        List<RenderedPageCache.Entry> hotSet = renderedPages.hotSet(size);
+        vertx.executeBlocking(future -> {
+            try {
+                HotSetSnapshot.write(snapshotFile, hotSet);
+                future.complete();
+            } catch (Exception e) {
+                future.fail(e);
+            }
+        }, false, ar -> {
+            if (ar.failed()) {
+                LOGGER.error("Could not save the hot set snapshot", ar.cause());
+            }
+        });
+    }
 }
@@ -0,0 +1,57 @@
+package io.vertx.guides.wiki;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.shareddata.LocalMap;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks which components of the node are ready to serve, so that verticles deployed in parallel can wait for each
+ * other and the HTTP server can report readiness separately from liveness.
+ *
+ * A component's state is kept in a local map (for components that start listening late) and announced on the event
+ * bus (for components that are already waiting).
+ */
+public final class Readiness {
+
+    public static final String DATABASE = "database";
+    public static final String WARM_UP = "warm-up";
+
+    private static final String MAP_NAME = "wiki.readiness";
+    private static final String ADDRESS = "wiki.readiness";
+
+    private Readiness() {
+    }
+
+    public static void markReady(Vertx vertx, String component) {
+        LocalMap<String, Boolean> map = vertx.sharedData().getLocalMap(MAP_NAME);
+        map.put(component, true);
+        vertx.eventBus().publish(ADDRESS, component);
+    }
+
+    public static boolean isReady(Vertx vertx, String component) {
+        LocalMap<String, Boolean> map = vertx.sharedData().getLocalMap(MAP_NAME);
+        return Boolean.TRUE.equals(map.get(component));
+    }
+
+    /**
+     * Calls the handler once the component is ready, right away if it already is.
+     */
+    public static void onReady(Vertx vertx, String component, Handler<Void> handler) {
+        AtomicBoolean called = new AtomicBoolean();
+        MessageConsumer<String> consumer = vertx.eventBus().consumer(ADDRESS);
+        consumer.handler(message -> {
+            if (component.equals(message.body()) && called.compareAndSet(false, true)) {
+                consumer.unregister();
+                handler.handle(null);
+            }
+        });
+        // checked after subscribing, so that an announcement cannot fall in between
+        if (isReady(vertx, component) && called.compareAndSet(false, true)) {
+            consumer.unregister();
+            vertx.runOnContext(handler);
+        }
+    }
+}
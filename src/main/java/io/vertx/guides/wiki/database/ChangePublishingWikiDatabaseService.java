@@ -0,0 +1,166 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Publishes an event on the event bus for every page written through the service it wraps, so that other verticles
+ * can follow the changes without polling the database.
+ *
+ * Events are objects with a type (created, updated, deleted or imported), the page name and a timestamp in
+ * milliseconds. Saves, patches and deletions address pages by id, and their results tell the name of the page written
+ * (see PageWrite). The event is published before the caller gets the result: the events of the writes of a client
+ * come in the same order as the writes.
+ */
+class ChangePublishingWikiDatabaseService implements WikiDatabaseService {
+
+    static final String CREATED = "created";
+    static final String UPDATED = "updated";
+    static final String DELETED = "deleted";
+    static final String IMPORTED = "imported";
+
+    private final WikiDatabaseService delegate;
+    private final EventBus eventBus;
+    private final String address;
+
+    ChangePublishingWikiDatabaseService(WikiDatabaseService delegate, EventBus eventBus, String address) {
+        this.delegate = delegate;
+        this.eventBus = eventBus;
+        this.address = address;
+    }
+
+    private void publish(String type, String name) {
+        eventBus.publish(address, new JsonObject()
+                .put("type", type)
+                .put("name", name)
+                .put("timestamp", System.currentTimeMillis()));
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchAllPages(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchPage(name, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.createPage(title, markdown, res -> {
+            if (res.succeeded()) {
+                publish(CREATED, title);
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.savePage(id, markdown, res -> {
+            if (res.succeeded() && res.result().getString("name") != null) {
+                publish(UPDATED, res.result().getString("name"));
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits,
+                                        Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.patchPage(id, baseRevision, edits, res -> {
+            if (res.succeeded() && res.result().getBoolean("saved")) {
+                publish(UPDATED, res.result().getString("name"));
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.deletePage(id, res -> {
+            if (res.succeeded() && res.result().getString("name") != null) {
+                publish(DELETED, res.result().getString("name"));
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<String>> resultHandler) {
+        delegate.fetchPageName(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        delegate.fetchAllPagesData(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchExistingPages(List<String> names, Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchExistingPages(names, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPagesAfter(int afterId, int limit,
+                                               Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        delegate.fetchPagesAfter(afterId, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.importPages(pages, res -> {
+            if (res.succeeded()) {
+                Set<Integer> failedIndexes = new HashSet<>();
+                JsonArray errors = res.result().getJsonArray("errors");
+                for (int i = 0; i < errors.size(); i++) {
+                    failedIndexes.add(errors.getJsonObject(i).getInteger("index"));
+                }
+                for (int i = 0; i < pages.size(); i++) {
+                    if (!failedIndexes.contains(i)) {
+                        publish(IMPORTED, pages.getJsonObject(i).getString("name"));
+                    }
+                }
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchRecentChanges(int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchRecentChanges(limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchBacklinks(name, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchOrphanedPages(Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchOrphanedPages(resultHandler);
+        return this;
+    }
+}
@@ -0,0 +1,261 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.jdbc.JDBCClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the HSQLDB file databases compact, in the quiet moments of the service.
+ *
+ * HSQLDB appends every change to its redo log (.log) until a checkpoint writes the tables out, and replays the log on
+ * startup, so a long log means a slow startup. Deleted rows leave free space in the data file (.data), which only
+ * CHECKPOINT DEFRAG gives back, and the space of deleted LOBs (.lobs) only becomes reusable after a checkpoint, so
+ * maintenance collects the unreferenced blobs right before checkpointing. Every database gets a CHECKPOINT once the
+ * checkpoint interval has elapsed, and a CHECKPOINT DEFRAG instead once the defrag interval has.
+ *
+ * Both statements hold the database for their whole duration, so maintenance that is due waits for a check that
+ * finds the service quiet: fewer calls per second than a threshold, and a mean call latency that is not rising above
+ * its moving average. The statements run through the JDBC client, on its worker threads, one database after the
+ * other.
+ *
+ * It is Shareable so that the HTTP verticles can report its metrics: the sizes of the database files, and when
+ * maintenance last ran or why it was deferred.
+ */
+public class DatabaseMaintenance implements Shareable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseMaintenance.class);
+
+    private static final String SHARED_MAP_NAME = "wiki.database.maintenance";
+    private static final String FILE_URL_PREFIX = "jdbc:hsqldb:file:";
+    private static final String[] FILE_EXTENSIONS = {"script", "log", "data", "lobs", "backup"};
+
+    private final List<Database> databases = new CopyOnWriteArrayList<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder callNanos = new LongAdder();
+    private final LongAdder checkpoints = new LongAdder();
+    private final LongAdder defrags = new LongAdder();
+    private final LongAdder deferredBusy = new LongAdder();
+    private final LongAdder deferredLatency = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private volatile long checkpointIntervalMillis = TimeUnit.HOURS.toMillis(1);
+    private volatile long defragIntervalMillis = TimeUnit.DAYS.toMillis(1);
+    private volatile double quietCallsPerSecond = 5;
+    private volatile double latencyRiseFactor = 1.5;
+    private volatile long scheduledSince = System.currentTimeMillis();
+
+    private volatile long lastCheckpointAt;
+    private volatile long lastDefragAt;
+    private volatile long lastDurationMillis;
+    private volatile double callsPerSecond;
+
+    // only used by the checks, on the database verticle context
+    private long windowStartedAt = System.nanoTime();
+    private double averageLatencyNanos = -1;
+    private boolean running;
+
+    public static DatabaseMaintenance shared(Vertx vertx) {
+        LocalMap<String, DatabaseMaintenance> map = vertx.sharedData().getLocalMap(SHARED_MAP_NAME);
+        DatabaseMaintenance maintenance = map.get(SHARED_MAP_NAME);
+        if (maintenance == null) {
+            DatabaseMaintenance created = new DatabaseMaintenance();
+            maintenance = map.putIfAbsent(SHARED_MAP_NAME, created);
+            if (maintenance == null) {
+                maintenance = created;
+            }
+        }
+        return maintenance;
+    }
+
+    public DatabaseMaintenance configure(long checkpointIntervalMillis, long defragIntervalMillis,
+                                         double quietCallsPerSecond, double latencyRiseFactor) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        this.defragIntervalMillis = defragIntervalMillis;
+        this.quietCallsPerSecond = quietCallsPerSecond;
+        this.latencyRiseFactor = latencyRiseFactor;
+        this.scheduledSince = System.currentTimeMillis();
+        return this;
+    }
+
+    public JsonObject metrics() {
+        JsonArray files = new JsonArray();
+        for (Database database : databases) {
+            files.add(new JsonObject().put("url", database.url).put("sizes", database.fileSizes));
+        }
+        return new JsonObject()
+                .put("databases", files)
+                .put("callsPerSecond", callsPerSecond)
+                .put("lastCheckpoint", lastCheckpointAt > 0 ? lastCheckpointAt : null)
+                .put("lastDefrag", lastDefragAt > 0 ? lastDefragAt : null)
+                .put("lastDurationMs", lastDurationMillis)
+                .put("checkpoints", checkpoints.sum())
+                .put("defrags", defrags.sum())
+                .put("deferredBusy", deferredBusy.sum())
+                .put("deferredLatency", deferredLatency.sum())
+                .put("failures", failures.sum());
+    }
+
+    /**
+     * Registers a database for maintenance, unless it is not stored in files.
+     *
+     * @param blobStore the service whose unreferenced blobs are collected before the checkpoint, or null
+     */
+    void add(String url, JDBCClient dbClient, WikiDatabaseServiceImpl blobStore) {
+        if (!url.startsWith(FILE_URL_PREFIX)) {
+            LOGGER.debug("No maintenance for {}, which is not a file database", url);
+            return;
+        }
+        int properties = url.indexOf(';');
+        String path = url.substring(FILE_URL_PREFIX.length(), properties < 0 ? url.length() : properties);
+        databases.add(new Database(url, path, dbClient, blobStore));
+    }
+
+    /**
+     * Stops maintaining a database, when the verticle that added it is undeployed.
+     */
+    void remove(String url) {
+        databases.removeIf(database -> database.url.equals(url));
+    }
+
+    void recordCall(long nanos) {
+        calls.increment();
+        callNanos.add(nanos);
+    }
+
+    /**
+     * Measures the traffic since the previous check, and runs the maintenance that is due when the service is quiet.
+     */
+    void check(Vertx vertx) {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - windowStartedAt) / 1e9);
+        windowStartedAt = now;
+        long windowCalls = calls.sumThenReset();
+        long windowNanos = callNanos.sumThenReset();
+        callsPerSecond = windowCalls / seconds;
+        boolean latencyRising = false;
+        if (windowCalls > 0) {
+            double latency = windowNanos / (double) windowCalls;
+            latencyRising = averageLatencyNanos > 0 && latency > averageLatencyNanos * latencyRiseFactor;
+            averageLatencyNanos = averageLatencyNanos < 0 ? latency : 0.9 * averageLatencyNanos + 0.1 * latency;
+        }
+        measureFiles(vertx);
+
+        if (running || databases.isEmpty()) {
+            return;
+        }
+        long wallClock = System.currentTimeMillis();
+        boolean defragDue = wallClock - Math.max(lastDefragAt, scheduledSince) >= defragIntervalMillis;
+        boolean checkpointDue = wallClock - Math.max(lastCheckpointAt, scheduledSince) >= checkpointIntervalMillis;
+        if (!defragDue && !checkpointDue) {
+            return;
+        }
+        if (callsPerSecond > quietCallsPerSecond) {
+            deferredBusy.increment();
+            LOGGER.debug("Deferring database maintenance: {} calls per second", Math.round(callsPerSecond));
+        } else if (latencyRising) {
+            deferredLatency.increment();
+            LOGGER.debug("Deferring database maintenance: the service latency is rising");
+        } else {
+            run(vertx, defragDue);
+        }
+    }
+
+    private void run(Vertx vertx, boolean defrag) {
+        running = true;
+        long startedAt = System.nanoTime();
+        String statement = defrag ? "CHECKPOINT DEFRAG" : "CHECKPOINT";
+        Future<Void> done = Future.succeededFuture();
+        for (Database database : databases) {
+            done = done.compose(v -> collectBlobs(database)).compose(v -> execute(database, statement));
+        }
+        done.setHandler(ar -> {
+            running = false;
+            lastDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            if (ar.failed()) {
+                failures.increment();
+                LOGGER.error("Database maintenance failed", ar.cause());
+                return;
+            }
+            long now = System.currentTimeMillis();
+            lastCheckpointAt = now;
+            checkpoints.increment();
+            if (defrag) {
+                lastDefragAt = now;
+                defrags.increment();
+            }
+            LOGGER.info("{} of {} databases completed in {} ms", statement, databases.size(), lastDurationMillis);
+            measureFiles(vertx);
+        });
+    }
+
+    private Future<Void> collectBlobs(Database database) {
+        Future<Void> collected = Future.future();
+        if (database.blobStore == null) {
+            collected.complete();
+        } else {
+            database.blobStore.collectBlobs(res -> collected.handle(res.map(count -> null)));
+        }
+        return collected;
+    }
+
+    private Future<Void> execute(Database database, String statement) {
+        Future<Void> executed = Future.future();
+        database.dbClient.getConnection(conn -> {
+            if (conn.failed()) {
+                executed.fail(conn.cause());
+                return;
+            }
+            conn.result().execute(statement, res -> {
+                conn.result().close();
+                executed.handle(res);
+            });
+        });
+        return executed;
+    }
+
+    private void measureFiles(Vertx vertx) {
+        vertx.executeBlocking(future -> {
+            for (Database database : databases) {
+                JsonObject sizes = new JsonObject();
+                for (String extension : FILE_EXTENSIONS) {
+                    File file = new File(database.path + "." + extension);
+                    if (file.exists()) {
+                        sizes.put(extension, file.length());
+                    }
+                }
+                database.fileSizes = sizes;
+            }
+            future.complete();
+        }, false, ar -> {
+        });
+    }
+
+    private static final class Database {
+
+        final String url;
+        final String path;
+        final JDBCClient dbClient;
+        final WikiDatabaseServiceImpl blobStore;
+        volatile JsonObject fileSizes = new JsonObject();
+
+        Database(String url, String path, JDBCClient dbClient, WikiDatabaseServiceImpl blobStore) {
+            this.url = url;
+            this.path = path;
+            this.dbClient = dbClient;
+            this.blobStore = blobStore;
+        }
+    }
+}
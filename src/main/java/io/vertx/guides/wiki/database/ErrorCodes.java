@@ -3,5 +3,6 @@ package io.vertx.guides.wiki.database;
 public enum ErrorCodes {
     NO_ACTION_SPECIFIED,
     BAD_ACTION,
-    DB_ERROR
+    DB_ERROR,
+    PATCH_DOES_NOT_APPLY
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.guides.wiki.markdown.WikiLinks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The [[links]] between pages, as adjacency arrays over page name ids, so that the pages linking to a page and the
+ * pages no page links to are answered from memory.
+ *
+ * Every name seen as a page or a link target gets an int id, which it keeps for the lifetime of the graph. Each page
+ * has the sorted array of the ids it links to, and each name the array of the ids of the pages linking to it, so a
+ * write only replaces the outgoing links of the page written and updates the incoming arrays of the targets that
+ * were added or removed.
+ *
+ * The graph is maintained by the page stores: they load it at startup (from the Links table for the JDBC store, from
+ * the page contents for the log store) and update it after each write. Shards share the same graph. All of this
+ * happens on the database verticle context.
+ */
+public final class LinkGraph {
+
+    private static final int[] NO_LINKS = new int[0];
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[64];
+    private int[][] outgoing = new int[64][];
+    private int[][] incoming = new int[64][];
+    private int[] incomingCounts = new int[64];
+    private final BitSet pages = new BitSet();
+
+    /**
+     * The pages a page content links to, as stored: links of a page to itself are left out, and so are the links to
+     * names no page can have.
+     */
+    static Set<String> targets(String source, String markdown) {
+        Set<String> targets = WikiLinks.targets(markdown);
+        targets.removeIf(target -> target.isEmpty() || target.length() > MAX_NAME_LENGTH || target.equals(source));
+        return targets;
+    }
+
+    void addPage(String name) {
+        pages.set(id(name));
+    }
+
+    /**
+     * Removes a page and its outgoing links. The links of other pages to it are kept, they now point to a missing
+     * page.
+     */
+    void removePage(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            pages.clear(id);
+            setLinks(id, NO_LINKS);
+        }
+    }
+
+    /**
+     * @return whether the page links to these targets exactly
+     */
+    boolean hasLinks(String source, Set<String> targets) {
+        Integer id = ids.get(source);
+        int[] current = id != null && outgoing[id] != null ? outgoing[id] : NO_LINKS;
+        if (current.length != targets.size()) {
+            return false;
+        }
+        for (int target : current) {
+            if (!targets.contains(names[target])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void setLinks(String source, Set<String> targets) {
+        int id = id(source);
+        int[] links = new int[targets.size()];
+        int i = 0;
+        for (String target : targets) {
+            links[i++] = id(target);
+        }
+        Arrays.sort(links);
+        setLinks(id, links);
+    }
+
+    /**
+     * Replaces the outgoing links of a page, walking its previous and new sorted arrays side by side to update the
+     * incoming arrays of the targets that differ only.
+     */
+    private void setLinks(int source, int[] links) {
+        int[] previous = outgoing[source] != null ? outgoing[source] : NO_LINKS;
+        int i = 0;
+        int j = 0;
+        while (i < previous.length || j < links.length) {
+            if (j == links.length || (i < previous.length && previous[i] < links[j])) {
+                removeIncoming(previous[i++], source);
+            } else if (i == previous.length || links[j] < previous[i]) {
+                addIncoming(links[j++], source);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        outgoing[source] = links.length > 0 ? links : null;
+    }
+
+    /**
+     * @return the names of the pages linking to a page, sorted
+     */
+    List<String> backlinks(String name) {
+        Integer id = ids.get(name);
+        if (id == null || incomingCounts[id] == 0) {
+            return Collections.emptyList();
+        }
+        List<String> backlinks = new ArrayList<>(incomingCounts[id]);
+        for (int i = 0; i < incomingCounts[id]; i++) {
+            backlinks.add(names[incoming[id][i]]);
+        }
+        Collections.sort(backlinks);
+        return backlinks;
+    }
+
+    /**
+     * @return the names of the pages no other page links to, sorted
+     */
+    List<String> orphans() {
+        List<String> orphans = new ArrayList<>();
+        for (int id = pages.nextSetBit(0); id >= 0; id = pages.nextSetBit(id + 1)) {
+            if (incomingCounts[id] == 0) {
+                orphans.add(names[id]);
+            }
+        }
+        Collections.sort(orphans);
+        return orphans;
+    }
+
+    private int id(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int created = ids.size();
+        if (created == names.length) {
+            int capacity = 2 * created;
+            names = Arrays.copyOf(names, capacity);
+            outgoing = Arrays.copyOf(outgoing, capacity);
+            incoming = Arrays.copyOf(incoming, capacity);
+            incomingCounts = Arrays.copyOf(incomingCounts, capacity);
+        }
+        ids.put(name, created);
+        names[created] = name;
+        return created;
+    }
+
+    private void addIncoming(int target, int source) {
+        int count = incomingCounts[target];
+        if (incoming[target] == null) {
+            incoming[target] = new int[4];
+        } else if (count == incoming[target].length) {
+            incoming[target] = Arrays.copyOf(incoming[target], 2 * count);
+        }
+        incoming[target][count] = source;
+        incomingCounts[target] = count + 1;
+    }
+
+    /**
+     * Removes a source from the incoming array of a target by moving the last source in its place, since the order of
+     * incoming links does not matter.
+     */
+    private void removeIncoming(int target, int source) {
+        int[] sources = incoming[target];
+        int last = incomingCounts[target] - 1;
+        for (int i = 0; i <= last; i++) {
+            if (sources[i] == source) {
+                sources[i] = sources[last];
+                incomingCounts[target] = last;
+                return;
+            }
+        }
+    }
+}
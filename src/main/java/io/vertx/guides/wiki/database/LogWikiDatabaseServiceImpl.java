@@ -0,0 +1,436 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * A WikiDatabaseService storing pages in an append-only, memory-mapped log (see PageLog) instead of a SQL database.
+ *
+ * The whole workload is a name to content mapping, so an in-memory index from page name to record offset is enough:
+ * reads are an index lookup plus a copy out of the mapping, and writes append a record. All of this happens on the
+ * database verticle context, while the blocking parts (syncing the mapping to disk and compacting) run on worker
+ * threads.
+ *
+ * On startup the log is replayed to rebuild the index, revisions included; a torn record at the tail is ignored.
+ * Compaction copies the live records to a new file in the background, after a mark of the highest page id handed out
+ * so that the ids of deleted pages are not handed out again, then replays whatever was appended in the meantime and
+ * atomically renames the new file over the old one.
+ *
+ * The links between pages (see LinkGraph) are extracted from the contents during the replay, then from each write.
+ */
+public class LogWikiDatabaseServiceImpl implements WikiDatabaseService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogWikiDatabaseServiceImpl.class);
+
+    private static final class Entry {
+        final int id;
+        final String name;
+        final int revision;
+        int offset;
+
+        Entry(int id, String name, int revision, int offset) {
+            this.id = id;
+            this.name = name;
+            this.revision = revision;
+            this.offset = offset;
+        }
+    }
+
+    private final Vertx vertx;
+    private final File file;
+    private final PageNameFilter pageFilter;
+    private final Map<String, Entry> byName = new HashMap<>();
+    private final NavigableMap<Integer, Entry> byId = new TreeMap<>();
+    private final LinkGraph links = new LinkGraph();
+    private PageLog log;
+    private int nextId = 1;
+    private long liveBytes;
+    private boolean compacting;
+
+    private LogWikiDatabaseServiceImpl(Vertx vertx, File file, PageNameFilter pageFilter) {
+        this.vertx = vertx;
+        this.file = file;
+        this.pageFilter = pageFilter;
+    }
+
+    /**
+     * Creates a store over the given log, which is ready once the log has been replayed.
+     */
+    static LogWikiDatabaseServiceImpl create(Vertx vertx,
+                                             File file,
+                                             PageNameFilter pageFilter,
+                                             long syncIntervalMillis,
+                                             Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        LogWikiDatabaseServiceImpl store = new LogWikiDatabaseServiceImpl(vertx, file, pageFilter);
+        store.open(syncIntervalMillis, readyHandler);
+        return store;
+    }
+
+    private void open(long syncIntervalMillis, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        vertx.<PageLog>executeBlocking(future -> {
+            try {
+                File parent = file.getAbsoluteFile().getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                Files.deleteIfExists(compactionFile(file).toPath());
+                PageLog opened = PageLog.open(file, this::apply);
+                for (Entry entry : byId.values()) {
+                    links.addPage(entry.name);
+                    links.setLinks(entry.name, LinkGraph.targets(entry.name, opened.readContent(entry.offset)));
+                }
+                future.complete(opened);
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            if (ar.failed()) {
+                LOGGER.error("Could not open the page log", ar.cause());
+                readyHandler.handle(Future.failedFuture(ar.cause()));
+            } else {
+                log = ar.result();
+                liveBytes = byId.values().stream().mapToLong(entry -> log.recordSize(entry.offset)).sum();
+                pageFilter.rebuild(byName.keySet());
+                LOGGER.info("Page log {} replayed: {} pages, {} bytes", file, byName.size(), log.position());
+                vertx.setPeriodic(syncIntervalMillis, id -> sync());
+                readyHandler.handle(Future.succeededFuture(this));
+            }
+        });
+    }
+
+    /**
+     * Syncs and closes the log. Blocking, so it must run on a worker thread.
+     */
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(new JsonArray(byName.keySet()
+                .stream()
+                .sorted()
+                .collect(Collectors.toList()))));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        JsonObject response = new JsonObject();
+        Entry entry = byName.get(name);
+        if (entry == null) {
+            response.put("found", false);
+        } else {
+            response.put("found", true);
+            response.put("id", entry.id);
+            response.put("rawContent", log.readContent(entry.offset));
+            response.put("revision", entry.revision);
+        }
+        resultHandler.handle(Future.succeededFuture(response));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        if (byName.containsKey(title)) {
+            resultHandler.handle(Future.failedFuture("Page already exists: " + title));
+            return this;
+        }
+        pageFilter.add(title);
+        write(PageLog.PUT, nextId, title, markdown, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+        Entry entry = byId.get(id);
+        if (entry == null) {
+            // same outcome as an update matching no row
+            resultHandler.handle(Future.succeededFuture(PageWrite.none()));
+            return this;
+        }
+        String previous = log.readContent(entry.offset);
+        if (markdown.equals(previous)) {
+            // like the blob store of the JDBC backend, an unchanged content is not written again
+            resultHandler.handle(Future.succeededFuture(
+                    PageWrite.of(entry.name, previous.length(), markdown.length(), false)));
+            return this;
+        }
+        write(PageLog.PUT, id, entry.name, markdown, res -> resultHandler.handle(res.map(v ->
+                PageWrite.of(entry.name, previous.length(), markdown.length(), true))));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits,
+                                        Handler<AsyncResult<JsonObject>> resultHandler) {
+        Entry entry = byId.get(id);
+        if (entry == null) {
+            resultHandler.handle(Future.failedFuture("No such page: " + id));
+            return this;
+        }
+        if (entry.revision != baseRevision) {
+            resultHandler.handle(Future.succeededFuture(PagePatch.outcome(false, entry.revision)));
+            return this;
+        }
+        String previous = log.readContent(entry.offset);
+        String markdown;
+        try {
+            markdown = PagePatch.apply(previous, edits);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            resultHandler.handle(Future.failedFuture(
+                new ServiceException(ErrorCodes.PATCH_DOES_NOT_APPLY.ordinal(), e.getMessage())));
+            return this;
+        }
+        write(PageLog.PUT, id, entry.name, markdown, res -> resultHandler.handle(res.map(v ->
+                PagePatch.outcome(true, baseRevision + 1)
+                        .mergeIn(PageWrite.of(entry.name, previous.length(), markdown.length(), true)))));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        Entry entry = byId.get(id);
+        if (entry == null) {
+            resultHandler.handle(Future.succeededFuture(PageWrite.none()));
+            return this;
+        }
+        int previousSize = log.readContent(entry.offset).length();
+        write(PageLog.DELETE, id, entry.name, null, res -> resultHandler.handle(res.map(v ->
+                PageWrite.of(entry.name, previousSize, 0, true))));
+        if (pageFilter.recordDeletion()) {
+            pageFilter.rebuild(byName.keySet());
+        }
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<String>> resultHandler) {
+        Entry entry = byId.get(id);
+        resultHandler.handle(Future.succeededFuture(entry == null ? null : entry.name));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(byId.values()
+                .stream()
+                .sorted(Comparator.comparingInt(entry -> entry.id))
+                .map(entry -> new JsonObject()
+                        .put("ID", entry.id)
+                        .put("NAME", entry.name)
+                        .put("CONTENT", log.readContent(entry.offset)))
+                .collect(Collectors.toList())));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchExistingPages(List<String> names, Handler<AsyncResult<List<String>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(names
+                .stream()
+                .filter(byName::containsKey)
+                .collect(Collectors.toList())));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPagesAfter(int afterId, int limit,
+                                               Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(byId.tailMap(afterId, false)
+                .values()
+                .stream()
+                .limit(limit)
+                .map(entry -> new JsonObject()
+                        .put("ID", entry.id)
+                        .put("NAME", entry.name)
+                        .put("CONTENT", log.readContent(entry.offset)))
+                .collect(Collectors.toList())));
+        return this;
+    }
+
+    /**
+     * The recent changes are kept in front of the stores, by RecentChangesWikiDatabaseService.
+     */
+    @Override
+    public WikiDatabaseService fetchRecentChanges(int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        resultHandler.handle(Future.failedFuture("Recent changes are not kept by the page store"));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<List<String>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(links.backlinks(name)));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchOrphanedPages(Handler<AsyncResult<List<String>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(links.orphans()));
+        return this;
+    }
+
+    /**
+     * Every page is appended as its own record, so a failed page does not prevent the others from being imported.
+     */
+    @Override
+    public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<JsonObject>> resultHandler) {
+        JsonObject outcome = new JsonObject().put("imported", 0).put("errors", new JsonArray());
+        for (int i = 0; i < pages.size(); i++) {
+            int index = i;
+            JsonObject page = pages.getJsonObject(i);
+            String name = page.getString("name");
+            Entry existing = byName.get(name);
+            if (existing == null) {
+                pageFilter.add(name);
+            }
+            write(PageLog.PUT, existing != null ? existing.id : nextId, name, page.getString("content"), written -> {
+                if (written.succeeded()) {
+                    outcome.put("imported", outcome.getInteger("imported") + 1);
+                } else {
+                    outcome.getJsonArray("errors").add(new JsonObject()
+                            .put("index", index)
+                            .put("error", written.cause().getMessage()));
+                }
+            });
+        }
+        resultHandler.handle(Future.succeededFuture(outcome));
+        return this;
+    }
+
+    private void write(byte type, int id, String name, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        Entry current = byId.get(id);
+        int revision = type == PageLog.PUT && current != null ? current.revision + 1 : 0;
+        try {
+            int offset = log.append(type, id, revision, name, markdown);
+            apply(offset, type, id, revision, name);
+            if (type == PageLog.PUT) {
+                links.addPage(name);
+                links.setLinks(name, LinkGraph.targets(name, markdown));
+            } else {
+                links.removePage(name);
+            }
+            resultHandler.handle(Future.succeededFuture());
+            if (!compacting && log.position() > 1 << 20 && log.position() > 2 * liveBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Page log write error", e);
+            resultHandler.handle(Future.failedFuture(e));
+        }
+    }
+
+    private void apply(int offset, byte type, int id, int revision, String name) {
+        nextId = Math.max(nextId, id + 1);
+        if (type == PageLog.ID_MARK) {
+            return;
+        }
+        Entry previous = byId.remove(id);
+        if (previous != null) {
+            byName.remove(previous.name);
+            liveBytes -= log != null ? log.recordSize(previous.offset) : 0;
+        }
+        if (type == PageLog.PUT) {
+            Entry entry = new Entry(id, name, revision, offset);
+            byId.put(id, entry);
+            byName.put(name, entry);
+            liveBytes += log != null ? log.recordSize(offset) : 0;
+        }
+    }
+
+    private void sync() {
+        PageLog current = log;
+        vertx.executeBlocking(future -> {
+            current.force();
+            future.complete();
+        }, false, ar -> {
+            if (ar.failed()) {
+                LOGGER.error("Page log sync error", ar.cause());
+            }
+        });
+    }
+
+    private void compact() {
+        compacting = true;
+        PageLog source = log;
+        int snapshotEnd = source.position();
+        List<Entry> snapshot = new ArrayList<>(byId.values());
+        List<Integer> offsets = snapshot.stream().map(entry -> entry.offset).collect(Collectors.toList());
+        int highestId = nextId - 1;
+
+        vertx.<PageLog>executeBlocking(future -> {
+            try {
+                PageLog target = PageLog.open(compactionFile(file), (offset, type, id, revision, name) -> {
+                });
+                target.append(PageLog.ID_MARK, highestId, 0, "", null);
+                for (int i = 0; i < snapshot.size(); i++) {
+                    offsets.set(i, target.copyFrom(source, offsets.get(i)));
+                }
+                target.force();
+                future.complete(target);
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, false, ar -> {
+            if (ar.failed()) {
+                LOGGER.error("Page log compaction error", ar.cause());
+                compacting = false;
+                return;
+            }
+            PageLog target = ar.result();
+            try {
+                Map<Integer, Integer> moved = new HashMap<>();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    moved.put(snapshot.get(i).id, offsets.get(i));
+                }
+                // records appended while compacting are copied as-is, which keeps the new log complete
+                List<int[]> tail = new ArrayList<>();
+                source.replay(snapshotEnd, (offset, type, id, revision, name) -> tail.add(new int[]{id, offset}));
+                for (int[] record : tail) {
+                    moved.put(record[0], target.copyFrom(source, record[1]));
+                }
+                target.force();
+                Files.move(compactionFile(file).toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                long live = 0;
+                for (Entry entry : byId.values()) {
+                    entry.offset = moved.get(entry.id);
+                    live += target.recordSize(entry.offset);
+                }
+                LOGGER.info("Page log compacted from {} to {} bytes", source.position(), target.position());
+                log = target;
+                liveBytes = live;
+                source.close();
+            } catch (IOException e) {
+                LOGGER.error("Page log compaction error", e);
+            } finally {
+                compacting = false;
+            }
+        });
+    }
+
+    private static File compactionFile(File file) {
+        return new File(file.getPath() + ".compact");
+    }
+}
@@ -0,0 +1,198 @@
+package io.vertx.guides.wiki.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only, memory-mapped file of page records.
+ *
+ * Each record is laid out as:
+ * <pre>
+ *   int    length of everything that follows, crc included (0 marks the end of the log)
+ *   byte   type (PUT, DELETE or ID_MARK)
+ *   int    page id
+ *   int    page revision (0 for DELETE and ID_MARK)
+ *   int    name length, followed by the UTF-8 name
+ *   int    content length, followed by the UTF-8 content (empty for DELETE)
+ *   int    CRC32 of the type, id, revision, name and content fields
+ * </pre>
+ *
+ * An ID_MARK record carries no page: its id is the highest page id handed out when it was written, so that a
+ * compacted log, which drops the records of deleted pages, still tells which ids were used.
+ *
+ * The file is grown by doubling and pre-filled with zeros, so a torn write at the tail shows up either as a zero
+ * length or as a bad checksum: recovery stops at the first such record and the next append overwrites it.
+ *
+ * A single mapping is used, which limits a log to 2GB. Instances are not thread-safe: appends happen on the database
+ * verticle context, and compaction only reads records that were appended before it started.
+ */
+final class PageLog {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte ID_MARK = 3;
+
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 4 + 4 + 4;
+    private static final int CRC_SIZE = 4;
+
+    interface RecordVisitor {
+        void visit(int offset, byte type, int id, int revision, String name);
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int position;
+
+    private PageLog(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        long length = Math.max(raf.length(), INITIAL_CAPACITY);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Page log is larger than 2GB: " + file);
+        }
+        raf.setLength(length);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    /**
+     * Opens a log and replays it, calling the visitor for every valid record in order.
+     */
+    static PageLog open(File file, RecordVisitor visitor) throws IOException {
+        PageLog log = new PageLog(file);
+        log.position = log.replay(0, visitor);
+        return log;
+    }
+
+    int position() {
+        return position;
+    }
+
+    /**
+     * Visits the valid records starting at the given offset.
+     *
+     * @return the offset following the last valid record
+     */
+    int replay(int from, RecordVisitor visitor) {
+        ByteBuffer view = buffer.duplicate();
+        int offset = from;
+        while (offset + HEADER_SIZE + CRC_SIZE <= view.capacity()) {
+            int length = view.getInt(offset);
+            if (length <= 0 || offset + 4 + length > view.capacity() || !checksumMatches(view, offset, length)) {
+                break;
+            }
+            byte type = view.get(offset + 4);
+            int id = view.getInt(offset + 5);
+            int revision = view.getInt(offset + 9);
+            String name = readString(view, offset + 13);
+            visitor.visit(offset, type, id, revision, name);
+            offset += 4 + length;
+        }
+        return offset;
+    }
+
+    int append(byte type, int id, int revision, String name, String content) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] contentBytes = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = 1 + 4 + 4 + 4 + nameBytes.length + 4 + contentBytes.length + CRC_SIZE;
+        ensureCapacity(4 + length);
+
+        int offset = position;
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.put(type).putInt(id).putInt(revision)
+                .putInt(nameBytes.length).put(nameBytes)
+                .putInt(contentBytes.length).put(contentBytes);
+        view.putInt(crc(view, offset + 4, length - CRC_SIZE));
+        // the length goes last so that a partially written record is never considered valid
+        view.putInt(offset, length);
+        position = offset + 4 + length;
+        return offset;
+    }
+
+    /**
+     * Copies a raw record from another log, keeping its checksum.
+     */
+    int copyFrom(PageLog source, int sourceOffset) throws IOException {
+        int length = source.buffer.getInt(sourceOffset);
+        ensureCapacity(4 + length);
+        ByteBuffer record = source.buffer.duplicate();
+        record.position(sourceOffset + 4).limit(sourceOffset + 4 + length);
+        int offset = position;
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.put(record);
+        view.putInt(offset, length);
+        position = offset + 4 + length;
+        return offset;
+    }
+
+    String readContent(int offset) {
+        ByteBuffer view = buffer.duplicate();
+        int nameLength = view.getInt(offset + 13);
+        return readString(view, offset + 17 + nameLength);
+    }
+
+    int recordSize(int offset) {
+        return 4 + buffer.getInt(offset);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+        raf.close();
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (position + needed <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < (long) position + needed) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Page log is full: " + file);
+        }
+        buffer.force();
+        raf.setLength(capacity);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private static String readString(ByteBuffer view, int offset) {
+        int length = view.getInt(offset);
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = view.duplicate();
+        slice.position(offset + 4);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean checksumMatches(ByteBuffer view, int offset, int length) {
+        if (length < 1 + 4 + 4 + 4 + 4 + CRC_SIZE) {
+            return false;
+        }
+        return crc(view, offset + 4, length - CRC_SIZE) == view.getInt(offset + 4 + length - CRC_SIZE);
+    }
+
+    private static int crc(ByteBuffer view, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = view.duplicate();
+        slice.position(offset).limit(offset + length);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+}
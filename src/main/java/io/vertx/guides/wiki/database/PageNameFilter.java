@@ -0,0 +1,149 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A membership filter over page names, answering "definitely missing" without a database round trip.
+ *
+ * The filter is maintained by WikiDatabaseServiceImpl: it is rebuilt from the page table at startup, names are added
+ * when pages are created, and since Bloom filters cannot forget, it is rebuilt again once enough pages have been
+ * deleted. Until the first rebuild completes every name is reported as possibly present, so callers simply fall back
+ * to the database.
+ *
+ * All updates happen on the database verticle context; only lookups come from other threads.
+ *
+ * It is Shareable so that the HTTP verticles of the same Vert.x instance can consult it before even sending a message
+ * on the event bus.
+ */
+public class PageNameFilter implements Shareable {
+
+    private static final String SHARED_MAP_NAME = "wiki.database.pagefilter";
+
+    private volatile BloomFilter filter;
+    private volatile long expectedPages = 10_000;
+    private volatile double falsePositiveRate = 0.01;
+    private Set<String> addedDuringRebuild;
+    private boolean rebuilding;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder deletions = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public static PageNameFilter shared(Vertx vertx) {
+        LocalMap<String, PageNameFilter> map = vertx.sharedData().getLocalMap(SHARED_MAP_NAME);
+        PageNameFilter filter = map.get(SHARED_MAP_NAME);
+        if (filter == null) {
+            PageNameFilter created = new PageNameFilter();
+            filter = map.putIfAbsent(SHARED_MAP_NAME, created);
+            if (filter == null) {
+                filter = created;
+            }
+        }
+        return filter;
+    }
+
+    public PageNameFilter configure(long expectedPages, double falsePositiveRate) {
+        this.expectedPages = expectedPages;
+        this.falsePositiveRate = falsePositiveRate;
+        return this;
+    }
+
+    /**
+     * @return false only when the page is known not to exist
+     */
+    public boolean mightContain(String name) {
+        BloomFilter current = filter;
+        lookups.increment();
+        if (current == null || current.mightContain(name)) {
+            return true;
+        }
+        shortCircuited.increment();
+        return false;
+    }
+
+    public JsonObject metrics() {
+        BloomFilter current = filter;
+        return new JsonObject()
+                .put("ready", current != null)
+                .put("bits", current != null ? current.bitCount() : 0)
+                .put("hashes", current != null ? current.hashCount() : 0)
+                .put("falsePositiveRate", falsePositiveRate)
+                .put("lookups", lookups.sum())
+                .put("shortCircuited", shortCircuited.sum())
+                .put("falsePositives", falsePositives.sum())
+                .put("rebuilds", rebuilds.sum());
+    }
+
+    void add(String name) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(name);
+        }
+        if (addedDuringRebuild != null) {
+            addedDuringRebuild.add(name);
+        }
+        insertions.increment();
+    }
+
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * @return true when enough pages were deleted since the last rebuild that the filter should be rebuilt, and no
+     * rebuild is running already
+     */
+    boolean recordDeletion() {
+        deletions.increment();
+        return !rebuilding && deletions.sum() > Math.max(64, insertions.sum() / 10);
+    }
+
+    /**
+     * Must be called before querying the page names for a rebuild, so that pages created while the query runs are
+     * not lost. Only one rebuild runs at a time.
+     *
+     * @return false when a rebuild is running already, in which case the caller must not rebuild
+     */
+    boolean beginRebuild() {
+        if (rebuilding) {
+            return false;
+        }
+        rebuilding = true;
+        addedDuringRebuild = new HashSet<>();
+        return true;
+    }
+
+    /**
+     * Ends a rebuild whose query failed, keeping the current filter.
+     */
+    void abortRebuild() {
+        rebuilding = false;
+        addedDuringRebuild = null;
+    }
+
+    void rebuild(Collection<String> names) {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedPages, 2L * names.size()), falsePositiveRate);
+        names.forEach(rebuilt::put);
+        if (addedDuringRebuild != null) {
+            addedDuringRebuild.forEach(rebuilt::put);
+            addedDuringRebuild = null;
+        }
+        insertions.reset();
+        insertions.add(names.size());
+        deletions.reset();
+        filter = rebuilt;
+        rebuilding = false;
+        rebuilds.increment();
+    }
+}
@@ -0,0 +1,40 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Applies the edits of a page patch to the content it was made against.
+ *
+ * A patch is a list of {"at": offset, "remove": text, "insert": text} objects in increasing offset order, where
+ * offsets are character positions in the base content. Every edit states the text it removes, which must be found at
+ * its offset: a patch made against other content is rejected rather than applied at the wrong place.
+ */
+final class PagePatch {
+
+    private PagePatch() {
+    }
+
+    static String apply(String base, JsonArray edits) {
+        StringBuilder patched = new StringBuilder(base.length());
+        int copied = 0;
+        for (int i = 0; i < edits.size(); i++) {
+            JsonObject edit = edits.getJsonObject(i);
+            int at = edit.getInteger("at", -1);
+            String remove = edit.getString("remove", "");
+            if (at < copied || !base.startsWith(remove, at)) {
+                throw new IllegalArgumentException("Edit " + i + " does not apply to the base content");
+            }
+            patched.append(base, copied, at).append(edit.getString("insert", ""));
+            copied = at + remove.length();
+        }
+        return patched.append(base, copied, base.length()).toString();
+    }
+
+    /**
+     * The result of WikiDatabaseService#patchPage.
+     */
+    static JsonObject outcome(boolean saved, int revision) {
+        return new JsonObject().put("saved", saved).put("revision", revision);
+    }
+}
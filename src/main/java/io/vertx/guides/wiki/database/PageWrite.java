@@ -0,0 +1,28 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The result of the writes addressing a page by id: savePage, deletePage and (merged into its outcome) patchPage.
+ *
+ * It holds the name of the page written, the size of its content before and after the write and whether the content
+ * changed, so that the services wrapping the store learn what was written without reading the page again. It is
+ * empty when there is no page with that id.
+ */
+final class PageWrite {
+
+    private PageWrite() {
+    }
+
+    static JsonObject none() {
+        return new JsonObject();
+    }
+
+    static JsonObject of(String name, int previousSize, int size, boolean changed) {
+        return new JsonObject()
+                .put("name", name)
+                .put("previousSize", previousSize)
+                .put("size", size)
+                .put("changed", changed);
+    }
+}
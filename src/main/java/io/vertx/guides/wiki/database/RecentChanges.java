@@ -0,0 +1,238 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The last page changes, in a fixed-size ring buffer backed by an append-only log file.
+ *
+ * Recording a change claims the next sequence number and stores the change in the slot of that number, and listing
+ * the k latest changes walks back k slots from the last claimed number, so neither takes a lock nor depends on the
+ * number of pages. A slot can be claimed but not filled yet, or filled again by a later change, while it is read: the
+ * reader skips the slots whose change does not carry the sequence number it expects.
+ *
+ * Changes are queued for the log as they are recorded, and #flush appends them, so the file is only written by the
+ * thread flushing, off the event loop. Each record is laid out as:
+ * <pre>
+ *   long   timestamp in milliseconds
+ *   byte   action
+ *   int    page size after the change
+ *   int    size delta (Integer.MIN_VALUE when unknown)
+ *   UTF    page name
+ * </pre>
+ * On startup the last records fill the ring again, up to a torn record at the tail, and the log is rewritten with
+ * them, which cuts it after the last complete record. It is rewritten with the contents of the ring again once it
+ * holds twice as many records as the ring, so that it stays within a bounded size.
+ */
+final class RecentChanges {
+
+    static final String CREATED = ChangePublishingWikiDatabaseService.CREATED;
+    static final String UPDATED = ChangePublishingWikiDatabaseService.UPDATED;
+    static final String DELETED = ChangePublishingWikiDatabaseService.DELETED;
+    static final String IMPORTED = ChangePublishingWikiDatabaseService.IMPORTED;
+
+    private static final String[] ACTIONS = {CREATED, UPDATED, DELETED, IMPORTED};
+    private static final int UNKNOWN_DELTA = Integer.MIN_VALUE;
+
+    private final File file;
+    private final AtomicReferenceArray<Change> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Queue<Change> unflushed = new ConcurrentLinkedQueue<>();
+    private DataOutputStream log;
+    private long logRecords;
+
+    private RecentChanges(File file, int capacity) {
+        this.file = file;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Opens a log and fills the ring with its last records. This blocks, and must run on a worker thread.
+     */
+    static RecentChanges open(File file, int capacity) throws IOException {
+        RecentChanges changes = new RecentChanges(file, capacity);
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    long timestamp;
+                    byte action;
+                    int size;
+                    int delta;
+                    String name;
+                    try {
+                        timestamp = in.readLong();
+                        action = in.readByte();
+                        size = in.readInt();
+                        delta = in.readInt();
+                        name = in.readUTF();
+                    } catch (IOException e) {
+                        // end of the log, or a record torn by a crash, possibly in the middle of its name
+                        break;
+                    }
+                    if (action < 0 || action >= ACTIONS.length) {
+                        break;
+                    }
+                    changes.add(name, action, timestamp, size, delta);
+                    changes.logRecords++;
+                }
+            }
+        } else {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+        }
+        changes.rewrite();
+        return changes;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * @param delta the size delta, or null when unknown
+     */
+    void record(String name, String action, int size, Integer delta) {
+        byte actionCode = 0;
+        for (byte i = 0; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                actionCode = i;
+            }
+        }
+        unflushed.add(add(name, actionCode, System.currentTimeMillis(), size, delta != null ? delta : UNKNOWN_DELTA));
+    }
+
+    private Change add(String name, byte action, long timestamp, int size, int delta) {
+        long sequence = nextSequence.getAndIncrement();
+        Change change = new Change(sequence, name, action, timestamp, size, delta);
+        slots.set((int) (sequence % slots.length()), change);
+        return change;
+    }
+
+    /**
+     * Lists the latest changes, most recent first.
+     */
+    JsonArray latest(int limit) {
+        JsonArray latest = new JsonArray();
+        long last = nextSequence.get() - 1;
+        long first = Math.max(0, last - Math.min(limit, slots.length()) + 1);
+        for (long sequence = last; sequence >= first; sequence--) {
+            Change change = slots.get((int) (sequence % slots.length()));
+            if (change != null && change.sequence == sequence) {
+                latest.add(change.toJson());
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Appends the changes recorded since the previous flush to the log. This blocks, and must not run concurrently
+     * with itself or #close.
+     */
+    void flush() throws IOException {
+        if (unflushed.isEmpty()) {
+            return;
+        }
+        Change change;
+        while ((change = unflushed.poll()) != null) {
+            write(log, change);
+            logRecords++;
+        }
+        log.flush();
+        if (logRecords >= 2L * slots.length()) {
+            rewrite();
+        }
+    }
+
+    void close() throws IOException {
+        flush();
+        log.close();
+    }
+
+    /**
+     * Replaces the log with the changes in the ring, through a temporary file renamed over it.
+     */
+    private void rewrite() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        List<Change> kept = new ArrayList<>();
+        long last = nextSequence.get() - 1;
+        for (long sequence = Math.max(0, last - slots.length() + 1); sequence <= last; sequence++) {
+            Change change = slots.get((int) (sequence % slots.length()));
+            if (change != null && change.sequence == sequence) {
+                kept.add(change);
+            }
+        }
+        File rewritten = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(rewritten)))) {
+            for (Change change : kept) {
+                write(out, change);
+            }
+        }
+        Files.move(rewritten.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        // changes recorded meanwhile may be in the copy, and still queued
+        unflushed.removeAll(new HashSet<>(kept));
+        logRecords = kept.size();
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    private static void write(DataOutputStream out, Change change) throws IOException {
+        out.writeLong(change.timestamp);
+        out.writeByte(change.action);
+        out.writeInt(change.size);
+        out.writeInt(change.delta);
+        out.writeUTF(change.name);
+    }
+
+    private static final class Change {
+
+        final long sequence;
+        final String name;
+        final byte action;
+        final long timestamp;
+        final int size;
+        final int delta;
+
+        Change(long sequence, String name, byte action, long timestamp, int size, int delta) {
+            this.sequence = sequence;
+            this.name = name;
+            this.action = action;
+            this.timestamp = timestamp;
+            this.size = size;
+            this.delta = delta;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject()
+                    .put("name", name)
+                    .put("action", ACTIONS[action])
+                    .put("timestamp", timestamp)
+                    .put("size", size);
+            if (delta != UNKNOWN_DELTA) {
+                json.put("delta", delta);
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records the page changes made through the service it wraps in RecentChanges, and serves them from there.
+ *
+ * Saves, patches and deletions address pages by id, and their results tell the name of the page written and the sizes
+ * the size delta is computed from. Writes that leave the content unchanged are not recorded. Imports create or
+ * replace pages without telling which, so their changes have no size delta.
+ */
+class RecentChangesWikiDatabaseService implements WikiDatabaseService {
+
+    private final WikiDatabaseService delegate;
+    private final RecentChanges changes;
+
+    RecentChangesWikiDatabaseService(WikiDatabaseService delegate, RecentChanges changes) {
+        this.delegate = delegate;
+        this.changes = changes;
+    }
+
+    @Override
+    public WikiDatabaseService fetchRecentChanges(int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(changes.latest(Math.max(0, limit))));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchAllPages(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchPage(name, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.createPage(title, markdown, res -> {
+            if (res.succeeded()) {
+                changes.record(title, RecentChanges.CREATED, markdown.length(), markdown.length());
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.savePage(id, markdown, res -> {
+            if (res.succeeded()) {
+                record(RecentChanges.UPDATED, res.result());
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits,
+                                        Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.patchPage(id, baseRevision, edits, res -> {
+            if (res.succeeded() && res.result().getBoolean("saved")) {
+                record(RecentChanges.UPDATED, res.result());
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.deletePage(id, res -> {
+            if (res.succeeded()) {
+                record(RecentChanges.DELETED, res.result());
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    /**
+     * Records the write of a page by id from its result (see PageWrite), unless there was no such page or its content
+     * did not change.
+     */
+    private void record(String type, JsonObject written) {
+        String name = written.getString("name");
+        if (name != null && written.getBoolean("changed")) {
+            int size = written.getInteger("size");
+            changes.record(name, type, size, size - written.getInteger("previousSize"));
+        }
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<String>> resultHandler) {
+        delegate.fetchPageName(id, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        delegate.fetchAllPagesData(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchExistingPages(List<String> names, Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchExistingPages(names, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPagesAfter(int afterId, int limit,
+                                               Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        delegate.fetchPagesAfter(afterId, limit, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.importPages(pages, res -> {
+            if (res.succeeded()) {
+                Set<Integer> failedIndexes = new HashSet<>();
+                JsonArray errors = res.result().getJsonArray("errors");
+                for (int i = 0; i < errors.size(); i++) {
+                    failedIndexes.add(errors.getJsonObject(i).getInteger("index"));
+                }
+                for (int i = 0; i < pages.size(); i++) {
+                    if (!failedIndexes.contains(i)) {
+                        JsonObject page = pages.getJsonObject(i);
+                        changes.record(page.getString("name"), RecentChanges.IMPORTED,
+                                page.getString("content").length(), null);
+                    }
+                }
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchBacklinks(name, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchOrphanedPages(Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchOrphanedPages(resultHandler);
+        return this;
+    }
+}
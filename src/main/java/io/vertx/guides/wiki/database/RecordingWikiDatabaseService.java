@@ -0,0 +1,146 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.jfr.ServiceCallEvent;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Records a ServiceCallEvent for every action the proxy handler dispatches to the service it wraps, so that a flight
+ * recording can attribute time to wiki operations.
+ */
+class RecordingWikiDatabaseService implements WikiDatabaseService {
+
+    private final WikiDatabaseService delegate;
+
+    RecordingWikiDatabaseService(WikiDatabaseService delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Begins an event, and returns the handler that completes it with the size of the content of the request plus
+     * that of the result, which are only computed when the event is committed.
+     */
+    private static <T> Handler<AsyncResult<T>> recorded(String action, Object page, LongSupplier requestSize,
+                                                        ToLongFunction<T> resultSize,
+                                                        Handler<AsyncResult<T>> resultHandler) {
+        ServiceCallEvent event = new ServiceCallEvent();
+        event.begin();
+        return res -> {
+            event.end();
+            if (event.shouldCommit()) {
+                long size = requestSize.getAsLong() + (res.succeeded() && res.result() != null
+                        ? resultSize.applyAsLong(res.result())
+                        : 0);
+                event.complete(action, page != null ? page.toString() : null, size, res.succeeded());
+            }
+            resultHandler.handle(res);
+        };
+    }
+
+    private static long contentSize(List<JsonObject> rows) {
+        return rows.stream().mapToLong(row -> length(row.getString("CONTENT"))).sum();
+    }
+
+    private static long length(String text) {
+        return text != null ? text.length() : 0;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchAllPages(recorded("fetchAllPages", null, () -> 0, names -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchPage(name, recorded("fetchPage", name, () -> 0,
+                page -> length(page.getString("rawContent")) + length(page.getString("html")), resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.createPage(title, markdown, recorded("createPage", title, () -> length(markdown), v -> 0,
+                resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.savePage(id, markdown, recorded("savePage", id, () -> length(markdown), v -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits,
+                                        Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.patchPage(id, baseRevision, edits, recorded("patchPage", id, () -> edits.encode().length(),
+                outcome -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.deletePage(id, recorded("deletePage", id, () -> 0, v -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<String>> resultHandler) {
+        delegate.fetchPageName(id, recorded("fetchPageName", id, () -> 0, name -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        delegate.fetchAllPagesData(recorded("fetchAllPagesData", null, () -> 0,
+                RecordingWikiDatabaseService::contentSize, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchExistingPages(List<String> names, Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchExistingPages(names, recorded("fetchExistingPages", null, () -> 0, existing -> 0,
+                resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPagesAfter(int afterId, int limit,
+                                               Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        delegate.fetchPagesAfter(afterId, limit, recorded("fetchPagesAfter", null, () -> 0,
+                RecordingWikiDatabaseService::contentSize, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.importPages(pages, recorded("importPages", null, () -> pages.encode().length(),
+                outcome -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchRecentChanges(int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        delegate.fetchRecentChanges(limit, recorded("fetchRecentChanges", null, () -> 0, changes -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchBacklinks(name, recorded("fetchBacklinks", name, () -> 0, backlinks -> 0, resultHandler));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchOrphanedPages(Handler<AsyncResult<List<String>>> resultHandler) {
+        delegate.fetchOrphanedPages(recorded("fetchOrphanedPages", null, () -> 0, orphans -> 0, resultHandler));
+        return this;
+    }
+}
@@ -0,0 +1,162 @@
+package io.vertx.guides.wiki.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Copies the pages of a (possibly sharded) database into a new set of shards, while the wiki is stopped.
+ *
+ * Usage: ReshardTool source-url source-shards target-url target-shards, where the URLs are the wikidb.jdbc.url the
+ * wiki is configured with and the shard counts its wikidb.shards (e.g. "gradle reshard
+ * -PreshardArgs='jdbc:hsqldb:file:db/wiki 1 jdbc:hsqldb:file:db/wiki-new 4'"). The target shards must be new or empty.
+ * Pages are read shard by shard and written in batches, one transaction per batch, along with the blobs of their
+ * contents and the rendered HTML of these, so that nothing needs to be rendered again. A blob shared by pages that end
+ * up in the same target shard is stored there once. Page ids are not preserved; pages link to each other by name. The
+ * source must have been opened by the wiki since it moved page contents to blobs.
+ *
+ * Once done, point wikidb.jdbc.url and wikidb.shards to the target and restart the wiki.
+ */
+public class ReshardTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReshardTool.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.err.println("Usage: ReshardTool <source url> <source shards> <target url> <target shards>");
+            System.exit(1);
+        }
+        String sourceUrl = args[0];
+        int sourceShards = Integer.parseInt(args[1]);
+        String targetUrl = args[2];
+        int targetShards = Integer.parseInt(args[3]);
+
+        Properties queries = new Properties();
+        try (InputStream in = ReshardTool.class.getResourceAsStream("/db-queries.properties")) {
+            queries.load(in);
+        }
+        Class.forName("org.hsqldb.jdbcDriver");
+        new ReshardTool().reshard(queries, sourceUrl, sourceShards, targetUrl, targetShards);
+    }
+
+    void reshard(Properties queries, String sourceUrl, int sourceShards, String targetUrl, int targetShards)
+            throws SQLException, IOException {
+        Set<String> sourceUrls = new HashSet<>();
+        for (int shard = 0; shard < sourceShards; shard++) {
+            sourceUrls.add(ShardedWikiDatabaseService.shardUrl(sourceUrl, shard, sourceShards));
+        }
+
+        List<Connection> targets = new ArrayList<>();
+        List<PreparedStatement> blobInserts = new ArrayList<>();
+        List<PreparedStatement> blobReferences = new ArrayList<>();
+        List<PreparedStatement> pageInserts = new ArrayList<>();
+        int[] pending = new int[targetShards];
+        long copied = 0;
+        long startedAt = System.currentTimeMillis();
+        try {
+            for (int shard = 0; shard < targetShards; shard++) {
+                String url = ShardedWikiDatabaseService.shardUrl(targetUrl, shard, targetShards);
+                if (sourceUrls.contains(url)) {
+                    throw new IOException("Target shard " + url + " is also a source shard");
+                }
+                Connection target = DriverManager.getConnection(url);
+                targets.add(target);
+                try (Statement statement = target.createStatement()) {
+                    statement.execute(queries.getProperty("create-pages-table"));
+                    statement.execute(queries.getProperty("create-blobs-table"));
+                    try (ResultSet count = statement.executeQuery(queries.getProperty("count-pages"))) {
+                        count.next();
+                        if (count.getLong(1) > 0) {
+                            throw new IOException("Target shard " + url + " is not empty");
+                        }
+                    }
+                }
+                target.setAutoCommit(false);
+                blobInserts.add(target.prepareStatement(queries.getProperty("insert-blob")));
+                blobReferences.add(target.prepareStatement(queries.getProperty("reference-blob")));
+                pageInserts.add(target.prepareStatement(queries.getProperty("create-page")));
+            }
+
+            for (String url : sourceUrls) {
+                try (Connection source = DriverManager.getConnection(url);
+                     Statement statement = source.createStatement()) {
+                    statement.setFetchSize(BATCH_SIZE);
+                    try (ResultSet pages = statement.executeQuery(queries.getProperty("all-pages-rendered"))) {
+                        while (pages.next()) {
+                            String name = pages.getString(1);
+                            int shard = ShardedWikiDatabaseService.shardOf(name, targetShards);
+                            String hash = pages.getString(5);
+                            PreparedStatement blobInsert = blobInserts.get(shard);
+                            blobInsert.setString(1, hash);
+                            blobInsert.setString(2, pages.getString(2));
+                            blobInsert.setString(3, pages.getString(3));
+                            blobInsert.setInt(4, pages.getInt(4));
+                            blobInsert.addBatch();
+                            PreparedStatement blobReference = blobReferences.get(shard);
+                            blobReference.setString(1, hash);
+                            blobReference.addBatch();
+                            PreparedStatement pageInsert = pageInserts.get(shard);
+                            pageInsert.setString(1, name);
+                            pageInsert.setString(2, hash);
+                            long created = pages.getLong(6);
+                            if (pages.wasNull()) {
+                                pageInsert.setNull(3, Types.BIGINT);
+                            } else {
+                                pageInsert.setLong(3, created);
+                            }
+                            pageInsert.addBatch();
+                            if (++pending[shard] == BATCH_SIZE) {
+                                flush(targets.get(shard), blobInsert, blobReference, pageInsert);
+                                pending[shard] = 0;
+                            }
+                            copied++;
+                        }
+                    }
+                    statement.execute("shutdown");
+                }
+                LOGGER.info("Copied the pages of {}", url);
+            }
+            for (int shard = 0; shard < targetShards; shard++) {
+                if (pending[shard] > 0) {
+                    flush(targets.get(shard), blobInserts.get(shard), blobReferences.get(shard),
+                            pageInserts.get(shard));
+                }
+            }
+        } finally {
+            for (Connection target : targets) {
+                try (Statement statement = target.createStatement()) {
+                    statement.execute("shutdown");
+                }
+                target.close();
+            }
+        }
+        LOGGER.info("Resharded {} pages from {} to {} shards in {} ms", copied, sourceShards, targetShards,
+                System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Blobs are inserted before they are referenced, and referenced before the pages referencing them are inserted.
+     */
+    private static void flush(Connection target, PreparedStatement... batches) throws SQLException {
+        for (PreparedStatement batch : batches) {
+            batch.executeBatch();
+        }
+        target.commit();
+    }
+}
@@ -0,0 +1,136 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits between the event bus and the service proxy handler, to time every call from its reception to its reply.
+ *
+ * The proxy handler replies through the message it is given, so it gets a message whose replies carry the service
+ * time and the correlation id of the call in their headers. The correlation id is in the MDC while the call is
+ * dispatched, and calls slower than a threshold are logged with it, so that a slow HTTP request can be matched to the
+ * service calls it made. The call times also tell DatabaseMaintenance when the service is quiet.
+ */
+class ServiceCallTimer implements Handler<Message<JsonObject>> {
+
+    static final String MDC_REQUEST_ID = "requestId";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceCallTimer.class);
+
+    private final Handler<Message<JsonObject>> proxyHandler;
+    private final long slowCallThresholdNanos;
+    private final DatabaseMaintenance maintenance;
+
+    ServiceCallTimer(Handler<Message<JsonObject>> proxyHandler, long slowCallThresholdMillis,
+                     DatabaseMaintenance maintenance) {
+        this.proxyHandler = proxyHandler;
+        this.slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowCallThresholdMillis);
+        this.maintenance = maintenance;
+    }
+
+    @Override
+    public void handle(Message<JsonObject> message) {
+        String requestId = message.headers().get(ServiceHeaders.REQUEST_ID);
+        if (requestId == null) {
+            proxyHandler.handle(new TimedMessage(message, null));
+            return;
+        }
+        MDC.put(MDC_REQUEST_ID, requestId);
+        try {
+            proxyHandler.handle(new TimedMessage(message, requestId));
+        } finally {
+            MDC.remove(MDC_REQUEST_ID);
+        }
+    }
+
+    private class TimedMessage implements Message<JsonObject> {
+
+        private final Message<JsonObject> call;
+        private final String requestId;
+        private final long receivedAt = System.nanoTime();
+
+        TimedMessage(Message<JsonObject> call, String requestId) {
+            this.call = call;
+            this.requestId = requestId;
+        }
+
+        private DeliveryOptions timed(DeliveryOptions options) {
+            long elapsed = System.nanoTime() - receivedAt;
+            maintenance.recordCall(elapsed);
+            if (elapsed >= slowCallThresholdNanos) {
+                LOGGER.warn("Slow {} call: {} ms (request {})", call.headers().get("action"),
+                        TimeUnit.NANOSECONDS.toMillis(elapsed), requestId != null ? requestId : "-");
+            }
+            options.addHeader(ServiceHeaders.SERVICE_TIME, Long.toString(TimeUnit.NANOSECONDS.toMicros(elapsed)));
+            if (requestId != null) {
+                options.addHeader(ServiceHeaders.REQUEST_ID, requestId);
+            }
+            return options;
+        }
+
+        @Override
+        public String address() {
+            return call.address();
+        }
+
+        @Override
+        public MultiMap headers() {
+            return call.headers();
+        }
+
+        @Override
+        public JsonObject body() {
+            return call.body();
+        }
+
+        @Override
+        public String replyAddress() {
+            return call.replyAddress();
+        }
+
+        @Override
+        public boolean isSend() {
+            return call.isSend();
+        }
+
+        @Override
+        public void reply(Object message) {
+            call.reply(message, timed(new DeliveryOptions()));
+        }
+
+        @Override
+        public <R> void reply(Object message, Handler<AsyncResult<Message<R>>> replyHandler) {
+            call.reply(message, timed(new DeliveryOptions()), replyHandler);
+        }
+
+        @Override
+        public void reply(Object message, DeliveryOptions options) {
+            call.reply(message, timed(new DeliveryOptions(options)));
+        }
+
+        @Override
+        public <R> void reply(Object message, DeliveryOptions options, Handler<AsyncResult<Message<R>>> replyHandler) {
+            call.reply(message, timed(new DeliveryOptions(options)), replyHandler);
+        }
+
+        /**
+         * Replies with the failure as Message#fail does, but timed like any other reply.
+         */
+        @Override
+        public void fail(int failureCode, String message) {
+            call.reply(new ReplyException(ReplyFailure.RECIPIENT_FAILURE, failureCode, message),
+                    timed(new DeliveryOptions()));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.vertx.guides.wiki.database;
+
+/**
+ * Event bus headers that follow a request through the database service, next to the "action" header of the service
+ * proxies.
+ */
+public final class ServiceHeaders {
+
+    /**
+     * The correlation id of the HTTP request a call is made for, echoed in the reply.
+     */
+    public static final String REQUEST_ID = "x-request-id";
+
+    /**
+     * Set on every reply: the time in microseconds between the service receiving the call and replying to it.
+     */
+    public static final String SERVICE_TIME = "x-service-time-us";
+
+    private ServiceHeaders() {
+    }
+}
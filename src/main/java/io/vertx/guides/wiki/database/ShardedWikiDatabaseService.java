@@ -0,0 +1,340 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Spreads pages over several WikiDatabaseService shards, each with its own database file and connection pool.
+ *
+ * A page lives in the shard given by a stable hash of its name, so operations on a single page by name go to one
+ * shard. Page ids are only unique within a shard, hence the ids handed out are global: local id * shard count + shard
+ * index, which also tells savePage and deletePage where to go. Listings are scattered to every shard and the results
+ * gathered and merged in order: of global id, or of creation stamp for the pages data.
+ *
+ * Each shard keeps its own page name filter for its own lookups, while this service maintains the shared one that the
+ * HTTP verticles consult.
+ */
+class ShardedWikiDatabaseService implements WikiDatabaseService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedWikiDatabaseService.class);
+
+    private final List<WikiDatabaseService> shards;
+    private final PageNameFilter pageFilter;
+
+    private ShardedWikiDatabaseService(List<WikiDatabaseService> shards, PageNameFilter pageFilter) {
+        this.shards = shards;
+        this.pageFilter = pageFilter;
+    }
+
+    /**
+     * Creates a store over the given shards, which is ready once the shared page name filter has been rebuilt.
+     */
+    static ShardedWikiDatabaseService create(List<WikiDatabaseService> shards,
+                                             PageNameFilter pageFilter,
+                                             Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        ShardedWikiDatabaseService store = new ShardedWikiDatabaseService(shards, pageFilter);
+        store.rebuildPageFilter(rebuilt -> readyHandler.handle(rebuilt.map(store)));
+        return store;
+    }
+
+    /**
+     * The shard of a page, from a hash of its name that does not depend on the JVM (see also ReshardTool).
+     */
+    static int shardOf(String name, int shardCount) {
+        CRC32 crc = new CRC32();
+        crc.update(name.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    /**
+     * The JDBC URL of a shard: the database name suffixed with the shard index (before the URL properties, if any), or
+     * the configured URL itself when there is a single shard, so that existing databases keep working unchanged.
+     */
+    static String shardUrl(String baseUrl, int shard, int shardCount) {
+        if (shardCount == 1) {
+            return baseUrl;
+        }
+        int properties = baseUrl.indexOf(';');
+        if (properties < 0) {
+            return baseUrl + "-shard" + shard;
+        }
+        return baseUrl.substring(0, properties) + "-shard" + shard + baseUrl.substring(properties);
+    }
+
+    /**
+     * Fails rather than wrap around when the local id is too large for its global id to fit in an int.
+     */
+    private int globalId(int shard, int localId) {
+        try {
+            return Math.addExact(Math.multiplyExact(localId, shards.size()), shard);
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("Page id " + localId + " of shard " + shard + " has no global id over "
+                    + shards.size() + " shards", e);
+        }
+    }
+
+    private int shardOfId(int id) {
+        return Math.floorMod(id, shards.size());
+    }
+
+    private int localId(int id) {
+        return Math.floorDiv(id, shards.size());
+    }
+
+    private void rebuildPageFilter(Handler<AsyncResult<Void>> doneHandler) {
+        boolean rebuilding = pageFilter.beginRebuild();
+        fetchAllPages(res -> {
+            if (res.succeeded()) {
+                if (rebuilding) {
+                    pageFilter.rebuild(res.result()
+                            .stream()
+                            .map(String.class::cast)
+                            .collect(Collectors.toList()));
+                }
+                doneHandler.handle(Future.succeededFuture());
+            } else {
+                if (rebuilding) {
+                    pageFilter.abortRebuild();
+                }
+                LOGGER.error("Could not rebuild the page name filter", res.cause());
+                doneHandler.handle(Future.failedFuture(res.cause()));
+            }
+        });
+    }
+
+    /**
+     * Calls every shard and gathers the results in shard order.
+     */
+    private <T> Future<List<T>> scatter(BiConsumer<Integer, Handler<AsyncResult<T>>> call) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Future<T> future = Future.future();
+            call.accept(shard, future.completer());
+            futures.add(future);
+        }
+        return CompositeFuture.all(new ArrayList<>(futures)).map(CompositeFuture::<T>list);
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+        this.<JsonArray>scatter((shard, handler) -> shards.get(shard).fetchAllPages(handler))
+                .map(results -> new JsonArray(results
+                        .stream()
+                        .flatMap(JsonArray::stream)
+                        .sorted()
+                        .collect(Collectors.toList())))
+                .setHandler(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+        int shard = shardOf(name, shards.size());
+        Future<JsonObject> fetched = Future.future();
+        shards.get(shard).fetchPage(name, fetched.completer());
+        fetched.map(page -> {
+            if (page.getBoolean("found")) {
+                page.put("id", globalId(shard, page.getInteger("id")));
+            }
+            return page;
+        }).setHandler(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+        shards.get(shardOf(title, shards.size())).createPage(title, markdown, res -> {
+            if (res.succeeded()) {
+                pageFilter.add(title);
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+        shards.get(shardOfId(id)).savePage(localId(id), markdown, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits,
+                                        Handler<AsyncResult<JsonObject>> resultHandler) {
+        shards.get(shardOfId(id)).patchPage(localId(id), baseRevision, edits, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        shards.get(shardOfId(id)).deletePage(localId(id), res -> {
+            if (res.succeeded() && pageFilter.recordDeletion()) {
+                rebuildPageFilter(rebuilt -> {
+                });
+            }
+            resultHandler.handle(res);
+        });
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<String>> resultHandler) {
+        shards.get(shardOfId(id)).fetchPageName(localId(id), resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        this.<List<JsonObject>>scatter((shard, handler) -> shards.get(shard).fetchAllPagesData(handler))
+                .map(this::mergeByCreation)
+                .setHandler(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchExistingPages(List<String> names, Handler<AsyncResult<List<String>>> resultHandler) {
+        List<List<String>> namesByShard = new ArrayList<>();
+        shards.forEach(shard -> namesByShard.add(new ArrayList<>()));
+        names.forEach(name -> namesByShard.get(shardOf(name, shards.size())).add(name));
+        this.<List<String>>scatter((shard, handler) -> shards.get(shard).fetchExistingPages(namesByShard.get(shard), handler))
+                .map(results -> results
+                        .stream()
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList()))
+                .setHandler(resultHandler);
+        return this;
+    }
+
+    /**
+     * A page of shard s has a global id above afterId exactly when its local id is above (afterId - s) / shard count
+     * rounded down, so each shard returns its next pages and the first ones of the merge are the global next pages.
+     */
+    @Override
+    public WikiDatabaseService fetchPagesAfter(int afterId, int limit,
+                                               Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        this.<List<JsonObject>>scatter((shard, handler) -> shards.get(shard)
+                .fetchPagesAfter(Math.floorDiv(afterId - shard, shards.size()), limit, handler))
+                .map(results -> mergeById(results)
+                        .stream()
+                        .limit(limit)
+                        .collect(Collectors.toList()))
+                .setHandler(resultHandler);
+        return this;
+    }
+
+    /**
+     * The recent changes are kept in front of the stores, by RecentChangesWikiDatabaseService.
+     */
+    @Override
+    public WikiDatabaseService fetchRecentChanges(int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        resultHandler.handle(Future.failedFuture("Recent changes are not kept by the page store"));
+        return this;
+    }
+
+    /**
+     * The shards share one link graph, so any of them knows the links between all pages.
+     */
+    @Override
+    public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<List<String>>> resultHandler) {
+        shards.get(0).fetchBacklinks(name, resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchOrphanedPages(Handler<AsyncResult<List<String>>> resultHandler) {
+        shards.get(0).fetchOrphanedPages(resultHandler);
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<JsonObject>> resultHandler) {
+        List<JsonArray> pagesByShard = new ArrayList<>();
+        List<List<Integer>> indexesByShard = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            pagesByShard.add(new JsonArray());
+            indexesByShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            int shard = shardOf(pages.getJsonObject(i).getString("name"), shards.size());
+            pagesByShard.get(shard).add(pages.getJsonObject(i));
+            indexesByShard.get(shard).add(i);
+        }
+
+        this.<JsonObject>scatter((shard, handler) -> shards.get(shard).importPages(pagesByShard.get(shard), handler))
+                .setHandler(res -> {
+                    if (res.failed()) {
+                        resultHandler.handle(Future.failedFuture(res.cause()));
+                        return;
+                    }
+                    int imported = 0;
+                    JsonArray errors = new JsonArray();
+                    Set<Integer> failedIndexes = new HashSet<>();
+                    for (int shard = 0; shard < shards.size(); shard++) {
+                        JsonObject outcome = res.result().get(shard);
+                        imported += outcome.getInteger("imported");
+                        JsonArray shardErrors = outcome.getJsonArray("errors");
+                        for (int i = 0; i < shardErrors.size(); i++) {
+                            JsonObject error = shardErrors.getJsonObject(i);
+                            int index = indexesByShard.get(shard).get(error.getInteger("index"));
+                            failedIndexes.add(index);
+                            errors.add(error.copy().put("index", index));
+                        }
+                    }
+                    for (int i = 0; i < pages.size(); i++) {
+                        if (!failedIndexes.contains(i)) {
+                            pageFilter.add(pages.getJsonObject(i).getString("name"));
+                        }
+                    }
+                    resultHandler.handle(Future.succeededFuture(new JsonObject()
+                            .put("imported", imported)
+                            .put("errors", errors)));
+                });
+        return this;
+    }
+
+    /**
+     * Translates the ID of the rows of each shard to global ids, then merges them in id order.
+     */
+    private List<JsonObject> mergeById(List<List<JsonObject>> rowsByShard) {
+        List<JsonObject> merged = globalRows(rowsByShard);
+        merged.sort(Comparator.comparingInt(row -> row.getInteger("ID")));
+        return merged;
+    }
+
+    /**
+     * Translates the ID of the rows of each shard to global ids, then merges them in creation order. Pages created
+     * before the creation stamp have none and come first, in id order.
+     */
+    private List<JsonObject> mergeByCreation(List<List<JsonObject>> rowsByShard) {
+        List<JsonObject> merged = globalRows(rowsByShard);
+        merged.sort(Comparator.<JsonObject>comparingLong(row -> row.getLong("CREATED", 0L))
+                .thenComparingInt(row -> row.getInteger("ID")));
+        return merged;
+    }
+
+    private List<JsonObject> globalRows(List<List<JsonObject>> rowsByShard) {
+        List<JsonObject> rows = new ArrayList<>();
+        for (int shard = 0; shard < rowsByShard.size(); shard++) {
+            for (JsonObject row : rowsByShard.get(shard)) {
+                rows.add(row.copy().put("ID", globalId(shard, row.getInteger("ID"))));
+            }
+        }
+        return rows;
+    }
+}
@@ -2,10 +2,42 @@ package io.vertx.guides.wiki.database;
 
 enum SqlQuery {
     CREATE_PAGES_TABLE,
+    CREATE_BLOBS_TABLE,
     ALL_PAGES,
     GET_PAGE,
+    GET_PAGE_HASH,
     CREATE_PAGE,
     SAVE_PAGE,
     DELETE_PAGE,
-    ALL_PAGES_DATA
+    GET_PAGE_NAME,
+    ALL_PAGES_DATA,
+    EXISTING_PAGES,
+    BLOB_EXISTS,
+    EXISTING_BLOBS,
+    INSERT_BLOB,
+    REFERENCE_BLOB,
+    RELEASE_BLOB,
+    COLLECT_BLOBS,
+    STALE_BLOBS,
+    UPDATE_BLOB_RENDERING,
+    GET_PAGE_REVISION,
+    PATCH_PAGE,
+    PAGES_AFTER,
+    PAGE_HASHES,
+    ADD_REVISION_COLUMN,
+    ADD_CREATED_COLUMN,
+    ADD_CONTENT_HASH_COLUMN,
+    LEGACY_PAGES,
+    SET_PAGE_HASH,
+    COUNT_BLOB_REFERENCES,
+    DROP_CONTENT_COLUMN,
+    DROP_HTML_COLUMN,
+    DROP_RENDER_VERSION_COLUMN,
+    SET_PAGES_TABLE_TYPE,
+    SET_BLOBS_TABLE_TYPE,
+    SET_LINKS_TABLE_TYPE,
+    CREATE_LINKS_TABLE,
+    PAGE_LINKS,
+    DELETE_LINKS,
+    INSERT_LINK
 }
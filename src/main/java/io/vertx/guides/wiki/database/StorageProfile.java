@@ -0,0 +1,96 @@
+package io.vertx.guides.wiki.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named HSQLDB storage setups, selected by the wikidb.storage.profile configuration entry.
+ *
+ * A profile sets the type of the Pages and Blobs tables and appends connection properties to the configured JDBC
+ * URL. Properties already present in the URL win, so a profile can be fine-tuned from the URL. Only file databases
+ * are affected by the table type: converting a table rewrites it, which happens once, on the first start with the new
+ * profile. The contents and renderings of the blobs are LOBs, which HSQLDB keeps in the .lobs file whatever the table
+ * type, so the table type decides where the page rows and the blob keys live.
+ */
+public enum StorageProfile {
+
+    /**
+     * The tables and URL are left as they are.
+     */
+    DEFAULT("default", null),
+
+    /**
+     * All rows in memory, loaded from the .script file on startup, with commits synced to the redo log every 100 ms
+     * rather than HSQLDB's default 500 ms. Fastest reads, but startup time and heap grow with the wiki.
+     */
+    DURABLE_MEMORY("durable-memory", "MEMORY",
+            "hsqldb.write_delay_millis", "100"),
+
+    /**
+     * Rows in the .data file, accessed through memory-mapped I/O, with a bounded cache of rows in the heap: for wikis
+     * larger than the heap, at the cost of reads missing the cache.
+     */
+    LARGE_CACHED("large-cached", "CACHED",
+            "hsqldb.cache_rows", "100000",
+            "hsqldb.cache_size", "65536",
+            "hsqldb.nio_data_file", "true",
+            "hsqldb.nio_max_size", "1024",
+            "hsqldb.write_delay_millis", "500"),
+
+    /**
+     * An in-memory database named after the configured file, lost on shutdown: for tests and benchmarks.
+     */
+    EPHEMERAL("ephemeral", null);
+
+    private static final String FILE_URL_PREFIX = "jdbc:hsqldb:file:";
+    private static final String MEMORY_URL_PREFIX = "jdbc:hsqldb:mem:";
+
+    private final String configName;
+    private final String tableType;
+    private final Map<String, String> properties = new LinkedHashMap<>();
+
+    StorageProfile(String configName, String tableType, String... properties) {
+        this.configName = configName;
+        this.tableType = tableType;
+        for (int i = 0; i < properties.length; i += 2) {
+            this.properties.put(properties[i], properties[i + 1]);
+        }
+    }
+
+    /**
+     * @return the profile with this name in the configuration, or null when there is none
+     */
+    public static StorageProfile named(String configName) {
+        for (StorageProfile profile : values()) {
+            if (profile.configName.equals(configName)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    public String configName() {
+        return configName;
+    }
+
+    /**
+     * @return the type the tables of a database with this URL are converted to, or null to leave them as they are
+     */
+    String tableType(String url) {
+        return url.startsWith(FILE_URL_PREFIX) ? tableType : null;
+    }
+
+    public String url(String configuredUrl) {
+        String url = configuredUrl;
+        if (this == EPHEMERAL && url.startsWith(FILE_URL_PREFIX)) {
+            url = MEMORY_URL_PREFIX + url.substring(FILE_URL_PREFIX.length());
+        }
+        StringBuilder tuned = new StringBuilder(url);
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            if (!url.contains(";" + property.getKey() + "=")) {
+                tuned.append(';').append(property.getKey()).append('=').append(property.getValue());
+            }
+        }
+        return tuned.toString();
+    }
+}
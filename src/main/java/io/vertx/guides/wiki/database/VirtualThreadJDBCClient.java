@@ -0,0 +1,309 @@
+package io.vertx.guides.wiki.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.impl.TaskQueue;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.jdbc.impl.actions.AbstractJDBCAction;
+import io.vertx.ext.jdbc.impl.actions.JDBCAutoCommit;
+import io.vertx.ext.jdbc.impl.actions.JDBCBatch;
+import io.vertx.ext.jdbc.impl.actions.JDBCCallable;
+import io.vertx.ext.jdbc.impl.actions.JDBCCommit;
+import io.vertx.ext.jdbc.impl.actions.JDBCExecute;
+import io.vertx.ext.jdbc.impl.actions.JDBCQuery;
+import io.vertx.ext.jdbc.impl.actions.JDBCRollback;
+import io.vertx.ext.jdbc.impl.actions.JDBCStatementHelper;
+import io.vertx.ext.jdbc.impl.actions.JDBCUpdate;
+import io.vertx.ext.jdbc.impl.actions.StreamQuery;
+import io.vertx.ext.jdbc.spi.DataSourceProvider;
+import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLOptions;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.TransactionIsolation;
+import io.vertx.ext.sql.UpdateResult;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A JDBC client that runs every blocking JDBC call on a virtual thread of its own instead of the fixed-size Vert.x
+ * worker pool, so that the connection pool is the only bound on the number of statements in flight.
+ *
+ * Connections are handed out through a fair semaphore with one permit per pooled connection: callers waiting for a
+ * connection park on the semaphore rather than inside the pool, where c3p0 waits in a synchronized block and would pin
+ * the carrier thread. The statements of a connection run one after the other in the order they were issued, and
+ * their results are handled on the context of the caller, as with the JDBC client. The statements themselves are the
+ * actions of the JDBC client, so parameters and results convert exactly as they do on the worker pool.
+ */
+final class VirtualThreadJDBCClient implements JDBCClient {
+
+    private final Vertx vertx;
+    private final DataSourceProvider provider;
+    private final java.util.concurrent.Future<DataSource> dataSource;
+    private final Semaphore connections;
+    private final ExecutorService executor;
+    private final JDBCStatementHelper helper;
+
+    private VirtualThreadJDBCClient(Vertx vertx, DataSourceProvider provider, JsonObject config, int maxPoolSize) {
+        this.vertx = vertx;
+        this.provider = provider;
+        this.connections = new Semaphore(maxPoolSize, true);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("wiki-jdbc-", 0).factory());
+        this.helper = new JDBCStatementHelper(config);
+        this.dataSource = executor.submit(() -> provider.getDataSource(config));
+    }
+
+    /**
+     * Creates a client over a pool of at most maxPoolSize connections, which is closed along with the current context.
+     */
+    static VirtualThreadJDBCClient create(Vertx vertx, DataSourceProvider provider, JsonObject config, int maxPoolSize) {
+        VirtualThreadJDBCClient client = new VirtualThreadJDBCClient(vertx, provider, config, maxPoolSize);
+        vertx.getOrCreateContext().addCloseHook(client::close);
+        return client;
+    }
+
+    @Override
+    public SQLClient getConnection(Handler<AsyncResult<SQLConnection>> handler) {
+        run(vertx.getOrCreateContext(), () -> {
+            connections.acquire();
+            try {
+                return new VirtualThreadConnection(dataSource().getConnection());
+            } catch (Exception e) {
+                connections.release();
+                throw e;
+            }
+        }, handler);
+        return this;
+    }
+
+    /**
+     * Closes the pool. Closing it again, as the close hook of the context does after an explicit close, does nothing.
+     */
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        if (executor.isShutdown()) {
+            if (handler != null) {
+                vertx.getOrCreateContext().runOnContext(v -> handler.handle(Future.succeededFuture()));
+            }
+            return;
+        }
+        this.<Void>run(vertx.getOrCreateContext(), () -> {
+            provider.close(dataSource());
+            return null;
+        }, closed -> {
+            executor.shutdown();
+            if (handler != null) {
+                handler.handle(closed);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        close(null);
+    }
+
+    private DataSource dataSource() throws Exception {
+        try {
+            return dataSource.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private <T> void run(Context context, Callable<T> task, Handler<AsyncResult<T>> handler) {
+        if (executor.isShutdown()) {
+            context.runOnContext(v -> handler.handle(Future.failedFuture("The JDBC client is closed")));
+            return;
+        }
+        executor.execute(() -> complete(context, task, handler));
+    }
+
+    private static <T> void complete(Context context, Callable<T> task, Handler<AsyncResult<T>> handler) {
+        AsyncResult<T> result;
+        try {
+            result = Future.succeededFuture(task.call());
+        } catch (Throwable t) {
+            result = Future.failedFuture(t);
+        }
+        AsyncResult<T> done = result;
+        context.runOnContext(v -> handler.handle(done));
+    }
+
+    private final class VirtualThreadConnection implements SQLConnection {
+
+        private final Connection conn;
+        private SQLOptions options;
+        private CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+
+        VirtualThreadConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        /**
+         * Queues a task behind the earlier tasks of this connection, each running on a new virtual thread.
+         */
+        private synchronized <T> void submit(Callable<T> task, Handler<AsyncResult<T>> handler) {
+            Context context = vertx.getOrCreateContext();
+            last = last.thenRunAsync(() -> complete(context, task, handler), executor);
+        }
+
+        private <T> SQLConnection execute(AbstractJDBCAction<T> action, Handler<AsyncResult<T>> handler) {
+            submit(() -> action.execute(conn), handler);
+            return this;
+        }
+
+        private ContextInternal context() {
+            return (ContextInternal) vertx.getOrCreateContext();
+        }
+
+        @Override
+        public SQLConnection setOptions(SQLOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        @Override
+        public SQLConnection setAutoCommit(boolean autoCommit, Handler<AsyncResult<Void>> handler) {
+            return execute(new JDBCAutoCommit(vertx, options, context(), autoCommit), handler);
+        }
+
+        @Override
+        public SQLConnection execute(String sql, Handler<AsyncResult<Void>> handler) {
+            return execute(new JDBCExecute(vertx, options, context(), sql), handler);
+        }
+
+        @Override
+        public SQLConnection query(String sql, Handler<AsyncResult<ResultSet>> handler) {
+            return execute(new JDBCQuery(vertx, helper, options, context(), sql, null), handler);
+        }
+
+        @Override
+        public SQLConnection queryWithParams(String sql, JsonArray params, Handler<AsyncResult<ResultSet>> handler) {
+            return execute(new JDBCQuery(vertx, helper, options, context(), sql, params), handler);
+        }
+
+        /**
+         * Opening the stream runs on a virtual thread, fetching its rows runs on the worker pool like the JDBC client.
+         */
+        @Override
+        public SQLConnection queryStream(String sql, Handler<AsyncResult<SQLRowStream>> handler) {
+            return queryStreamWithParams(sql, null, handler);
+        }
+
+        @Override
+        public SQLConnection queryStreamWithParams(String sql, JsonArray params,
+                                                   Handler<AsyncResult<SQLRowStream>> handler) {
+            return execute(new StreamQuery(vertx, helper, options, context(), new TaskQueue(), sql, params), handler);
+        }
+
+        @Override
+        public SQLConnection update(String sql, Handler<AsyncResult<UpdateResult>> handler) {
+            return execute(new JDBCUpdate(vertx, helper, options, context(), sql, null), handler);
+        }
+
+        @Override
+        public SQLConnection updateWithParams(String sql, JsonArray params, Handler<AsyncResult<UpdateResult>> handler) {
+            return execute(new JDBCUpdate(vertx, helper, options, context(), sql, params), handler);
+        }
+
+        @Override
+        public SQLConnection call(String sql, Handler<AsyncResult<ResultSet>> handler) {
+            return execute(new JDBCCallable(vertx, helper, options, context(), sql, null, null), handler);
+        }
+
+        @Override
+        public SQLConnection callWithParams(String sql, JsonArray params, JsonArray outputs,
+                                            Handler<AsyncResult<ResultSet>> handler) {
+            return execute(new JDBCCallable(vertx, helper, options, context(), sql, params, outputs), handler);
+        }
+
+        @Override
+        public SQLConnection batch(List<String> sqlStatements, Handler<AsyncResult<List<Integer>>> handler) {
+            return execute(new JDBCBatch(vertx, helper, options, context(), sqlStatements), handler);
+        }
+
+        @Override
+        public SQLConnection batchWithParams(String sql, List<JsonArray> args,
+                                             Handler<AsyncResult<List<Integer>>> handler) {
+            return execute(new JDBCBatch(vertx, helper, options, context(), sql, args), handler);
+        }
+
+        @Override
+        public SQLConnection batchCallableWithParams(String sql, List<JsonArray> inArgs, List<JsonArray> outArgs,
+                                                     Handler<AsyncResult<List<Integer>>> handler) {
+            return execute(new JDBCBatch(vertx, helper, options, context(), sql, inArgs, outArgs), handler);
+        }
+
+        @Override
+        public SQLConnection commit(Handler<AsyncResult<Void>> handler) {
+            return execute(new JDBCCommit(vertx, options, context()), handler);
+        }
+
+        @Override
+        public SQLConnection rollback(Handler<AsyncResult<Void>> handler) {
+            return execute(new JDBCRollback(vertx, options, context()), handler);
+        }
+
+        @Override
+        public SQLConnection setTransactionIsolation(TransactionIsolation isolation,
+                                                     Handler<AsyncResult<Void>> handler) {
+            submit(() -> {
+                conn.setTransactionIsolation(isolation.getType());
+                return null;
+            }, handler);
+            return this;
+        }
+
+        @Override
+        public SQLConnection getTransactionIsolation(Handler<AsyncResult<TransactionIsolation>> handler) {
+            submit(() -> TransactionIsolation.from(conn.getTransactionIsolation()), handler);
+            return this;
+        }
+
+        /**
+         * Returns the connection to the pool once the statements issued before have run.
+         */
+        @Override
+        public void close(Handler<AsyncResult<Void>> handler) {
+            this.<Void>submit(() -> {
+                try {
+                    conn.close();
+                } finally {
+                    connections.release();
+                }
+                return null;
+            }, closed -> {
+                if (handler != null) {
+                    handler.handle(closed);
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            close(null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <C> C unwrap() {
+            return (C) conn;
+        }
+    }
+}
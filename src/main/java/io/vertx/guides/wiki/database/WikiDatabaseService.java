@@ -5,10 +5,13 @@ import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.guides.wiki.markdown.MarkdownRenderPool;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 
@@ -61,34 +64,169 @@ public interface WikiDatabaseService {
     /**
      * Since services provide asynchronous results, the last argument of a service method needs to be
      * a Handler<AsyncResult<T>> where T is any of the types suitable for code generation as described
-     * above.
+     * above. The result tells the name of the page saved and its sizes before and after (see PageWrite).
      * @param id
      * @param markdown
      * @param resultHandler
      * @return
      */
     @Fluent
-    WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler);
+    WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<JsonObject>> resultHandler);
 
+    /**
+     * Saves a page by applying a patch (see PagePatch) to the revision of the page it was made against, so that small
+     * edits of large pages do not need to send the whole content. The result tells whether the page was saved and its
+     * current revision: the patch is not applied when the page has been written since the base revision. Patches that
+     * do not apply to the content of the base revision fail. A saved patch also tells the name of the page and its sizes
+     * before and after (see PageWrite).
+     * @param id
+     * @param baseRevision
+     * @param edits
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    /**
+     * Deletes a page by id. The result tells the name of the page deleted and the size of its content (see PageWrite).
+     * @param id
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService deletePage(int id, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    /**
+     * Resolves the name of a page from its id, or null when there is no such page.
+     * @param id
+     * @param resultHandler
+     * @return
+     */
     @Fluent
-    WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler);
+    WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<String>> resultHandler);
 
+    /**
+     * Fetches every page with its content (ID, NAME and CONTENT, plus the CREATED stamp of the JDBC store), in
+     * creation order.
+     * @param resultHandler
+     * @return
+     */
     @Fluent
     WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler);
 
+    /**
+     * Resolves which of the given page names exist, in a single query whatever the number of names, so that
+     * rendering the links of a page costs one round trip.
+     * @param names
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService fetchExistingPages(List<String> names, Handler<AsyncResult<List<String>>> resultHandler);
+
+    /**
+     * Fetches the next pages in id order, starting after the given id, so that all pages can be read in bounded
+     * batches (ID, NAME and CONTENT, like fetchAllPagesData).
+     * @param afterId
+     * @param limit
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService fetchPagesAfter(int afterId, int limit, Handler<AsyncResult<List<JsonObject>>> resultHandler);
+
+    /**
+     * Creates or replaces a batch of pages, each given as an object with a name and a content, in one transaction
+     * when the backend has them. The result counts the imported pages and lists the index and error message of the
+     * pages that could not be imported.
+     * @param pages
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    /**
+     * Lists the latest page changes, most recent first, without any database access: each change is an object with
+     * the page name, the action (created, updated, deleted or imported), a timestamp in milliseconds, the size of the
+     * page in characters after the change and the size delta, when known. Only the last changes are kept, see
+     * RecentChanges.
+     * @param limit
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService fetchRecentChanges(int limit, Handler<AsyncResult<JsonArray>> resultHandler);
+
+    /**
+     * Lists the pages linking to a page, sorted by name, from the link graph the page store maintains as pages are
+     * written (see LinkGraph) instead of parsing every page. The page itself does not need to exist.
+     * @param name
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<List<String>>> resultHandler);
+
+    /**
+     * Lists the pages no other page links to, sorted by name, from the link graph.
+     * @param resultHandler
+     * @return
+     */
+    @Fluent
+    WikiDatabaseService fetchOrphanedPages(Handler<AsyncResult<List<String>>> resultHandler);
+
 
     /**
      * It is a good practice that service interfaces provide static methods to create instances of both the
      * actual service implementation and proxy for client code over the event bus.
      * @param dbClient
      * @param sqlQueries
+     * @param pageFilter
+     * @param renderPool
+     * @param linkGraph
      * @param readyHandler
      * @return
      */
     static WikiDatabaseService create(JDBCClient dbClient,
                                       HashMap<SqlQuery, String> sqlQueries,
+                                      PageNameFilter pageFilter,
+                                      MarkdownRenderPool renderPool,
+                                      LinkGraph linkGraph,
                                       Handler<AsyncResult<WikiDatabaseService>> readyHandler){
-        return new WikiDatabaseServiceImpl(dbClient, sqlQueries, readyHandler);
+        return WikiDatabaseServiceImpl.create(dbClient, sqlQueries, pageFilter, renderPool, linkGraph, readyHandler);
+    }
+
+    /**
+     * Creates a service spreading pages over the given shards by a hash of their name.
+     * @param shards
+     * @param pageFilter
+     * @param readyHandler
+     * @return
+     */
+    static WikiDatabaseService createSharded(List<WikiDatabaseService> shards,
+                                             PageNameFilter pageFilter,
+                                             Handler<AsyncResult<WikiDatabaseService>> readyHandler){
+        return ShardedWikiDatabaseService.create(shards, pageFilter, readyHandler);
+    }
+
+    /**
+     * Creates the log-structured implementation, which keeps pages in an append-only memory-mapped file instead of
+     * a SQL database.
+     * @param vertx
+     * @param file
+     * @param pageFilter
+     * @param syncIntervalMillis
+     * @param readyHandler
+     * @return
+     */
+    static WikiDatabaseService createLogStore(Vertx vertx,
+                                              File file,
+                                              PageNameFilter pageFilter,
+                                              long syncIntervalMillis,
+                                              Handler<AsyncResult<WikiDatabaseService>> readyHandler){
+        return LogWikiDatabaseServiceImpl.create(vertx, file, pageFilter, syncIntervalMillis, readyHandler);
     }
 
     /**
@@ -109,4 +247,11 @@ public interface WikiDatabaseService {
         return new WikiDatabaseServiceVertxEBProxy(vertx,address);
     }
 
+    /**
+     * Creates a proxy whose calls are all sent with the given options, e.g. with the headers of ServiceHeaders.
+     */
+    static WikiDatabaseService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+        return new WikiDatabaseServiceVertxEBProxy(vertx, address, options);
+    }
+
 }
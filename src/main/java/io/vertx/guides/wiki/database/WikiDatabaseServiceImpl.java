@@ -1,6 +1,7 @@
 package io.vertx.guides.wiki.database;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
@@ -8,55 +9,610 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.UpdateResult;
+import io.vertx.guides.wiki.markdown.MarkdownRenderPool;
+import io.vertx.guides.wiki.jfr.SqlQueryEvent;
+import io.vertx.guides.wiki.markdown.MarkdownRenderer;
+import io.vertx.serviceproxy.ServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * The service implementation is a straightforward port of the previous WikiDatabaseVerticle class
  * code. The essential difference is the support of the asynchronous result handler in the constructor
  * (to report the initialization outcome) and in the service methods (to report the operation success).
+ *
+ * Page contents live in a content-addressed blob store: the Blobs table holds each distinct content once, keyed by
+ * its SHA-256 (see ContentHash) along with its rendering, and page rows reference the blob of their content. Pages
+ * sharing a body, reverted edits and imported duplicates therefore cost one blob, rendered once, and a save whose
+ * content has the hash the page already references is not written at all.
+ *
+ * Blobs count the pages referencing them. A write inserts the blob of the new content unless it is stored already,
+ * references it, writes the page row and releases the blob of the previous content, all in one transaction. The page
+ * statement is conditional on the content it replaces, so that a concurrent write of the same page rolls the
+ * transaction back instead of releasing the wrong blob; the write is then tried again. Blobs left without references
+ * are deleted by #collectBlobs, which the verticle runs periodically.
+ *
+ * The [[links]] of each page are stored in the Links table and kept in memory in a LinkGraph, which answers the
+ * backlink and orphan queries. Writes extract the links of the content written, and replace the stored links of the
+ * page in the same transaction when they differ from those of the graph; the graph is updated once committed.
  */
 public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WikiDatabaseServiceImpl.class);
 
+    private static final int RERENDER_BATCH_SIZE = 50;
+    private static final int MIGRATION_BATCH_SIZE = 100;
+
+    private static final AtomicLong lastCreated = new AtomicLong();
+
     private final HashMap<SqlQuery, String> sqlQueries;
     private final JDBCClient dbClient;
+    private final PageNameFilter pageFilter;
+    private final MarkdownRenderPool renderPool;
+    private final LinkGraph links;
 
 
-    public WikiDatabaseServiceImpl(JDBCClient dbClient,
-                                   HashMap<SqlQuery, String> sqlQueries,
-                                   Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+    private WikiDatabaseServiceImpl(JDBCClient dbClient,
+                                    HashMap<SqlQuery, String> sqlQueries,
+                                    PageNameFilter pageFilter,
+                                    MarkdownRenderPool renderPool,
+                                    LinkGraph links) {
         this.dbClient = dbClient;
         this.sqlQueries = sqlQueries;
+        this.pageFilter = pageFilter;
+        this.renderPool = renderPool;
+        this.links = links;
+    }
+
+    /**
+     * Creates a store over the given database, which is ready once its tables are prepared.
+     */
+    static WikiDatabaseServiceImpl create(JDBCClient dbClient,
+                                          HashMap<SqlQuery, String> sqlQueries,
+                                          PageNameFilter pageFilter,
+                                          MarkdownRenderPool renderPool,
+                                          LinkGraph links,
+                                          Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        WikiDatabaseServiceImpl store =
+                new WikiDatabaseServiceImpl(dbClient, sqlQueries, pageFilter, renderPool, links);
+        store.prepare(readyHandler);
+        return store;
+    }
+
+    private void prepare(Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        /*
+         * On a normal boot the tables exist already, so the page name filter is rebuilt first and the tables are
+         * only created when that query fails.
+         */
+        rebuildPageFilter(rebuilt -> {
+            if (rebuilt.succeeded()) {
+                prepareBlobs(readyHandler);
+                return;
+            }
+            dbClient.getConnection(ar -> {
+                if (ar.failed()) {
+                    LOGGER.error("Could not open a database connection", ar.cause());
+                    readyHandler.handle(Future.failedFuture(ar.cause()));
+                } else {
+                    SQLConnection connection = ar.result();
+                    connection.execute(sqlQueries.get(SqlQuery.CREATE_PAGES_TABLE), pages ->
+                            connection.execute(sqlQueries.get(SqlQuery.CREATE_BLOBS_TABLE), create -> {
+                                connection.close();
 
-        dbClient.getConnection(ar -> {
-            if (ar.failed()) {
-                LOGGER.error("Could not open a database connection", ar.cause());
-                readyHandler.handle(Future.failedFuture(ar.cause()));
+                                if (pages.failed() || create.failed()) {
+                                    Throwable cause = pages.failed() ? pages.cause() : create.cause();
+                                    LOGGER.error("Database preparation error", cause);
+                                    readyHandler.handle(Future.failedFuture(cause));
+                                } else {
+                                    rebuildPageFilter(retried -> {
+                                        if (retried.failed()) {
+                                            readyHandler.handle(Future.failedFuture(retried.cause()));
+                                        } else {
+                                            prepareBlobs(readyHandler);
+                                        }
+                                    });
+                                }
+                            }));
+                }
+            });
+        });
+    }
+
+    /**
+     * Adds the creation stamp to tables created before it, whose pages keep none.
+     */
+    private void prepareBlobs(Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        alter(SqlQuery.ADD_CREATED_COLUMN, true).setHandler(added -> moveToBlobs(readyHandler));
+    }
+
+    /**
+     * Moves the contents of tables created before the blob store into blobs, then starts rendering again the blobs
+     * that were rendered by another renderer version.
+     */
+    private void moveToBlobs(Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        dbClient.queryWithParams(sqlQueries.get(SqlQuery.GET_PAGE_HASH), new JsonArray().add(-1), check -> {
+            if (check.succeeded()) {
+                prepareLinks(readyHandler);
+                return;
+            }
+            LOGGER.info("Moving the page contents to the blob store");
+            // tables created before pages had revisions lack that column too
+            alter(SqlQuery.CREATE_BLOBS_TABLE, false)
+                    .compose(v -> alter(SqlQuery.ADD_REVISION_COLUMN, true))
+                    .compose(v -> alter(SqlQuery.ADD_CONTENT_HASH_COLUMN, false))
+                    .setHandler(altered -> {
+                        if (altered.failed()) {
+                            LOGGER.error("Database preparation error", altered.cause());
+                            readyHandler.handle(Future.failedFuture(altered.cause()));
+                        } else {
+                            moveLegacyContents(0, readyHandler);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * A stamp that orders page creations across the shards of this process: the current time in microseconds, or one
+     * more than the last stamp when creations come faster than that.
+     */
+    static long creationStamp() {
+        return lastCreated.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis() * 1000));
+    }
+
+    private Future<Void> alter(SqlQuery statement, boolean optional) {
+        Future<Void> altered = Future.future();
+        dbClient.update(sqlQueries.get(statement), res -> {
+            if (res.succeeded() || optional) {
+                altered.complete();
             } else {
-                SQLConnection connection = ar.result();
-                connection.execute(sqlQueries.get(SqlQuery.CREATE_PAGES_TABLE), create -> {
-                    connection.close();
+                altered.fail(res.cause());
+            }
+        });
+        return altered;
+    }
+
+    /**
+     * Moves the contents of the pages without a blob into blobs, one batch and one transaction at a time. Blobs are
+     * stored without rendering, so that they get rendered in the background once the service is ready.
+     */
+    private void moveLegacyContents(int movedSoFar, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        JsonArray params = new JsonArray().add(MIGRATION_BATCH_SIZE);
+        dbClient.queryWithParams(sqlQueries.get(SqlQuery.LEGACY_PAGES), params, res -> {
+            if (res.failed()) {
+                LOGGER.error("Database preparation error", res.cause());
+                readyHandler.handle(Future.failedFuture(res.cause()));
+                return;
+            }
+            List<JsonArray> rows = res.result().getResults();
+            if (rows.isEmpty()) {
+                finishMigration(movedSoFar, readyHandler);
+                return;
+            }
+            Map<String, JsonArray> blobs = new LinkedHashMap<>();
+            List<JsonArray> pages = new ArrayList<>();
+            for (JsonArray row : rows) {
+                String content = row.getString(1) != null ? row.getString(1) : "";
+                String hash = ContentHash.of(content);
+                blobs.putIfAbsent(hash, new JsonArray().add(hash).add(content).addNull().add(0));
+                pages.add(new JsonArray().add(hash).add(row.getInteger(0)));
+            }
+            transaction(connection -> batched(connection, SqlQuery.INSERT_BLOB, new ArrayList<>(blobs.values()))
+                    .compose(inserted -> batched(connection, SqlQuery.SET_PAGE_HASH, pages))
+                    .map(updated -> true), moved -> {
+                if (moved.failed()) {
+                    LOGGER.error("Database preparation error", moved.cause());
+                    readyHandler.handle(Future.failedFuture(moved.cause()));
+                } else {
+                    moveLegacyContents(movedSoFar + rows.size(), readyHandler);
+                }
+            });
+        });
+    }
+
+    private void finishMigration(int moved, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        alter(SqlQuery.COUNT_BLOB_REFERENCES, false)
+                .compose(v -> alter(SqlQuery.DROP_CONTENT_COLUMN, true))
+                .compose(v -> alter(SqlQuery.DROP_HTML_COLUMN, true))
+                .compose(v -> alter(SqlQuery.DROP_RENDER_VERSION_COLUMN, true))
+                .setHandler(done -> {
+                    if (done.failed()) {
+                        LOGGER.error("Database preparation error", done.cause());
+                        readyHandler.handle(Future.failedFuture(done.cause()));
+                    } else {
+                        LOGGER.info("Moved the contents of {} pages to the blob store", moved);
+                        prepareLinks(readyHandler);
+                    }
+                });
+    }
+
+    /**
+     * Loads the link graph from the Links table. Tables created before links were stored lack it, so it is created
+     * then filled from the page contents.
+     */
+    private void prepareLinks(Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        query(SqlQuery.PAGE_LINKS, res -> {
+            if (res.succeeded()) {
+                Map<String, Set<String>> pageLinks = new HashMap<>();
+                for (JsonArray row : res.result().getResults()) {
+                    Set<String> targets = pageLinks.computeIfAbsent(row.getString(0), name -> new HashSet<>());
+                    if (row.getString(1) != null) {
+                        targets.add(row.getString(1));
+                    }
+                }
+                pageLinks.forEach((name, targets) -> {
+                    links.addPage(name);
+                    links.setLinks(name, targets);
+                });
+                readyHandler.handle(Future.succeededFuture(this));
+                rerenderStaleBlobs(0);
+                return;
+            }
+            LOGGER.info("Storing the links of the pages");
+            alter(SqlQuery.CREATE_LINKS_TABLE, false).setHandler(created -> {
+                if (created.failed()) {
+                    LOGGER.error("Database preparation error", created.cause());
+                    readyHandler.handle(Future.failedFuture(created.cause()));
+                } else {
+                    storeLinks(-1, 0, readyHandler);
+                }
+            });
+        });
+    }
+
+    /**
+     * Extracts and stores the links of the pages following a page id, one batch and one transaction at a time. The
+     * links of each page are deleted first, so that an interrupted run can be started over.
+     */
+    private void storeLinks(int afterId, int storedSoFar, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        JsonArray params = new JsonArray().add(afterId).add(MIGRATION_BATCH_SIZE);
+        queryWithParams(SqlQuery.PAGES_AFTER, null, params, res -> {
+            if (res.failed()) {
+                LOGGER.error("Database preparation error", res.cause());
+                readyHandler.handle(Future.failedFuture(res.cause()));
+                return;
+            }
+            List<JsonArray> rows = res.result().getResults();
+            if (rows.isEmpty()) {
+                LOGGER.info("Stored the links of {} pages", storedSoFar);
+                readyHandler.handle(Future.succeededFuture(this));
+                rerenderStaleBlobs(0);
+                return;
+            }
+            Map<String, Set<String>> pageLinks = new LinkedHashMap<>();
+            List<JsonArray> deletions = new ArrayList<>();
+            List<JsonArray> insertions = new ArrayList<>();
+            for (JsonArray row : rows) {
+                String name = row.getString(1);
+                Set<String> targets = LinkGraph.targets(name, row.getString(2) != null ? row.getString(2) : "");
+                pageLinks.put(name, targets);
+                deletions.add(new JsonArray().add(name));
+                targets.forEach(target -> insertions.add(new JsonArray().add(name).add(target)));
+            }
+            transaction(connection -> batched(connection, SqlQuery.DELETE_LINKS, deletions)
+                    .compose(deleted -> batched(connection, SqlQuery.INSERT_LINK, insertions))
+                    .map(inserted -> true), stored -> {
+                if (stored.failed()) {
+                    LOGGER.error("Database preparation error", stored.cause());
+                    readyHandler.handle(Future.failedFuture(stored.cause()));
+                    return;
+                }
+                pageLinks.forEach((name, targets) -> {
+                    links.addPage(name);
+                    links.setLinks(name, targets);
+                });
+                storeLinks(rows.get(rows.size() - 1).getInteger(0), storedSoFar + rows.size(), readyHandler);
+            });
+        });
+    }
+
+    /**
+     * Renders the stale blobs again in small batches, one batch after the other, so that the database verticle keeps
+     * serving requests in between.
+     */
+    private void rerenderStaleBlobs(int renderedSoFar) {
+        JsonArray params = new JsonArray().add(MarkdownRenderer.VERSION).add(RERENDER_BATCH_SIZE);
+        queryWithParams(SqlQuery.STALE_BLOBS, null, params, res -> {
+            if (res.failed()) {
+                LOGGER.error("Could not query the stale blobs", res.cause());
+                return;
+            }
+            List<JsonArray> rows = res.result().getResults();
+            if (rows.isEmpty()) {
+                if (renderedSoFar > 0) {
+                    LOGGER.info("Rendered {} blobs again with renderer version {}", renderedSoFar, MarkdownRenderer.VERSION);
+                }
+                return;
+            }
+            List<Future<?>> renderings = new ArrayList<>();
+            for (JsonArray row : rows) {
+                Future<JsonArray> rendering = Future.future();
+                renderingUpdate(row.getString(0), row.getString(1), rendering.completer());
+                renderings.add(rendering);
+            }
+            CompositeFuture.all(new ArrayList<>(renderings)).setHandler(rendered -> {
+                if (rendered.failed()) {
+                    LOGGER.error("Could not render the stale blobs", rendered.cause());
+                    return;
+                }
+                storeRenderings(rendered.result().list(), renderedSoFar);
+            });
+        });
+    }
+
+    private void storeRenderings(List<JsonArray> batch, int renderedSoFar) {
+        dbClient.getConnection(conn -> {
+            if (conn.failed()) {
+                LOGGER.error("Could not open a database connection", conn.cause());
+                return;
+            }
+            SQLConnection connection = conn.result();
+            batchWithParams(connection, SqlQuery.UPDATE_BLOB_RENDERING, batch, updated -> {
+                connection.close();
+                if (updated.failed()) {
+                    LOGGER.error("Could not store the rendered blobs", updated.cause());
+                } else {
+                    rerenderStaleBlobs(renderedSoFar + batch.size());
+                }
+            });
+        });
+    }
+
+    private void renderingUpdate(String hash, String markdown, Handler<AsyncResult<JsonArray>> resultHandler) {
+        renderPool.render(markdown, rendered -> resultHandler.handle(rendered.map(html -> new JsonArray()
+                .add(html)
+                .add(MarkdownRenderer.VERSION)
+                .add(hash)
+                .add(MarkdownRenderer.VERSION))));
+    }
+
+    /**
+     * Deletes the blobs no page references any more, and reports how many there were.
+     */
+    void collectBlobs(Handler<AsyncResult<Integer>> resultHandler) {
+        dbClient.update(sqlQueries.get(SqlQuery.COLLECT_BLOBS), recorded(SqlQuery.COLLECT_BLOBS, null, null,
+                res -> resultHandler.handle(res.map(UpdateResult::getUpdated))));
+    }
+
+    /*
+     * The statements run on behalf of the service go through these methods, which record a SqlQueryEvent for each.
+     */
+
+    private void query(SqlQuery query, Handler<AsyncResult<ResultSet>> resultHandler) {
+        dbClient.query(sqlQueries.get(query), recorded(query, null, null, resultHandler));
+    }
+
+    private void queryWithParams(SqlQuery query, Object page, JsonArray params,
+                                 Handler<AsyncResult<ResultSet>> resultHandler) {
+        dbClient.queryWithParams(sqlQueries.get(query), params, recorded(query, page, params, resultHandler));
+    }
+
+    private void updateWithParams(SQLConnection connection, SqlQuery query, Object page, JsonArray params,
+                                  Handler<AsyncResult<UpdateResult>> resultHandler) {
+        connection.updateWithParams(sqlQueries.get(query), params, recorded(query, page, params, resultHandler));
+    }
+
+    private void batchWithParams(SQLConnection connection, SqlQuery query, List<JsonArray> batch,
+                                 Handler<AsyncResult<List<Integer>>> resultHandler) {
+        SqlQueryEvent event = new SqlQueryEvent();
+        event.begin();
+        connection.batchWithParams(sqlQueries.get(query), batch, res -> {
+            event.end();
+            if (event.shouldCommit()) {
+                long size = batch.stream().mapToLong(WikiDatabaseServiceImpl::stringSize).sum();
+                event.complete(query.name(), null, size, batch.size(), res.succeeded());
+            }
+            resultHandler.handle(res);
+        });
+    }
+
+    private static <T> Handler<AsyncResult<T>> recorded(SqlQuery query, Object page, JsonArray params,
+                                                        Handler<AsyncResult<T>> resultHandler) {
+        SqlQueryEvent event = new SqlQueryEvent();
+        event.begin();
+        return res -> {
+            event.end();
+            if (event.shouldCommit()) {
+                long size = params != null ? stringSize(params) : 0;
+                int rows = 0;
+                if (res.result() instanceof ResultSet) {
+                    ResultSet resultSet = (ResultSet) res.result();
+                    rows = resultSet.getNumRows();
+                    size += resultSet.getResults().stream().mapToLong(WikiDatabaseServiceImpl::stringSize).sum();
+                } else if (res.result() instanceof UpdateResult) {
+                    rows = ((UpdateResult) res.result()).getUpdated();
+                }
+                event.complete(query.name(), page != null ? page.toString() : null, size, rows, res.succeeded());
+            }
+            resultHandler.handle(res);
+        };
+    }
+
+    private static long stringSize(JsonArray values) {
+        long size = 0;
+        for (Object value : values) {
+            if (value instanceof String) {
+                size += ((String) value).length();
+            }
+        }
+        return size;
+    }
+
+    /*
+     * Writes run their statements in a transaction, on a connection of their own.
+     */
 
-                    if (create.failed()) {
-                        LOGGER.error("Database preparation error", create.cause());
-                        readyHandler.handle(Future.failedFuture(create.cause()));
+    private Future<Integer> updated(SQLConnection connection, SqlQuery query, Object page, JsonArray params) {
+        Future<Integer> updated = Future.future();
+        updateWithParams(connection, query, page, params, res -> updated.handle(res.map(UpdateResult::getUpdated)));
+        return updated;
+    }
+
+    private Future<List<Integer>> batched(SQLConnection connection, SqlQuery query, List<JsonArray> batch) {
+        Future<List<Integer>> batched = Future.future();
+        if (batch.isEmpty()) {
+            batched.complete(Collections.emptyList());
+        } else {
+            batchWithParams(connection, query, batch, batched.completer());
+        }
+        return batched;
+    }
+
+    /**
+     * Commits the write when it completes with true, and rolls it back when it fails or completes with false.
+     */
+    private void transaction(Function<SQLConnection, Future<Boolean>> write,
+                             Handler<AsyncResult<Boolean>> resultHandler) {
+        dbClient.getConnection(conn -> {
+            if (conn.failed()) {
+                LOGGER.error("Could not open a database connection", conn.cause());
+                resultHandler.handle(Future.failedFuture(conn.cause()));
+                return;
+            }
+            SQLConnection connection = conn.result();
+            connection.setAutoCommit(false, tx -> {
+                if (tx.failed()) {
+                    connection.close();
+                    resultHandler.handle(Future.failedFuture(tx.cause()));
+                    return;
+                }
+                write.apply(connection).setHandler(written -> {
+                    if (written.succeeded() && written.result()) {
+                        connection.commit(committed -> {
+                            connection.close();
+                            resultHandler.handle(committed.map(v -> true));
+                        });
                     } else {
-                        readyHandler.handle(Future.succeededFuture(this));
+                        connection.rollback(rolledBack -> {
+                            connection.close();
+                            resultHandler.handle(written);
+                        });
                     }
                 });
+            });
+        });
+    }
+
+    /**
+     * Writes a page row, referencing the blob of its new content and releasing the blob of its previous content.
+     * The handler gets false, with nothing written, when the page statement matches no row because of a concurrent
+     * write, or when the blob was collected since it was found to exist: the caller then prepares the write again.
+     *
+     * @param blob       the parameters inserting the blob of the new content, or null when it is stored already
+     * @param referenced the hash of the new content, or null when the page is deleted
+     * @param released   the hash of the previous content, or null when the page is created
+     * @param name       the name of the page
+     * @param targets    the links of the page to store, or null when they are unchanged (see #changedLinks)
+     */
+    private void writePage(JsonArray blob, String referenced, SqlQuery query, Object page, JsonArray params,
+                           String released, String name, Set<String> targets,
+                           Handler<AsyncResult<Boolean>> resultHandler) {
+        transaction(connection -> {
+            Future<Integer> references;
+            if (referenced == null) {
+                references = Future.succeededFuture(1);
+            } else if (blob == null) {
+                references = updated(connection, SqlQuery.REFERENCE_BLOB, page, new JsonArray().add(referenced));
+            } else {
+                references = updated(connection, SqlQuery.INSERT_BLOB, page, blob).compose(inserted ->
+                        updated(connection, SqlQuery.REFERENCE_BLOB, page, new JsonArray().add(referenced)));
+            }
+            return references.compose(referencesUpdated -> {
+                if (referencesUpdated == 0) {
+                    return Future.succeededFuture(false);
+                }
+                return updated(connection, query, page, params).compose(rows -> {
+                    if (rows == 0) {
+                        return Future.succeededFuture(false);
+                    }
+                    Future<Void> linksWritten = targets != null
+                            ? writeLinks(connection, name, targets)
+                            : Future.succeededFuture();
+                    return linksWritten.compose(v -> {
+                        if (released == null) {
+                            return Future.succeededFuture(true);
+                        }
+                        return updated(connection, SqlQuery.RELEASE_BLOB, page, new JsonArray().add(released))
+                                .map(releases -> true);
+                    });
+                });
+            });
+        }, resultHandler);
+    }
+
+    private Future<Void> writeLinks(SQLConnection connection, String name, Set<String> targets) {
+        List<JsonArray> insertions = targets
+                .stream()
+                .map(target -> new JsonArray().add(name).add(target))
+                .collect(Collectors.toList());
+        return updated(connection, SqlQuery.DELETE_LINKS, name, new JsonArray().add(name))
+                .compose(deleted -> batched(connection, SqlQuery.INSERT_LINK, insertions))
+                .map(inserted -> null);
+    }
+
+    /**
+     * The links to store for a page, or null when the link graph has them already.
+     */
+    private Set<String> changedLinks(String name, Set<String> targets) {
+        return links.hasLinks(name, targets) ? null : targets;
+    }
+
+    /**
+     * Provides the parameters inserting the blob of a content, rendering it, or null when the blob is stored already.
+     */
+    private void blobFor(String hash, String markdown, Handler<AsyncResult<JsonArray>> resultHandler) {
+        queryWithParams(SqlQuery.BLOB_EXISTS, null, new JsonArray().add(hash), exists -> {
+            if (exists.failed()) {
+                resultHandler.handle(Future.failedFuture(exists.cause()));
+            } else if (exists.result().getNumRows() > 0) {
+                resultHandler.handle(Future.succeededFuture());
+            } else {
+                renderPool.render(markdown, rendered -> resultHandler.handle(rendered.map(html -> new JsonArray()
+                        .add(hash)
+                        .add(markdown)
+                        .add(html)
+                        .add(MarkdownRenderer.VERSION))));
+            }
+        });
+    }
+
+    private void rebuildPageFilter(Handler<AsyncResult<Void>> doneHandler) {
+        boolean rebuilding = pageFilter.beginRebuild();
+        query(SqlQuery.ALL_PAGES, res -> {
+            if (res.succeeded()) {
+                if (rebuilding) {
+                    pageFilter.rebuild(res.result()
+                            .getResults()
+                            .stream()
+                            .map(json -> json.getString(0))
+                            .collect(Collectors.toList()));
+                }
+                doneHandler.handle(Future.succeededFuture());
+            } else {
+                if (rebuilding) {
+                    pageFilter.abortRebuild();
+                }
+                LOGGER.debug("Could not rebuild the page name filter", res.cause());
+                doneHandler.handle(Future.failedFuture(res.cause()));
             }
         });
     }
 
     @Override
     public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
-        dbClient.query(sqlQueries.get(SqlQuery.ALL_PAGES), res -> {
+        query(SqlQuery.ALL_PAGES, res -> {
             if (res.succeeded()) {
                 JsonArray pages = new JsonArray(res.result()
                         .getResults()
@@ -75,20 +631,27 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 
     @Override
     public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
-        dbClient.queryWithParams(sqlQueries.get(SqlQuery.GET_PAGE),
+        if (!pageFilter.mightContain(name)) {
+            resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+            return this;
+        }
+        queryWithParams(SqlQuery.GET_PAGE, name,
                 new JsonArray().add(name), fetch -> {
                     if (fetch.succeeded()) {
                         JsonObject response = new JsonObject();
                         ResultSet resultSet = fetch.result();
                         if (resultSet.getNumRows() == 0) {
+                            pageFilter.recordFalsePositive();
                             response.put("found", false);
-                        } else {
-                            response.put("found", true);
-                            JsonArray row = resultSet.getResults().get(0);
-                            response.put("id", row.getInteger(0));
-                            response.put("rawContent", row.getString(1));
+                            resultHandler.handle(Future.succeededFuture(response));
+                            return;
                         }
-                        resultHandler.handle(Future.succeededFuture(response));
+                        response.put("found", true);
+                        JsonArray row = resultSet.getResults().get(0);
+                        response.put("id", row.getInteger(0));
+                        response.put("rawContent", row.getString(1));
+                        response.put("revision", row.getInteger(4));
+                        renderedHtml(row, html -> resultHandler.handle(html.map(value -> response.put("html", value))));
                     } else {
                         LOGGER.error("Database query error", fetch.cause());
                         resultHandler.handle(Future.failedFuture(fetch.cause()));
@@ -97,41 +660,239 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
         return this;
     }
 
+    /**
+     * Provides the stored HTML of a page row when it is up to date, otherwise renders it now and stores it in its
+     * blob without waiting for the update.
+     */
+    private void renderedHtml(JsonArray row, Handler<AsyncResult<String>> resultHandler) {
+        String html = row.getString(2);
+        Integer version = row.getInteger(3);
+        if (html != null && version != null && version == MarkdownRenderer.VERSION) {
+            resultHandler.handle(Future.succeededFuture(html));
+            return;
+        }
+        String hash = row.getString(5);
+        renderingUpdate(hash, row.getString(1), rendered -> {
+            if (rendered.failed()) {
+                LOGGER.error("Could not render the page", rendered.cause());
+                resultHandler.handle(Future.failedFuture(rendered.cause()));
+                return;
+            }
+            JsonArray update = rendered.result();
+            resultHandler.handle(Future.succeededFuture(update.getString(0)));
+            dbClient.updateWithParams(sqlQueries.get(SqlQuery.UPDATE_BLOB_RENDERING), update,
+                    recorded(SqlQuery.UPDATE_BLOB_RENDERING, hash, update, res -> {
+                        if (res.failed()) {
+                            LOGGER.error("Could not store the rendered page", res.cause());
+                        }
+                    }));
+        });
+    }
+
     @Override
     public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
-        JsonArray data = new JsonArray().add(title).add(markdown);
-        dbClient.updateWithParams(sqlQueries.get(SqlQuery.CREATE_PAGE), data, res -> {
-            if (res.succeeded()) {
-                resultHandler.handle(Future.succeededFuture());
-            } else {
-                LOGGER.error("Database query error", res.cause());
-                resultHandler.handle(Future.failedFuture(res.cause()));
+        String hash = ContentHash.of(markdown);
+        Set<String> targets = LinkGraph.targets(title, markdown);
+        blobFor(hash, markdown, blob -> {
+            if (blob.failed()) {
+                LOGGER.error("Could not prepare the page content", blob.cause());
+                resultHandler.handle(Future.failedFuture(blob.cause()));
+                return;
             }
+            JsonArray data = new JsonArray()
+                    .add(title)
+                    .add(hash)
+                    .add(creationStamp());
+            writePage(blob.result(), hash, SqlQuery.CREATE_PAGE, title, data, null,
+                    title, changedLinks(title, targets), res -> {
+                if (res.failed()) {
+                    LOGGER.error("Database query error", res.cause());
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else if (!res.result()) {
+                    createPage(title, markdown, resultHandler);
+                } else {
+                    pageFilter.add(title);
+                    links.addPage(title);
+                    links.setLinks(title, targets);
+                    resultHandler.handle(Future.succeededFuture());
+                }
+            });
         });
         return this;
     }
 
+    /**
+     * Saves nothing when the page has this content already.
+     */
     @Override
-    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
-        JsonArray data = new JsonArray().add(markdown).add(id);
-        dbClient.updateWithParams(sqlQueries.get(SqlQuery.SAVE_PAGE), data, res -> {
-            if (res.succeeded()) {
-                resultHandler.handle(Future.succeededFuture());
-            } else {
-                LOGGER.error("Database query error", res.cause());
-                resultHandler.handle(Future.failedFuture(res.cause()));
+    public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+        String hash = ContentHash.of(markdown);
+        queryWithParams(SqlQuery.GET_PAGE_HASH, id, new JsonArray().add(id), current -> {
+            if (current.failed()) {
+                LOGGER.error("Database query error", current.cause());
+                resultHandler.handle(Future.failedFuture(current.cause()));
+                return;
+            }
+            List<JsonArray> rows = current.result().getResults();
+            if (rows.isEmpty()) {
+                // same outcome as an update matching no row
+                resultHandler.handle(Future.succeededFuture(PageWrite.none()));
+                return;
+            }
+            String previous = rows.get(0).getString(0);
+            String name = rows.get(0).getString(1);
+            int previousSize = rows.get(0).getInteger(2);
+            if (hash.equals(previous)) {
+                resultHandler.handle(Future.succeededFuture(
+                        PageWrite.of(name, previousSize, markdown.length(), false)));
+                return;
+            }
+            Set<String> targets = LinkGraph.targets(name, markdown);
+            blobFor(hash, markdown, blob -> {
+                if (blob.failed()) {
+                    LOGGER.error("Could not prepare the page content", blob.cause());
+                    resultHandler.handle(Future.failedFuture(blob.cause()));
+                    return;
+                }
+                JsonArray data = new JsonArray()
+                        .add(hash)
+                        .add(id)
+                        .add(previous);
+                writePage(blob.result(), hash, SqlQuery.SAVE_PAGE, id, data, previous,
+                        name, changedLinks(name, targets), res -> {
+                    if (res.failed()) {
+                        LOGGER.error("Database query error", res.cause());
+                        resultHandler.handle(Future.failedFuture(res.cause()));
+                    } else if (!res.result()) {
+                        savePage(id, markdown, resultHandler);
+                    } else {
+                        links.setLinks(name, targets);
+                        resultHandler.handle(Future.succeededFuture(
+                                PageWrite.of(name, previousSize, markdown.length(), true)));
+                    }
+                });
+            });
+        });
+
+        return this;
+    }
+
+    /**
+     * Reads the content of the base revision, then writes the patched content on the condition that the revision is
+     * still the same, so that a concurrent write between the two makes the patch conflict instead of being lost.
+     */
+    @Override
+    public WikiDatabaseService patchPage(int id, int baseRevision, JsonArray edits,
+                                        Handler<AsyncResult<JsonObject>> resultHandler) {
+        queryWithParams(SqlQuery.GET_PAGE_REVISION, id, new JsonArray().add(id), fetch -> {
+            if (fetch.failed()) {
+                LOGGER.error("Database query error", fetch.cause());
+                resultHandler.handle(Future.failedFuture(fetch.cause()));
+                return;
+            }
+            List<JsonArray> rows = fetch.result().getResults();
+            if (rows.isEmpty()) {
+                resultHandler.handle(Future.failedFuture("No such page: " + id));
+                return;
+            }
+            int revision = rows.get(0).getInteger(1);
+            if (revision != baseRevision) {
+                resultHandler.handle(Future.succeededFuture(PagePatch.outcome(false, revision)));
+                return;
             }
+            String base = rows.get(0).getString(0);
+            String markdown;
+            try {
+                markdown = PagePatch.apply(base, edits);
+            } catch (IllegalArgumentException | ClassCastException e) {
+                resultHandler.handle(Future.failedFuture(
+                    new ServiceException(ErrorCodes.PATCH_DOES_NOT_APPLY.ordinal(), e.getMessage())));
+                return;
+            }
+            String previous = rows.get(0).getString(2);
+            String name = rows.get(0).getString(3);
+            String hash = ContentHash.of(markdown);
+            Set<String> targets = LinkGraph.targets(name, markdown);
+            if (hash.equals(previous)) {
+                resultHandler.handle(Future.succeededFuture(PagePatch.outcome(true, revision)
+                        .mergeIn(PageWrite.of(name, base.length(), markdown.length(), false))));
+                return;
+            }
+            blobFor(hash, markdown, blob -> {
+                if (blob.failed()) {
+                    LOGGER.error("Could not prepare the page content", blob.cause());
+                    resultHandler.handle(Future.failedFuture(blob.cause()));
+                    return;
+                }
+                JsonArray data = new JsonArray()
+                        .add(hash)
+                        .add(id)
+                        .add(baseRevision);
+                writePage(blob.result(), hash, SqlQuery.PATCH_PAGE, id, data, previous,
+                        name, changedLinks(name, targets), res -> {
+                    if (res.failed()) {
+                        LOGGER.error("Database query error", res.cause());
+                        resultHandler.handle(Future.failedFuture(res.cause()));
+                    } else if (!res.result()) {
+                        // written since the revision was read, trying again reports the conflict and the revision
+                        patchPage(id, baseRevision, edits, resultHandler);
+                    } else {
+                        links.setLinks(name, targets);
+                        resultHandler.handle(Future.succeededFuture(PagePatch.outcome(true, baseRevision + 1)
+                                .mergeIn(PageWrite.of(name, base.length(), markdown.length(), true))));
+                    }
+                });
+            });
         });
+        return this;
+    }
 
+    @Override
+    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+        queryWithParams(SqlQuery.GET_PAGE_HASH, id, new JsonArray().add(id), current -> {
+            if (current.failed()) {
+                LOGGER.error("Database query error", current.cause());
+                resultHandler.handle(Future.failedFuture(current.cause()));
+                return;
+            }
+            List<JsonArray> rows = current.result().getResults();
+            if (rows.isEmpty()) {
+                resultHandler.handle(Future.succeededFuture(PageWrite.none()));
+                return;
+            }
+            String previous = rows.get(0).getString(0);
+            String name = rows.get(0).getString(1);
+            int previousSize = rows.get(0).getInteger(2);
+            JsonArray data = new JsonArray().add(id).add(previous);
+            writePage(null, null, SqlQuery.DELETE_PAGE, id, data, previous,
+                    name, changedLinks(name, Collections.emptySet()), res -> {
+                if (res.failed()) {
+                    LOGGER.error("Database query error", res.cause());
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else if (!res.result()) {
+                    deletePage(id, resultHandler);
+                } else {
+                    links.removePage(name);
+                    if (pageFilter.recordDeletion()) {
+                        rebuildPageFilter(rebuilt -> {
+                            if (rebuilt.failed()) {
+                                LOGGER.error("Could not rebuild the page name filter", rebuilt.cause());
+                            }
+                        });
+                    }
+                    resultHandler.handle(Future.succeededFuture(PageWrite.of(name, previousSize, 0, true)));
+                }
+            });
+        });
         return this;
     }
 
     @Override
-    public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
-        JsonArray data = new JsonArray().add(id);
-        dbClient.updateWithParams(sqlQueries.get(SqlQuery.DELETE_PAGE), data, res -> {
+    public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<String>> resultHandler) {
+        queryWithParams(SqlQuery.GET_PAGE_NAME, id, new JsonArray().add(id), res -> {
             if (res.succeeded()) {
-                resultHandler.handle(Future.succeededFuture());
+                List<JsonArray> rows = res.result().getResults();
+                resultHandler.handle(Future.succeededFuture(rows.isEmpty() ? null : rows.get(0).getString(0)));
             } else {
                 LOGGER.error("Database query error", res.cause());
                 resultHandler.handle(Future.failedFuture(res.cause()));
@@ -142,7 +903,7 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 
     @Override
     public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
-        dbClient.query(sqlQueries.get(SqlQuery.ALL_PAGES_DATA), queryResult->{
+        query(SqlQuery.ALL_PAGES_DATA, queryResult->{
             if (queryResult.succeeded()){
                 resultHandler.handle(Future.succeededFuture(queryResult.result().getRows()));
             }else{
@@ -151,4 +912,278 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
         });
         return this;
     }
+
+    @Override
+    public WikiDatabaseService fetchExistingPages(List<String> names, Handler<AsyncResult<List<String>>> resultHandler) {
+        if (names.isEmpty()) {
+            resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+            return this;
+        }
+        String placeholders = String.join(",", Collections.nCopies(names.size(), "?"));
+        String query = String.format(sqlQueries.get(SqlQuery.EXISTING_PAGES), placeholders);
+        JsonArray params = new JsonArray(new ArrayList<>(names));
+        dbClient.queryWithParams(query, params, recorded(SqlQuery.EXISTING_PAGES, null, params, res -> {
+            if (res.succeeded()) {
+                resultHandler.handle(Future.succeededFuture(res.result()
+                        .getResults()
+                        .stream()
+                        .map(row -> row.getString(0))
+                        .collect(Collectors.toList())));
+            } else {
+                LOGGER.error("Database query error", res.cause());
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            }
+        }));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchPagesAfter(int afterId, int limit,
+                                               Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+        JsonArray params = new JsonArray().add(afterId).add(limit);
+        queryWithParams(SqlQuery.PAGES_AFTER, null, params, res -> {
+            if (res.succeeded()) {
+                resultHandler.handle(Future.succeededFuture(res.result().getRows()));
+            } else {
+                LOGGER.error("Database query error", res.cause());
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            }
+        });
+        return this;
+    }
+
+    /**
+     * The recent changes are kept in front of the stores, by RecentChangesWikiDatabaseService.
+     */
+    @Override
+    public WikiDatabaseService fetchRecentChanges(int limit, Handler<AsyncResult<JsonArray>> resultHandler) {
+        resultHandler.handle(Future.failedFuture("Recent changes are not kept by the page store"));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<List<String>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(links.backlinks(name)));
+        return this;
+    }
+
+    @Override
+    public WikiDatabaseService fetchOrphanedPages(Handler<AsyncResult<List<String>>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(links.orphans()));
+        return this;
+    }
+
+    /**
+     * Only renders the contents that are not stored yet, once each, and leaves the pages whose content is unchanged
+     * alone.
+     */
+    @Override
+    public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (pages.isEmpty()) {
+            resultHandler.handle(Future.succeededFuture(new JsonObject().put("imported", 0).put("errors", new JsonArray())));
+            return this;
+        }
+        List<String> hashes = new ArrayList<>(pages.size());
+        Map<String, String> contents = new LinkedHashMap<>();
+        for (int i = 0; i < pages.size(); i++) {
+            String content = pages.getJsonObject(i).getString("content");
+            String hash = ContentHash.of(content);
+            hashes.add(hash);
+            contents.putIfAbsent(hash, content);
+        }
+        String placeholders = String.join(",", Collections.nCopies(contents.size(), "?"));
+        String query = String.format(sqlQueries.get(SqlQuery.EXISTING_BLOBS), placeholders);
+        JsonArray params = new JsonArray(new ArrayList<>(contents.keySet()));
+        dbClient.queryWithParams(query, params, recorded(SqlQuery.EXISTING_BLOBS, null, params, existing -> {
+            if (existing.failed()) {
+                LOGGER.error("Database query error", existing.cause());
+                resultHandler.handle(Future.failedFuture(existing.cause()));
+                return;
+            }
+            existing.result().getResults().forEach(row -> contents.remove(row.getString(0)));
+            List<Future<?>> renderings = new ArrayList<>();
+            for (Map.Entry<String, String> content : contents.entrySet()) {
+                Future<JsonArray> rendering = Future.future();
+                renderPool.render(content.getValue(), rendered -> rendering.handle(rendered.map(html -> new JsonArray()
+                        .add(content.getKey())
+                        .add(content.getValue())
+                        .add(html)
+                        .add(MarkdownRenderer.VERSION))));
+                renderings.add(rendering);
+            }
+            CompositeFuture.all(new ArrayList<>(renderings)).setHandler(rendered -> {
+                if (rendered.failed()) {
+                    LOGGER.error("Could not render the imported pages", rendered.cause());
+                    resultHandler.handle(Future.failedFuture(rendered.cause()));
+                    return;
+                }
+                Map<String, JsonArray> newBlobs = new HashMap<>();
+                for (Object blob : rendered.result().list()) {
+                    newBlobs.put(((JsonArray) blob).getString(0), (JsonArray) blob);
+                }
+                importBatch(pages, hashes, newBlobs, resultHandler);
+            });
+        }));
+        return this;
+    }
+
+    /**
+     * Imports the whole batch in a single transaction. When the batch fails, the transaction is rolled back and the
+     * pages are imported one at a time, so that only the faulty pages are reported.
+     */
+    private void importBatch(JsonArray pages, List<String> hashes, Map<String, JsonArray> newBlobs,
+                             Handler<AsyncResult<JsonObject>> resultHandler) {
+        JsonObject outcome = new JsonObject().put("imported", 0).put("errors", new JsonArray());
+        transaction(connection -> importBatch(connection, pages, hashes, newBlobs), imported -> {
+            if (imported.succeeded() && imported.result()) {
+                for (int i = 0; i < pages.size(); i++) {
+                    String name = pages.getJsonObject(i).getString("name");
+                    pageFilter.add(name);
+                    links.addPage(name);
+                    links.setLinks(name, LinkGraph.targets(name, pages.getJsonObject(i).getString("content")));
+                }
+                resultHandler.handle(Future.succeededFuture(outcome.put("imported", pages.size())));
+                return;
+            }
+            LOGGER.debug("Import batch failed, importing its pages one at a time",
+                    imported.failed() ? imported.cause() : null);
+            importOneByOne(pages, hashes, newBlobs, 0, outcome, resultHandler);
+        });
+    }
+
+    /**
+     * Creates the pages that do not exist and saves the others, on the condition that none of them is written
+     * concurrently.
+     */
+    private Future<Boolean> importBatch(SQLConnection connection, JsonArray pages, List<String> hashes,
+                                        Map<String, JsonArray> newBlobs) {
+        Future<ResultSet> current = Future.future();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            names.add(pages.getJsonObject(i).getString("name"));
+        }
+        String placeholders = String.join(",", Collections.nCopies(names.size(), "?"));
+        String query = String.format(sqlQueries.get(SqlQuery.PAGE_HASHES), placeholders);
+        JsonArray params = new JsonArray(names);
+        connection.queryWithParams(query, params, recorded(SqlQuery.PAGE_HASHES, null, params, current.completer()));
+        return current.compose(resultSet -> {
+            Map<String, JsonArray> existing = new HashMap<>();
+            resultSet.getResults().forEach(row -> existing.put(row.getString(0), row));
+            Map<String, JsonArray> blobs = new LinkedHashMap<>();
+            List<JsonArray> references = new ArrayList<>();
+            List<JsonArray> saves = new ArrayList<>();
+            List<JsonArray> creations = new ArrayList<>();
+            List<JsonArray> releases = new ArrayList<>();
+            List<JsonArray> linkDeletions = new ArrayList<>();
+            List<JsonArray> linkInsertions = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++) {
+                String hash = hashes.get(i);
+                JsonArray page = existing.get(names.get(i));
+                if (page != null && hash.equals(page.getString(2))) {
+                    continue;
+                }
+                String name = names.get(i);
+                Set<String> targets = changedLinks(name,
+                        LinkGraph.targets(name, pages.getJsonObject(i).getString("content")));
+                if (targets != null) {
+                    linkDeletions.add(new JsonArray().add(name));
+                    targets.forEach(target -> linkInsertions.add(new JsonArray().add(name).add(target)));
+                }
+                if (newBlobs.containsKey(hash)) {
+                    blobs.putIfAbsent(hash, newBlobs.get(hash));
+                }
+                references.add(new JsonArray().add(hash));
+                if (page == null) {
+                    creations.add(new JsonArray().add(names.get(i)).add(hash).add(creationStamp()));
+                } else {
+                    saves.add(new JsonArray().add(hash).add(page.getInteger(1)).add(page.getString(2)));
+                    releases.add(new JsonArray().add(page.getString(2)));
+                }
+            }
+            return batched(connection, SqlQuery.INSERT_BLOB, new ArrayList<>(blobs.values()))
+                    .compose(inserted -> batched(connection, SqlQuery.REFERENCE_BLOB, references))
+                    .compose(referenced -> {
+                        if (referenced.contains(0)) {
+                            return Future.succeededFuture(false);
+                        }
+                        return batched(connection, SqlQuery.SAVE_PAGE, saves).compose(saved -> {
+                            if (saved.contains(0)) {
+                                return Future.succeededFuture(false);
+                            }
+                            return batched(connection, SqlQuery.CREATE_PAGE, creations)
+                                    .compose(created -> batched(connection, SqlQuery.RELEASE_BLOB, releases))
+                                    .compose(released -> batched(connection, SqlQuery.DELETE_LINKS, linkDeletions))
+                                    .compose(deleted -> batched(connection, SqlQuery.INSERT_LINK, linkInsertions))
+                                    .map(inserted -> true);
+                        });
+                    });
+        });
+    }
+
+    private void importOneByOne(JsonArray pages, List<String> hashes, Map<String, JsonArray> newBlobs, int index,
+                                JsonObject outcome, Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (index == pages.size()) {
+            resultHandler.handle(Future.succeededFuture(outcome));
+            return;
+        }
+        JsonObject page = pages.getJsonObject(index);
+        String hash = hashes.get(index);
+        importPage(page.getString("name"), page.getString("content"), hash, newBlobs.get(hash), res -> {
+            if (res.succeeded()) {
+                pageFilter.add(page.getString("name"));
+                outcome.put("imported", outcome.getInteger("imported") + 1);
+            } else {
+                outcome.getJsonArray("errors").add(new JsonObject()
+                        .put("index", index)
+                        .put("error", res.cause().getMessage()));
+            }
+            importOneByOne(pages, hashes, newBlobs, index + 1, outcome, resultHandler);
+        });
+    }
+
+    private void importPage(String name, String content, String hash, JsonArray newBlob,
+                            Handler<AsyncResult<Void>> resultHandler) {
+        Set<String> targets = LinkGraph.targets(name, content);
+        JsonArray params = new JsonArray().add(name);
+        String query = String.format(sqlQueries.get(SqlQuery.PAGE_HASHES), "?");
+        dbClient.queryWithParams(query, params, recorded(SqlQuery.PAGE_HASHES, name, params, current -> {
+            if (current.failed()) {
+                resultHandler.handle(Future.failedFuture(current.cause()));
+                return;
+            }
+            List<JsonArray> rows = current.result().getResults();
+            String previous = rows.isEmpty() ? null : rows.get(0).getString(2);
+            if (hash.equals(previous)) {
+                resultHandler.handle(Future.succeededFuture());
+                return;
+            }
+            Handler<AsyncResult<Boolean>> written = res -> {
+                if (res.failed()) {
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else if (!res.result()) {
+                    // the blob may be the one that was collected, so whether it exists is checked again
+                    blobFor(hash, content, blob -> {
+                        if (blob.failed()) {
+                            resultHandler.handle(Future.failedFuture(blob.cause()));
+                        } else {
+                            importPage(name, content, hash, blob.result(), resultHandler);
+                        }
+                    });
+                } else {
+                    links.addPage(name);
+                    links.setLinks(name, targets);
+                    resultHandler.handle(Future.succeededFuture());
+                }
+            };
+            if (previous == null) {
+                writePage(newBlob, hash, SqlQuery.CREATE_PAGE, name,
+                        new JsonArray().add(name).add(hash).add(creationStamp()), null,
+                        name, changedLinks(name, targets), written);
+            } else {
+                JsonArray data = new JsonArray().add(hash).add(rows.get(0).getInteger(1)).add(previous);
+                writePage(newBlob, hash, SqlQuery.SAVE_PAGE, name, data, previous,
+                        name, changedLinks(name, targets), written);
+            }
+        }));
+    }
 }
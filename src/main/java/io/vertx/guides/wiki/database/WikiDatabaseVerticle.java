@@ -1,36 +1,87 @@
 package io.vertx.guides.wiki.database;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.Readiness;
+import io.vertx.guides.wiki.markdown.MarkdownRenderPool;
 import io.vertx.ext.jdbc.JDBCClient;
+import io.vertx.ext.jdbc.spi.DataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.C3P0DataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.HikariCPDataSourceProvider;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
-import io.vertx.serviceproxy.ServiceBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
- * As most of the database handling code has been moved to WikiDatabaseServiceImpl, the
- * WikiDatabaseVerticle class now consists of 2 methods: the start method to register the service and a
- * utility method to load SQL queries:
+ * Deploys the wiki database service. The database handling code lives in the stores, and this verticle chooses and
+ * prepares them from its configuration: the backend (JDBC or page log), the JDBC pool provider, the executor of the
+ * blocking JDBC calls, the HSQLDB storage profile and the number of shards. It then registers the service on the
+ * event bus, and runs the blob collection and the database maintenance of the JDBC stores.
  */
 public class WikiDatabaseVerticle extends AbstractVerticle {
     public static final String CONFIG_WIKIDB_JDBC_URL = "wikidb.jdbc.url";
     public static final String CONFIG_WIKIDB_JDBC_DRIVER_CLASS = "wikidb.jdbc.driver_class";
     public static final String CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE = "wikidb.jdbc.max_pool_size";
+    public static final String CONFIG_WIKIDB_JDBC_POOL_PROVIDER = "wikidb.jdbc.pool_provider";
+    public static final String CONFIG_WIKIDB_JDBC_STATEMENT_CACHE_SIZE = "wikidb.jdbc.statement_cache_size";
+    public static final String CONFIG_WIKIDB_JDBC_EXECUTOR = "wikidb.jdbc.executor";
+    public static final String CONFIG_WIKIDB_STORAGE_PROFILE = "wikidb.storage.profile";
+    public static final String CONFIG_WIKIDB_SHARDS = "wikidb.shards";
     public static final String CONFIG_WIKIDB_SQL_QUERIES_RESOURCE_FILE = "wikidb.sqlqueries.resource.file";
     public static final String CONFIG_WIKIDB_QUEUE = "wikidb.queue";
+    public static final String CONFIG_WIKIDB_CHANGES_ADDRESS = "wikidb.changes.address";
+    public static final String CONFIG_WIKIDB_SLOW_CALL_THRESHOLD = "wikidb.slow_call_threshold_ms";
+    public static final String CONFIG_WIKIDB_BLOB_GC_INTERVAL = "wikidb.blobs.gc_interval_ms";
+    public static final String CONFIG_WIKIDB_MAINTENANCE_ENABLED = "wikidb.maintenance.enabled";
+    public static final String CONFIG_WIKIDB_MAINTENANCE_CHECK_INTERVAL = "wikidb.maintenance.check_interval_ms";
+    public static final String CONFIG_WIKIDB_MAINTENANCE_CHECKPOINT_INTERVAL = "wikidb.maintenance.checkpoint_interval_ms";
+    public static final String CONFIG_WIKIDB_MAINTENANCE_DEFRAG_INTERVAL = "wikidb.maintenance.defrag_interval_ms";
+    public static final String CONFIG_WIKIDB_MAINTENANCE_QUIET_RATE = "wikidb.maintenance.quiet_calls_per_second";
+    public static final String CONFIG_WIKIDB_MAINTENANCE_LATENCY_FACTOR = "wikidb.maintenance.latency_rise_factor";
+    public static final String CONFIG_WIKIDB_PAGEFILTER_EXPECTED_PAGES = "wikidb.pagefilter.expected_pages";
+    public static final String CONFIG_WIKIDB_PAGEFILTER_FPP = "wikidb.pagefilter.false_positive_rate";
+    public static final String CONFIG_WIKIDB_BACKEND = "wikidb.backend";
+    public static final String CONFIG_WIKIDB_LOG_FILE = "wikidb.log.file";
+    public static final String CONFIG_WIKIDB_LOG_SYNC_INTERVAL = "wikidb.log.sync_interval_ms";
+    public static final String CONFIG_WIKIDB_RECENT_CHANGES_FILE = "wikidb.recent_changes.file";
+    public static final String CONFIG_WIKIDB_RECENT_CHANGES_CAPACITY = "wikidb.recent_changes.capacity";
+    public static final String CONFIG_WIKIDB_RECENT_CHANGES_FLUSH_INTERVAL = "wikidb.recent_changes.flush_interval_ms";
+
+    public static final String BACKEND_JDBC = "jdbc";
+    public static final String BACKEND_LOG = "log";
+
+    public static final String POOL_C3P0 = "c3p0";
+    public static final String POOL_HIKARI = "hikari";
+
+    public static final String EXECUTOR_WORKER = "worker";
+    public static final String EXECUTOR_VIRTUAL = "virtual";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WikiDatabaseVerticle.class);
+
+    private WikiDatabaseService service;
+    private final List<WikiDatabaseServiceImpl> blobStores = new ArrayList<>();
+    private final List<JDBCClient> dbClients = new ArrayList<>();
+    private DatabaseMaintenance maintenance;
+    private final List<String> maintainedUrls = new ArrayList<>();
+    private RecentChanges recentChanges;
 
     /**
      * It attempts to obtain a JDBC client connection, then performs a SQL query to create the Pages table unless it
@@ -40,40 +91,361 @@ public class WikiDatabaseVerticle extends AbstractVerticle {
      */
     @Override
     public void start(Future<Void> startFuture) throws Exception {
-        /*
-         * Note: this uses blocking APIs, but data is small...
-         * Interestingly we break an important principle in Vert.x which is to avoid blocking APIs, but
-         * since there are no asynchronous APIs for accessing resources on the classpath our options are
-         * limited. We could use the Vert.x executeBlocking method to offload the blocking I/O operations
-         * from the event loop to a worker thread, but since the data is very small there is no obvious
-         * benefit in doing so.
-         */
-        HashMap<SqlQuery, String> sqlQueries = loadSqlQueries();
-
-        JDBCClient dbClient = JDBCClient.createShared(vertx, new JsonObject()
-                .put("url", config().getString(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:db/wiki"))
-                .put("driver_class", config().getString(CONFIG_WIKIDB_JDBC_DRIVER_CLASS, "org.hsqldb.jdbcDriver"))
-                .put("max_pool_size", config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 30)));
+        long startedAt = System.nanoTime();
+        PageNameFilter pageFilter = PageNameFilter.shared(vertx).configure(
+                config().getLong(CONFIG_WIKIDB_PAGEFILTER_EXPECTED_PAGES, 10_000L),
+                config().getDouble(CONFIG_WIKIDB_PAGEFILTER_FPP, 0.01));
+        maintenance = DatabaseMaintenance.shared(vertx).configure(
+                config().getLong(CONFIG_WIKIDB_MAINTENANCE_CHECKPOINT_INTERVAL, TimeUnit.HOURS.toMillis(1)),
+                config().getLong(CONFIG_WIKIDB_MAINTENANCE_DEFRAG_INTERVAL, TimeUnit.DAYS.toMillis(1)),
+                config().getDouble(CONFIG_WIKIDB_MAINTENANCE_QUIET_RATE, 5.0),
+                config().getDouble(CONFIG_WIKIDB_MAINTENANCE_LATENCY_FACTOR, 1.5));
 
-        WikiDatabaseService.create(dbClient, sqlQueries, ready -> {
+        Handler<AsyncResult<WikiDatabaseService>> readyHandler = ready -> {
             if (ready.succeeded()) {
-                /**
-                 * We register the service here.
-                 * Registering a service requires an interface class, a Vert.x context, an implementation and an event
-                 * bus destination.
-                 */
-                ServiceBinder binder = new ServiceBinder(vertx);
-                binder.setAddress(CONFIG_WIKIDB_QUEUE)
-                        .register(WikiDatabaseService.class, ready.result());
-                startFuture.complete();
+                service = ready.result();
+                openRecentChanges(opened -> {
+                    if (opened.failed()) {
+                        startFuture.fail(opened.cause());
+                        return;
+                    }
+                    recentChanges = opened.result();
+                    register(startedAt);
+                    startFuture.complete();
+                });
             } else {
                 startFuture.fail(ready.cause());
             }
+        };
+
+        /*
+         * The log-structured backend needs neither SQL queries nor a JDBC pool.
+         */
+        String backend = config().getString(CONFIG_WIKIDB_BACKEND, BACKEND_JDBC);
+        if (BACKEND_LOG.equals(backend)) {
+            WikiDatabaseService.createLogStore(vertx,
+                    new File(config().getString(CONFIG_WIKIDB_LOG_FILE, "db/wiki.log")),
+                    pageFilter,
+                    config().getLong(CONFIG_WIKIDB_LOG_SYNC_INTERVAL, 1000L),
+                    readyHandler);
+            return;
+        } else if (!BACKEND_JDBC.equals(backend)) {
+            startFuture.fail("Unknown database backend: " + backend);
+            return;
+        }
+        String poolProvider = config().getString(CONFIG_WIKIDB_JDBC_POOL_PROVIDER, POOL_C3P0);
+        if (!POOL_C3P0.equals(poolProvider) && !POOL_HIKARI.equals(poolProvider)) {
+            startFuture.fail("Unknown JDBC pool provider: " + poolProvider);
+            return;
+        }
+        String executor = config().getString(CONFIG_WIKIDB_JDBC_EXECUTOR, EXECUTOR_WORKER);
+        if (!EXECUTOR_WORKER.equals(executor) && !EXECUTOR_VIRTUAL.equals(executor)) {
+            startFuture.fail("Unknown JDBC executor: " + executor);
+            return;
+        }
+        String profileName = config().getString(CONFIG_WIKIDB_STORAGE_PROFILE, StorageProfile.DEFAULT.configName());
+        StorageProfile profile = StorageProfile.named(profileName);
+        if (profile == null) {
+            startFuture.fail("Unknown storage profile: " + profileName);
+            return;
+        }
+
+        /*
+         * There are no asynchronous APIs for accessing resources on the classpath, so the queries are loaded on a
+         * worker thread to keep the event loop free while the other verticles start.
+         */
+        vertx.<HashMap<SqlQuery, String>>executeBlocking(future -> {
+            try {
+                future.complete(loadSqlQueries());
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, loaded -> {
+            if (loaded.failed()) {
+                startFuture.fail(loaded.cause());
+                return;
+            }
+            LOGGER.info("SQL queries loaded in {} ms", elapsedMillis(startedAt));
+
+            String jdbcUrl = profile.url(config().getString(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:db/wiki"));
+            MarkdownRenderPool renderPool = MarkdownRenderPool.shared(vertx, config());
+            LinkGraph linkGraph = new LinkGraph();
+            int shardCount = config().getInteger(CONFIG_WIKIDB_SHARDS, 1);
+            if (shardCount == 1) {
+                JDBCClient dbClient = jdbcClient(jdbcUrl, JDBCClient.DEFAULT_DS_NAME);
+                WikiDatabaseService.create(dbClient, loaded.result(), pageFilter, renderPool, linkGraph,
+                        storeReady(jdbcUrl, dbClient, loaded.result(), profile, readyHandler));
+                return;
+            }
+
+            /*
+             * Each shard has its own database file and pool (hence its own data source name), and its own page name
+             * filter: the shared one is maintained by the sharded service over all of them. Links cross shards, so
+             * the shards share one link graph.
+             */
+            List<Future<?>> shardsReady = new ArrayList<>();
+            for (int shard = 0; shard < shardCount; shard++) {
+                String shardUrl = ShardedWikiDatabaseService.shardUrl(jdbcUrl, shard, shardCount);
+                JDBCClient dbClient = jdbcClient(shardUrl, "wiki-shard-" + shard);
+                PageNameFilter shardFilter = new PageNameFilter().configure(
+                        config().getLong(CONFIG_WIKIDB_PAGEFILTER_EXPECTED_PAGES, 10_000L) / shardCount,
+                        config().getDouble(CONFIG_WIKIDB_PAGEFILTER_FPP, 0.01));
+                Future<WikiDatabaseService> shardReady = Future.future();
+                WikiDatabaseService.create(dbClient, loaded.result(), shardFilter, renderPool, linkGraph,
+                        storeReady(shardUrl, dbClient, loaded.result(), profile, shardReady.completer()));
+                shardsReady.add(shardReady);
+            }
+            CompositeFuture.all(new ArrayList<>(shardsReady)).setHandler(ready -> {
+                if (ready.failed()) {
+                    readyHandler.handle(Future.failedFuture(ready.cause()));
+                } else {
+                    LOGGER.info("{} database shards ready in {} ms", shardCount, elapsedMillis(startedAt));
+                    WikiDatabaseService.createSharded(ready.result().list(), pageFilter, readyHandler);
+                }
+            });
+        });
+    }
+
+    /**
+     * The JDBC client of a database URL. By default its blocking calls run on the Vert.x worker pool, which bounds the
+     * statements in flight to the worker pool size however many pooled connections are idle; with the virtual executor
+     * each call runs on a virtual thread of its own, leaving the pool size as the only bound.
+     *
+     * The client is closed when this verticle stops. Its data source name is scoped to this deployment so that no
+     * other deployment shares its pool, which closing the client would otherwise take away from under it.
+     */
+    private JDBCClient jdbcClient(String url, String dataSourceName) {
+        JDBCClient dbClient;
+        if (EXECUTOR_VIRTUAL.equals(config().getString(CONFIG_WIKIDB_JDBC_EXECUTOR, EXECUTOR_WORKER))) {
+            DataSourceProvider provider = POOL_HIKARI.equals(config().getString(CONFIG_WIKIDB_JDBC_POOL_PROVIDER, POOL_C3P0))
+                    ? new HikariCPDataSourceProvider()
+                    : new C3P0DataSourceProvider();
+            dbClient = VirtualThreadJDBCClient.create(vertx, provider, jdbcConfig(url),
+                    config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 30));
+        } else {
+            dbClient = JDBCClient.createShared(vertx, jdbcConfig(url), dataSourceName + "-" + deploymentID());
+        }
+        dbClients.add(dbClient);
+        return dbClient;
+    }
+
+    /**
+     * The pool configuration for a database URL, in the terms of the configured pool provider.
+     *
+     * The service only ever runs the fixed set of SqlQuery statements, so with c3p0 each pooled connection keeps them
+     * all prepared: the JDBC client prepares and closes a statement on every call, and the pool hands back the
+     * statement already prepared for that connection instead. The default cache has room for twice as many statements
+     * since the existing-pages query differs by the number of names it checks.
+     *
+     * HikariCP leaves statement caching to the driver, and HSQLDB already reuses the statements it compiled for the
+     * same SQL. c3p0 reads its connection validation settings from c3p0.properties; HikariCP validates idle
+     * connections on borrow.
+     */
+    private JsonObject jdbcConfig(String url) {
+        String driverClass = config().getString(CONFIG_WIKIDB_JDBC_DRIVER_CLASS, "org.hsqldb.jdbcDriver");
+        int maxPoolSize = config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 30);
+        if (POOL_HIKARI.equals(config().getString(CONFIG_WIKIDB_JDBC_POOL_PROVIDER, POOL_C3P0))) {
+            return new JsonObject()
+                    .put("provider_class", "io.vertx.ext.jdbc.spi.impl.HikariCPDataSourceProvider")
+                    .put("jdbcUrl", url)
+                    .put("driverClassName", driverClass)
+                    .put("maximumPoolSize", maxPoolSize)
+                    .put("poolName", "wiki-" + url);
+        }
+        return new JsonObject()
+                .put("url", url)
+                .put("driver_class", driverClass)
+                .put("max_pool_size", maxPoolSize)
+                .put("max_statements_per_connection",
+                        config().getInteger(CONFIG_WIKIDB_JDBC_STATEMENT_CACHE_SIZE, 2 * SqlQuery.values().length));
+    }
+
+    /**
+     * Converts the tables of a JDBC store to the table type of the storage profile, then registers the store for
+     * blob collection and maintenance before reporting it ready.
+     */
+    private Handler<AsyncResult<WikiDatabaseService>> storeReady(String url, JDBCClient dbClient,
+                                                                 HashMap<SqlQuery, String> sqlQueries,
+                                                                 StorageProfile profile,
+                                                                 Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+        return ready -> {
+            if (ready.failed()) {
+                readyHandler.handle(ready);
+                return;
+            }
+            WikiDatabaseServiceImpl blobStore = (WikiDatabaseServiceImpl) ready.result();
+            convertTables(dbClient, sqlQueries, profile.tableType(url)).setHandler(converted -> {
+                if (converted.failed()) {
+                    LOGGER.error("Could not convert the tables to the {} storage profile", profile.configName(),
+                            converted.cause());
+                    readyHandler.handle(Future.failedFuture(converted.cause()));
+                    return;
+                }
+                blobStores.add(blobStore);
+                maintenance.add(url, dbClient, blobStore);
+                maintainedUrls.add(url);
+                readyHandler.handle(ready);
+            });
+        };
+    }
+
+    private Future<Void> convertTables(JDBCClient dbClient, HashMap<SqlQuery, String> sqlQueries, String tableType) {
+        if (tableType == null) {
+            return Future.succeededFuture();
+        }
+        Future<Void> converted = Future.future();
+        dbClient.getConnection(conn -> {
+            if (conn.failed()) {
+                converted.fail(conn.cause());
+                return;
+            }
+            SQLConnection connection = conn.result();
+            connection.execute(String.format(sqlQueries.get(SqlQuery.SET_PAGES_TABLE_TYPE), tableType), pages -> {
+                if (pages.failed()) {
+                    connection.close();
+                    converted.fail(pages.cause());
+                    return;
+                }
+                connection.execute(String.format(sqlQueries.get(SqlQuery.SET_BLOBS_TABLE_TYPE), tableType), blobs -> {
+                    if (blobs.failed()) {
+                        connection.close();
+                        converted.fail(blobs.cause());
+                        return;
+                    }
+                    connection.execute(String.format(sqlQueries.get(SqlQuery.SET_LINKS_TABLE_TYPE), tableType), links -> {
+                        connection.close();
+                        converted.handle(links);
+                    });
+                });
+            });
+        });
+        return converted;
+    }
+
+    /**
+     * We register the service here.
+     * Registering a service requires an interface class, a Vert.x context, an implementation and an event bus
+     * destination.
+     */
+    private void register(long startedAt) {
+        WikiDatabaseServiceVertxProxyHandler proxyHandler = new WikiDatabaseServiceVertxProxyHandler(vertx,
+                new RecordingWikiDatabaseService(new RecentChangesWikiDatabaseService(
+                        new ChangePublishingWikiDatabaseService(service, vertx.eventBus(),
+                                config().getString(CONFIG_WIKIDB_CHANGES_ADDRESS, "wikidb.changes")),
+                        recentChanges)));
+        /*
+         * The proxy handler is wrapped in a ServiceCallTimer and registered as a plain event bus consumer rather than
+         * through a ServiceBinder, so that replies carry the service time and correlation id of each call in their
+         * headers.
+         */
+        vertx.eventBus().consumer(CONFIG_WIKIDB_QUEUE, new ServiceCallTimer(proxyHandler,
+                config().getLong(CONFIG_WIKIDB_SLOW_CALL_THRESHOLD, 500L), maintenance));
+        LOGGER.info("Database service ready in {} ms", elapsedMillis(startedAt));
+        collectBlobsPeriodically();
+        if (config().getBoolean(CONFIG_WIKIDB_MAINTENANCE_ENABLED, true)) {
+            vertx.setPeriodic(config().getLong(CONFIG_WIKIDB_MAINTENANCE_CHECK_INTERVAL, 60_000L),
+                    id -> maintenance.check(vertx));
+        }
+        Readiness.markReady(vertx, Readiness.DATABASE);
+    }
+
+    /**
+     * Reloads the recent changes from their log, and appends the new ones to it periodically. The flushes and the
+     * final close are ordered blocking tasks of this verticle, so that they never run concurrently.
+     */
+    private void openRecentChanges(Handler<AsyncResult<RecentChanges>> resultHandler) {
+        File file = new File(config().getString(CONFIG_WIKIDB_RECENT_CHANGES_FILE, "db/recent-changes.log"));
+        int capacity = config().getInteger(CONFIG_WIKIDB_RECENT_CHANGES_CAPACITY, 1000);
+        vertx.<RecentChanges>executeBlocking(future -> {
+            try {
+                future.complete(RecentChanges.open(file, capacity));
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, opened -> {
+            if (opened.succeeded()) {
+                vertx.setPeriodic(config().getLong(CONFIG_WIKIDB_RECENT_CHANGES_FLUSH_INTERVAL, 1000L),
+                        id -> vertx.executeBlocking(future -> {
+                            try {
+                                opened.result().flush();
+                                future.complete();
+                            } catch (IOException e) {
+                                future.fail(e);
+                            }
+                        }, flushed -> {
+                            if (flushed.failed()) {
+                                LOGGER.error("Could not write the recent changes log", flushed.cause());
+                            }
+                        }));
+            }
+            resultHandler.handle(opened);
         });
+    }
 
+    /**
+     * Deletes the blobs no page references any more, in each blob store. Writes only release blobs, so that a blob
+     * released by one page and referenced again by another in the meantime is not stored twice.
+     */
+    private void collectBlobsPeriodically() {
+        if (blobStores.isEmpty()) {
+            return;
+        }
+        vertx.setPeriodic(config().getLong(CONFIG_WIKIDB_BLOB_GC_INTERVAL, 60_000L), id -> {
+            for (WikiDatabaseServiceImpl blobStore : blobStores) {
+                blobStore.collectBlobs(collected -> {
+                    if (collected.failed()) {
+                        LOGGER.error("Could not collect the unreferenced blobs", collected.cause());
+                    } else if (collected.result() > 0) {
+                        LOGGER.debug("Collected {} unreferenced blobs", collected.result());
+                    }
+                });
+            }
+        });
+    }
+
+    private static long elapsedMillis(long startedAt) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
     }
 
 
+    @Override
+    public void stop(Future<Void> stopFuture) throws Exception {
+        // the maintenance is shared by every deployment of this verticle
+        maintainedUrls.forEach(maintenance::remove);
+        WikiDatabaseService store = service;
+        RecentChanges changes = recentChanges;
+        vertx.executeBlocking(future -> {
+            try {
+                if (changes != null) {
+                    changes.close();
+                }
+                if (store instanceof LogWikiDatabaseServiceImpl) {
+                    ((LogWikiDatabaseServiceImpl) store).close();
+                }
+                future.complete();
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, closed -> {
+            // the pools go last, once nothing writes to the stores any more
+            List<Future<?>> clientsClosed = new ArrayList<>();
+            for (JDBCClient dbClient : dbClients) {
+                Future<Void> clientClosed = Future.future();
+                dbClient.close(clientClosed.completer());
+                clientsClosed.add(clientClosed);
+            }
+            CompositeFuture.join(new ArrayList<>(clientsClosed)).setHandler(clients -> {
+                if (closed.failed()) {
+                    stopFuture.fail(closed.cause());
+                } else if (clients.failed()) {
+                    stopFuture.fail(clients.cause());
+                } else {
+                    stopFuture.complete();
+                }
+            });
+        });
+    }
+
     private HashMap<SqlQuery, String> loadSqlQueries() throws IOException {
         String queriesFile = config().getString(CONFIG_WIKIDB_SQL_QUERIES_RESOURCE_FILE);
         InputStream queriesInputStream;
@@ -91,12 +463,44 @@ public class WikiDatabaseVerticle extends AbstractVerticle {
         HashMap<SqlQuery, String> sqlQueries = new HashMap<>();
         // We use the SqlQuery enumeration type to avoid string constants later in the code.
         sqlQueries.put(SqlQuery.CREATE_PAGES_TABLE, queriesProps.getProperty("create-pages-table"));
+        sqlQueries.put(SqlQuery.CREATE_BLOBS_TABLE, queriesProps.getProperty("create-blobs-table"));
         sqlQueries.put(SqlQuery.ALL_PAGES, queriesProps.getProperty("all-pages"));
         sqlQueries.put(SqlQuery.GET_PAGE, queriesProps.getProperty("get-page"));
+        sqlQueries.put(SqlQuery.GET_PAGE_HASH, queriesProps.getProperty("get-page-hash"));
         sqlQueries.put(SqlQuery.CREATE_PAGE, queriesProps.getProperty("create-page"));
         sqlQueries.put(SqlQuery.SAVE_PAGE, queriesProps.getProperty("save-page"));
         sqlQueries.put(SqlQuery.DELETE_PAGE, queriesProps.getProperty("delete-page"));
+        sqlQueries.put(SqlQuery.GET_PAGE_NAME, queriesProps.getProperty("get-page-name"));
         sqlQueries.put(SqlQuery.ALL_PAGES_DATA, queriesProps.getProperty("all-pages-data"));
+        sqlQueries.put(SqlQuery.EXISTING_PAGES, queriesProps.getProperty("existing-pages"));
+        sqlQueries.put(SqlQuery.BLOB_EXISTS, queriesProps.getProperty("blob-exists"));
+        sqlQueries.put(SqlQuery.EXISTING_BLOBS, queriesProps.getProperty("existing-blobs"));
+        sqlQueries.put(SqlQuery.INSERT_BLOB, queriesProps.getProperty("insert-blob"));
+        sqlQueries.put(SqlQuery.REFERENCE_BLOB, queriesProps.getProperty("reference-blob"));
+        sqlQueries.put(SqlQuery.RELEASE_BLOB, queriesProps.getProperty("release-blob"));
+        sqlQueries.put(SqlQuery.COLLECT_BLOBS, queriesProps.getProperty("collect-blobs"));
+        sqlQueries.put(SqlQuery.STALE_BLOBS, queriesProps.getProperty("stale-blobs"));
+        sqlQueries.put(SqlQuery.UPDATE_BLOB_RENDERING, queriesProps.getProperty("update-blob-rendering"));
+        sqlQueries.put(SqlQuery.GET_PAGE_REVISION, queriesProps.getProperty("get-page-revision"));
+        sqlQueries.put(SqlQuery.PATCH_PAGE, queriesProps.getProperty("patch-page"));
+        sqlQueries.put(SqlQuery.PAGES_AFTER, queriesProps.getProperty("pages-after"));
+        sqlQueries.put(SqlQuery.PAGE_HASHES, queriesProps.getProperty("page-hashes"));
+        sqlQueries.put(SqlQuery.ADD_REVISION_COLUMN, queriesProps.getProperty("add-revision-column"));
+        sqlQueries.put(SqlQuery.ADD_CREATED_COLUMN, queriesProps.getProperty("add-created-column"));
+        sqlQueries.put(SqlQuery.ADD_CONTENT_HASH_COLUMN, queriesProps.getProperty("add-content-hash-column"));
+        sqlQueries.put(SqlQuery.LEGACY_PAGES, queriesProps.getProperty("legacy-pages"));
+        sqlQueries.put(SqlQuery.SET_PAGE_HASH, queriesProps.getProperty("set-page-hash"));
+        sqlQueries.put(SqlQuery.COUNT_BLOB_REFERENCES, queriesProps.getProperty("count-blob-references"));
+        sqlQueries.put(SqlQuery.DROP_CONTENT_COLUMN, queriesProps.getProperty("drop-content-column"));
+        sqlQueries.put(SqlQuery.DROP_HTML_COLUMN, queriesProps.getProperty("drop-html-column"));
+        sqlQueries.put(SqlQuery.DROP_RENDER_VERSION_COLUMN, queriesProps.getProperty("drop-render-version-column"));
+        sqlQueries.put(SqlQuery.SET_PAGES_TABLE_TYPE, queriesProps.getProperty("set-pages-table-type"));
+        sqlQueries.put(SqlQuery.SET_BLOBS_TABLE_TYPE, queriesProps.getProperty("set-blobs-table-type"));
+        sqlQueries.put(SqlQuery.SET_LINKS_TABLE_TYPE, queriesProps.getProperty("set-links-table-type"));
+        sqlQueries.put(SqlQuery.CREATE_LINKS_TABLE, queriesProps.getProperty("create-links-table"));
+        sqlQueries.put(SqlQuery.PAGE_LINKS, queriesProps.getProperty("page-links"));
+        sqlQueries.put(SqlQuery.DELETE_LINKS, queriesProps.getProperty("delete-links"));
+        sqlQueries.put(SqlQuery.INSERT_LINK, queriesProps.getProperty("insert-link"));
         return sqlQueries;
     }
 
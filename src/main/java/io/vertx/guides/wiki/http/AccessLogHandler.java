@@ -0,0 +1,96 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs one line per request, in the combined log format followed by the response time in milliseconds and the
+ * correlation id of the request (see ServerTiming).
+ *
+ * The line is formatted once the response is written, in a StringBuilder reused by each event loop thread, and
+ * handed to the ACCESS_LOGGER logger. logback.xml routes that logger to an asynchronous appender in front of a rolling
+ * file, so the event loop only pays for formatting and a non-blocking queue offer: the file is written in batches by
+ * the appender thread, and entries are dropped rather than blocking the loop when the queue is full.
+ */
+public class AccessLogHandler implements Handler<RoutingContext> {
+
+    public static final String ACCESS_LOGGER = "io.vertx.guides.wiki.access";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ACCESS_LOGGER);
+
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    @Override
+    public void handle(RoutingContext context) {
+        if (LOGGER.isInfoEnabled()) {
+            long startedAt = System.nanoTime();
+            ZonedDateTime timestamp = ZonedDateTime.now();
+            context.addBodyEndHandler(v -> log(context, timestamp, startedAt));
+        }
+        context.next();
+    }
+
+    private void log(RoutingContext context, ZonedDateTime timestamp, long startedAt) {
+        HttpServerRequest request = context.request();
+        StringBuilder line = BUFFERS.get();
+        line.setLength(0);
+        line.append(request.remoteAddress() != null ? request.remoteAddress().host() : "-")
+                .append(" - - [");
+        DATE_FORMAT.formatTo(timestamp, line);
+        line.append("] \"")
+                .append(request.method())
+                .append(' ')
+                .append(request.uri())
+                .append(' ')
+                .append(protocol(request))
+                .append("\" ")
+                .append(context.response().getStatusCode())
+                .append(' ')
+                .append(context.response().bytesWritten())
+                .append(" \"");
+        appendHeader(line, request.getHeader("Referer"));
+        line.append("\" \"");
+        appendHeader(line, request.getHeader("User-Agent"));
+        line.append("\" ")
+                .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+                .append(' ');
+        appendHeader(line, ServerTiming.requestId(context));
+        LOGGER.info(line.toString());
+    }
+
+    private static String protocol(HttpServerRequest request) {
+        if (request.version() == null) {
+            return "-";
+        }
+        switch (request.version()) {
+            case HTTP_1_0:
+                return "HTTP/1.0";
+            case HTTP_1_1:
+                return "HTTP/1.1";
+            default:
+                return "HTTP/2.0";
+        }
+    }
+
+    private static void appendHeader(StringBuilder line, String value) {
+        if (value == null) {
+            line.append('-');
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            line.append(c == '"' ? '\'' : c);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads a raw request body with a hard size limit, without buffering large bodies in memory while they arrive.
+ *
+ * Requests announcing a Content-Length above the limit are rejected with a 413 before any of the body is read (and
+ * clients sending "Expect: 100-continue" never send it). Bodies below the spill threshold are kept in memory; larger
+ * ones are written to a temporary file as they arrive, with back-pressure on the request. Once the body is complete
+ * it is decoded once as UTF-8 (a spilled body as it is streamed back from its file), stored in the routing context
+ * under BODY and the next handler is called.
+ */
+public class BoundedBodyHandler implements Handler<RoutingContext> {
+
+    public static final String BODY = "boundedBody";
+
+    private final Vertx vertx;
+    private final long maxSize;
+    private final int spillThreshold;
+    private final String uploadsDirectory;
+
+    public BoundedBodyHandler(Vertx vertx, long maxSize, int spillThreshold, String uploadsDirectory) {
+        this.vertx = vertx;
+        this.maxSize = maxSize;
+        this.spillThreshold = spillThreshold;
+        this.uploadsDirectory = uploadsDirectory;
+    }
+
+    /**
+     * Rejects requests whose announced Content-Length is above the limit, before any other body handler runs.
+     */
+    public static Handler<RoutingContext> rejectOversized(long maxSize) {
+        return context -> {
+            if (announcedLength(context.request()) > maxSize) {
+                tooLarge(context);
+            } else {
+                context.next();
+            }
+        };
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        HttpServerRequest request = context.request();
+        if (announcedLength(request) > maxSize) {
+            tooLarge(context);
+            return;
+        }
+        if ("100-continue".equalsIgnoreCase(request.getHeader("Expect"))) {
+            request.response().writeContinue();
+        }
+        new Upload(context).start();
+    }
+
+    private class Upload {
+        private final RoutingContext context;
+        private final HttpServerRequest request;
+        private Buffer memory = Buffer.buffer();
+        private String path;
+        private AsyncFile file;
+        private long received;
+        private boolean failed;
+
+        Upload(RoutingContext context) {
+            this.context = context;
+            this.request = context.request();
+        }
+
+        void start() {
+            context.addBodyEndHandler(v -> deleteFile());
+            request.handler(this::chunk);
+            request.exceptionHandler(this::fail);
+            request.endHandler(v -> end());
+            request.resume();
+        }
+
+        private void chunk(Buffer chunk) {
+            if (failed) {
+                return;
+            }
+            received += chunk.length();
+            if (received > maxSize) {
+                failed = true;
+                tooLarge(context);
+                return;
+            }
+            if (file != null) {
+                file.write(chunk);
+                if (file.writeQueueFull()) {
+                    request.pause();
+                    file.drainHandler(v -> request.resume());
+                }
+            } else if (memory.length() + chunk.length() <= spillThreshold) {
+                memory.appendBuffer(chunk);
+            } else {
+                spill(chunk);
+            }
+        }
+
+        private void spill(Buffer chunk) {
+            request.pause();
+            path = uploadsDirectory + File.separator + UUID.randomUUID();
+            vertx.fileSystem().mkdirs(uploadsDirectory, dir -> vertx.fileSystem().open(path,
+                    new OpenOptions().setWrite(true).setCreateNew(true), ar -> {
+                        if (ar.failed()) {
+                            fail(ar.cause());
+                            return;
+                        }
+                        file = ar.result();
+                        file.write(memory);
+                        file.write(chunk);
+                        memory = null;
+                        request.resume();
+                    }));
+        }
+
+        private void end() {
+            if (failed) {
+                return;
+            }
+            if (file == null) {
+                complete(memory);
+                return;
+            }
+            file.close(closed -> {
+                file = null;
+                if (closed.failed()) {
+                    fail(closed.cause());
+                    return;
+                }
+                readBack();
+            });
+        }
+
+        /**
+         * Streams the spilled body back from its file, decoding it chunk by chunk, so that only the decoded text is
+         * held in full rather than the bytes of the file as well.
+         */
+        private void readBack() {
+            vertx.fileSystem().open(path, new OpenOptions().setRead(true), opened -> {
+                if (opened.failed()) {
+                    fail(opened.cause());
+                    return;
+                }
+                file = opened.result();
+                Utf8Text text = new Utf8Text(received);
+                file.exceptionHandler(this::fail);
+                file.handler(text::append);
+                // the file is closed then deleted by complete()
+                file.endHandler(v -> complete(text.finish()));
+            });
+        }
+
+        private void complete(Buffer body) {
+            complete(body.toString("UTF-8"));
+        }
+
+        private void complete(String body) {
+            context.put(BODY, body);
+            memory = null;
+            deleteFile();
+            context.next();
+        }
+
+        private void fail(Throwable cause) {
+            if (!failed) {
+                failed = true;
+                context.fail(cause);
+            }
+        }
+
+        /**
+         * Deletes the spilled body, closing the file first if it is still open.
+         */
+        private void deleteFile() {
+            if (path != null) {
+                String toDelete = path;
+                path = null;
+                if (file != null) {
+                    file.close(v -> vertx.fileSystem().delete(toDelete, ar -> {
+                    }));
+                } else {
+                    vertx.fileSystem().delete(toDelete, ar -> {
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes UTF-8 text that arrives in chunks, carrying over the bytes of a character split between two chunks.
+     * Malformed input is replaced, as when decoding a whole buffer.
+     */
+    private static class Utf8Text {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+        private final StringBuilder text;
+        private ByteBuffer carried = ByteBuffer.allocate(0);
+
+        Utf8Text(long expectedBytes) {
+            text = new StringBuilder((int) Math.min(expectedBytes, Integer.MAX_VALUE - 8));
+        }
+
+        void append(Buffer chunk) {
+            ByteBuffer bytes = ByteBuffer.allocate(carried.remaining() + chunk.length());
+            bytes.put(carried).put(chunk.getBytes()).flip();
+            decode(bytes, false);
+            carried = bytes;
+        }
+
+        String finish() {
+            decode(carried, true);
+            while (decoder.flush(chars).isOverflow()) {
+                drain();
+            }
+            drain();
+            return text.toString();
+        }
+
+        private void decode(ByteBuffer bytes, boolean last) {
+            while (decoder.decode(bytes, chars, last).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        private void drain() {
+            chars.flip();
+            text.append(chars);
+            chars.clear();
+        }
+    }
+
+    private static long announcedLength(HttpServerRequest request) {
+        String length = request.getHeader("Content-Length");
+        if (length == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void tooLarge(RoutingContext context) {
+        context.response()
+                .setStatusCode(413)
+                .putHeader("Connection", "close")
+                .end("Request Entity Too Large");
+        // the rest of the body is never read
+        context.request().connection().close();
+    }
+}
@@ -0,0 +1,134 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams page change events to the browsers as Server-Sent Events: /api/changes follows every page, and
+ * /api/changes/:page a single one.
+ *
+ * Each HTTP verticle instance has its own handler, fed by its own consumer of the database change events, so that the
+ * subscribers and the events are only ever touched by the event loop of that instance. An event is encoded once into
+ * a buffer that is written to every subscriber of the page and of the global stream. A subscriber is nothing but its
+ * open response, so idle connections cost little more than their socket. Subscribers that do not keep up, with a
+ * full write queue, are disconnected rather than buffered for: EventSource reconnects by itself, and the page can be
+ * reloaded then.
+ *
+ * A comment line is sent to every subscriber at a fixed interval, so that proxies do not time idle streams out and
+ * connections that are gone get noticed.
+ */
+public class ChangeStreamHandler implements Handler<RoutingContext> {
+
+    private static final Buffer RETRY = Buffer.buffer("retry: 10000\n\n");
+    private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+
+    private final Map<String, Set<HttpServerResponse>> pageSubscribers = new HashMap<>();
+    private final Set<HttpServerResponse> globalSubscribers = new HashSet<>();
+    private final int maxSubscribers;
+    private final int writeQueueMaxSize;
+    private int subscribers;
+    private long events;
+    private long dropped;
+
+    public ChangeStreamHandler(Vertx vertx, int maxSubscribers, int writeQueueMaxSize, long heartbeatInterval) {
+        this.maxSubscribers = maxSubscribers;
+        this.writeQueueMaxSize = writeQueueMaxSize;
+        vertx.setPeriodic(heartbeatInterval, id -> heartbeat());
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        HttpServerResponse response = context.response();
+        if (subscribers >= maxSubscribers) {
+            response.setStatusCode(503)
+                    .putHeader("Retry-After", "10")
+                    .end("Too many change stream subscribers");
+            return;
+        }
+        String page = context.request().getParam("page");
+        Set<HttpServerResponse> targets = page == null
+                ? globalSubscribers
+                : pageSubscribers.computeIfAbsent(page, name -> new HashSet<>());
+        targets.add(response);
+        subscribers++;
+        response.closeHandler(v -> unsubscribe(page, response));
+
+        response.setChunked(true)
+                .setWriteQueueMaxSize(writeQueueMaxSize)
+                .putHeader("Content-Type", "text/event-stream")
+                .putHeader("Cache-Control", "no-cache")
+                .putHeader("X-Accel-Buffering", "no")
+                .write(RETRY);
+    }
+
+    /**
+     * Sends a change event published by the database service to the subscribers of its page and of all pages.
+     */
+    public void publish(JsonObject change) {
+        events++;
+        Buffer event = Buffer.buffer("event: change\ndata: " + change.encode() + "\n\n");
+        List<HttpServerResponse> slow = new ArrayList<>();
+        Set<HttpServerResponse> targets = pageSubscribers.get(change.getString("name"));
+        if (targets != null) {
+            send(targets, event, slow);
+        }
+        send(globalSubscribers, event, slow);
+        drop(slow);
+    }
+
+    public JsonObject metrics() {
+        return new JsonObject()
+                .put("subscribers", subscribers)
+                .put("pages", pageSubscribers.size())
+                .put("events", events)
+                .put("dropped", dropped);
+    }
+
+    private void heartbeat() {
+        List<HttpServerResponse> slow = new ArrayList<>();
+        send(globalSubscribers, HEARTBEAT, slow);
+        pageSubscribers.values().forEach(targets -> send(targets, HEARTBEAT, slow));
+        drop(slow);
+    }
+
+    private static void send(Set<HttpServerResponse> targets, Buffer data, List<HttpServerResponse> slow) {
+        for (HttpServerResponse response : targets) {
+            if (response.writeQueueFull()) {
+                slow.add(response);
+            } else {
+                // the buffer is not consumed by the write, so the same one goes to every subscriber
+                response.write(data);
+            }
+        }
+    }
+
+    /**
+     * Closes the connections of slow subscribers, once done iterating over the subscribers since closing a
+     * connection unsubscribes it.
+     */
+    private void drop(List<HttpServerResponse> slow) {
+        dropped += slow.size();
+        slow.forEach(HttpServerResponse::close);
+    }
+
+    private void unsubscribe(String page, HttpServerResponse response) {
+        Set<HttpServerResponse> targets = page == null ? globalSubscribers : pageSubscribers.get(page);
+        if (targets != null && targets.remove(response)) {
+            subscribers--;
+            if (page != null && targets.isEmpty()) {
+                pageSubscribers.remove(page);
+            }
+        }
+    }
+}
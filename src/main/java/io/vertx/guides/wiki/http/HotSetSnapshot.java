@@ -0,0 +1,94 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.guides.wiki.markdown.MarkdownRenderer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the hot set of the rendered page cache, so that a restarted node can serve its most requested pages
+ * without rendering them first.
+ *
+ * The file holds a magic number, a format version, the markdown renderer version, an entry count, then for each
+ * entry the page name, its markdown and its rendered HTML as length-prefixed UTF-8 strings. A snapshot taken with
+ * another renderer version is ignored. It is written to a temporary file and atomically renamed, and read back
+ * through a read-only memory mapping. Both operations block and must run on a worker thread.
+ */
+public final class HotSetSnapshot {
+
+    private static final int MAGIC = 0x57494b48; // "WIKH"
+    private static final int VERSION = 1;
+
+    private HotSetSnapshot() {
+    }
+
+    public static void write(File file, List<RenderedPageCache.Entry> entries) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(MarkdownRenderer.VERSION);
+            out.writeInt(entries.size());
+            for (RenderedPageCache.Entry entry : entries) {
+                writeString(out, entry.name());
+                writeString(out, entry.markdown());
+                writeString(out, entry.html());
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the entries of the snapshot as {name, markdown, html} triples, or an empty list when there is no valid
+     * snapshot
+     */
+    public static List<String[]> read(File file) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        if (!file.isFile()) {
+            return entries;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getInt() != MarkdownRenderer.VERSION) {
+                return entries;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                entries.add(new String[]{readString(buffer), readString(buffer), readString(buffer)});
+            }
+        } catch (RuntimeException e) {
+            // a truncated snapshot only means a colder start
+            throw new IOException("Corrupted hot set snapshot: " + file, e);
+        }
+        return entries;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,11 +1,14 @@
 package io.vertx.guides.wiki.http;
 
-import com.github.rjeschke.txtmark.Processor;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
@@ -16,15 +19,65 @@ import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.codec.BodyCodec;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.templ.FreeMarkerTemplateEngine;
+import io.vertx.guides.wiki.Readiness;
+import io.vertx.guides.wiki.database.DatabaseMaintenance;
+import io.vertx.guides.wiki.database.ErrorCodes;
+import io.vertx.guides.wiki.database.PageNameFilter;
+import io.vertx.guides.wiki.database.ServiceHeaders;
 import io.vertx.guides.wiki.database.WikiDatabaseService;
+import io.vertx.guides.wiki.jfr.TemplateRenderEvent;
+import io.vertx.guides.wiki.markdown.MarkdownRenderPool;
+import io.vertx.guides.wiki.markdown.WikiLinks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class HttpServerVerticle extends AbstractVerticle {
     public static final String CONFIG_HTTP_SERVER_PORT = "http.server.port";
+    public static final String CONFIG_HTTP_SERVER_INSTANCES = "http.server.instances";
+    public static final String CONFIG_HTTP_SERVER_TCP_NO_DELAY = "http.server.tcp_no_delay";
+    public static final String CONFIG_HTTP_SERVER_TCP_FAST_OPEN = "http.server.tcp_fast_open";
+    public static final String CONFIG_HTTP_SERVER_REUSE_PORT = "http.server.reuse_port";
+    public static final String CONFIG_HTTP_SERVER_IDLE_TIMEOUT = "http.server.idle_timeout_s";
+    public static final String CONFIG_HTTP_SERVER_COMPRESSION = "http.server.compression";
+    public static final String CONFIG_HTTP_SERVER_COMPRESSION_LEVEL = "http.server.compression_level";
     public static final String CONFIG_WIKIDB_QUEUE = "wikidb.queue";
+    public static final String CONFIG_WIKIDB_CHANGES_ADDRESS = "wikidb.changes.address";
+    public static final String CONFIG_STARTUP_QUEUE_SIZE = "http.startup.queue_size";
+    public static final String CONFIG_STARTUP_QUEUE_TIMEOUT = "http.startup.queue_timeout_ms";
+    public static final String CONFIG_BODY_MAX_SIZE = "http.body.max_size";
+    public static final String CONFIG_BODY_SPILL_THRESHOLD = "http.body.spill_threshold";
+    public static final String CONFIG_BODY_UPLOADS_DIRECTORY = "http.body.uploads_directory";
+    public static final String CONFIG_EXPORT_BATCH_SIZE = "http.export.batch_size";
+    public static final String CONFIG_IMPORT_BATCH_SIZE = "http.import.batch_size";
+    public static final String CONFIG_IMPORT_MAX_LINE_SIZE = "http.import.max_line_size";
+    public static final String CONFIG_CHANGES_MAX_SUBSCRIBERS = "http.changes.max_subscribers";
+    public static final String CONFIG_CHANGES_WRITE_QUEUE_MAX_SIZE = "http.changes.write_queue_max_size";
+    public static final String CONFIG_CHANGES_HEARTBEAT_INTERVAL = "http.changes.heartbeat_interval_ms";
+    public static final String CONFIG_RENDER_CACHE_MAX_ENTRIES = "http.render_cache.max_entries";
+    public static final String CONFIG_HOTPAGES_SKETCH_WIDTH = "http.hot_pages.sketch_width";
+    public static final String CONFIG_HOTPAGES_TOP_K = "http.hot_pages.top_k";
+    public static final String CONFIG_HOTPAGES_DECAY_INTERVAL = "http.hot_pages.decay_interval_ms";
+    public static final String CONFIG_RATELIMIT_MAX_CLIENTS = "http.ratelimit.max_clients";
+    public static final String CONFIG_RATELIMIT_WRITE_PER_MINUTE = "http.ratelimit.write.per_minute";
+    public static final String CONFIG_RATELIMIT_WRITE_BURST = "http.ratelimit.write.burst";
+    public static final String CONFIG_RATELIMIT_BACKUP_PER_MINUTE = "http.ratelimit.backup.per_minute";
+    public static final String CONFIG_RATELIMIT_BACKUP_BURST = "http.ratelimit.backup.burst";
+    public static final String CONFIG_SERVER_TIMING_ENABLED = "http.server_timing.enabled";
+
+    /**
+     * Marks the requests of the startup warm-up, which are not page views.
+     */
+    public static final String WARM_UP_HEADER = "X-Wiki-Warm-Up";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerVerticle.class);
 
@@ -37,13 +90,28 @@ public class HttpServerVerticle extends AbstractVerticle {
 
     // tag::db-consume[]
     private WikiDatabaseService dbService;
+    private String wikiDbQueue;
     private WebClient webClient;
+    private RateLimiter rateLimiter;
+    private PageNameFilter pageFilter;
+    private RenderedPageCache renderedPages;
+    private PageViewSketch pageViews;
+    private MarkdownRenderPool renderPool;
+    private ChangeStreamHandler changeStreams;
+
+    private final Deque<RoutingContext> startupQueue = new ArrayDeque<>();
+    private boolean databaseReady;
 
     @Override
     public void start(Future<Void> startFuture) throws Exception {
 
-        String wikiDbQueue = config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue"); // <1>
+        wikiDbQueue = config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue"); // <1>
         dbService = WikiDatabaseService.createProxy(vertx, wikiDbQueue);
+        pageFilter = PageNameFilter.shared(vertx);
+        pageViews = PageViewSketch.shared(vertx, config());
+        renderedPages = RenderedPageCache.shared(vertx)
+                .setMaxEntries(config().getInteger(CONFIG_RENDER_CACHE_MAX_ENTRIES, 1_000))
+                .setPopularity(pageViews);
 
         /**
          * Since requests are made using HTTPS, we need to configure the web client with
@@ -57,15 +125,88 @@ public class HttpServerVerticle extends AbstractVerticle {
                 .setUserAgent("vert-x3"));
 
 
-        HttpServer server = vertx.createHttpServer();
+        /*
+         * The limiter is shared by all instances of this verticle, so a client gets the same budget whichever
+         * event loop accepts its connection. Limits are checked before the body handler so that rejected
+         * requests are never buffered.
+         */
+        rateLimiter = RateLimiter.shared(vertx, config());
+        renderPool = MarkdownRenderPool.shared(vertx, config());
+
+        /*
+         * Every instance of this verticle consumes the page change events published by the database service, and
+         * fans them out to the change streams of its own connections.
+         */
+        changeStreams = new ChangeStreamHandler(vertx,
+                config().getInteger(CONFIG_CHANGES_MAX_SUBSCRIBERS, 10_000),
+                config().getInteger(CONFIG_CHANGES_WRITE_QUEUE_MAX_SIZE, 16 * 1024),
+                config().getLong(CONFIG_CHANGES_HEARTBEAT_INTERVAL, 30_000L));
+        vertx.eventBus().<JsonObject>consumer(config().getString(CONFIG_WIKIDB_CHANGES_ADDRESS, "wikidb.changes"),
+                message -> changeStreams.publish(message.body()));
+
+        HttpServer server = vertx.createHttpServer(serverOptions());
         Router router = Router.router(vertx);
+        router.route().handler(new AccessLogHandler());
+        router.route().handler(ServerTiming.shared(vertx, config()));
         router.get("/").handler(this::indexHandler);
         router.get("/alive").handler(context -> context.response().end("Alive"));
+        router.get("/ready").handler(this::readinessHandler);
+        router.get("/metrics").handler(this::metricsHandler);
+        router.get("/api/hot-pages").handler(this::hotPagesHandler);
+        router.get("/api/changes").handler(changeStreams);
+        router.get("/api/changes/:page").handler(changeStreams);
+
+        /*
+         * The database verticle is deployed in parallel with this one, so requests arriving before it is ready
+         * are held in a bounded queue instead of failing.
+         */
+        Readiness.onReady(vertx, Readiness.DATABASE, v -> releaseStartupQueue());
+        router.route().handler(this::readinessGate);
+
         router.get("/wiki/:page").handler(this::pageRenderingHandler);
+        router.get("/backup").handler(rateLimitHandler(RateLimiter.RouteClass.BACKUP));
         router.get("/backup").handler(this::backupHandler);
+        router.get("/api/recent-changes").handler(this::recentChangesHandler);
+        router.get("/api/orphaned-pages").handler(this::orphanedPagesHandler);
+
+        /*
+         * Request bodies are bounded: oversized requests are rejected from their Content-Length before the body is
+         * read. The form posts of the editor are still buffered by the body handler, while PUT /wiki/:page takes the
+         * raw markdown and spills large bodies to a temporary file while they arrive.
+         */
+        long maxBodySize = config().getLong(CONFIG_BODY_MAX_SIZE, 10L * 1024 * 1024);
+        String uploadsDirectory = config().getString(CONFIG_BODY_UPLOADS_DIRECTORY, BodyHandler.DEFAULT_UPLOADS_DIRECTORY);
+
+        router.put("/wiki/:page").handler(rateLimitHandler(RateLimiter.RouteClass.WRITE));
+        router.put("/wiki/:page").handler(new BoundedBodyHandler(vertx, maxBodySize,
+                config().getInteger(CONFIG_BODY_SPILL_THRESHOLD, 256 * 1024), uploadsDirectory));
+        router.put("/wiki/:page").handler(this::pageUploadHandler);
 
-        router.post().handler(BodyHandler.create());
+        /*
+         * The bulk API streams in both directions, so the import is routed before the POST body handlers.
+         */
+        router.get("/api/export").handler(rateLimitHandler(RateLimiter.RouteClass.BACKUP));
+        router.get("/api/export").handler(new NdjsonExportHandler(dbService,
+                config().getInteger(CONFIG_EXPORT_BATCH_SIZE, 100)));
+        router.post("/api/import").handler(rateLimitHandler(RateLimiter.RouteClass.WRITE));
+        router.post("/api/import").handler(new NdjsonImportHandler(dbService, renderedPages,
+                config().getInteger(CONFIG_IMPORT_BATCH_SIZE, 100),
+                config().getInteger(CONFIG_IMPORT_MAX_LINE_SIZE, (int) maxBodySize)));
+
+        router.post("/save").handler(rateLimitHandler(RateLimiter.RouteClass.WRITE));
+        router.post("/create").handler(rateLimitHandler(RateLimiter.RouteClass.WRITE));
+        router.post("/delete").handler(rateLimitHandler(RateLimiter.RouteClass.WRITE));
+        router.patch("/api/pages/:id").handler(rateLimitHandler(RateLimiter.RouteClass.WRITE));
+        BodyHandler bodyHandler = BodyHandler.create()
+                .setBodyLimit(maxBodySize)
+                .setUploadsDirectory(uploadsDirectory)
+                .setDeleteUploadedFilesOnEnd(true);
+        router.post().handler(BoundedBodyHandler.rejectOversized(maxBodySize));
+        router.post().handler(bodyHandler);
+        router.patch().handler(BoundedBodyHandler.rejectOversized(maxBodySize));
+        router.patch().handler(bodyHandler);
         router.post("/save").handler(this::pageUpdateHandler);
+        router.patch("/api/pages/:id").handler(this::pagePatchHandler);
         router.post("/create").handler(this::pageCreateHandler);
         router.post("/delete").handler(this::pageDeletionHandler);
 
@@ -74,7 +215,8 @@ public class HttpServerVerticle extends AbstractVerticle {
                 .requestHandler(router::accept)
                 .listen(portNumber, ar -> {
                     if (ar.succeeded()) {
-                        LOGGER.info("HTTP server running on port " + portNumber);
+                        LOGGER.info("HTTP server running on port " + portNumber
+                                + (vertx.isNativeTransportEnabled() ? " (native transport)" : ""));
                         startFuture.complete();
                     } else {
                         LOGGER.error("Could not start a HTTP server", ar.cause());
@@ -83,8 +225,152 @@ public class HttpServerVerticle extends AbstractVerticle {
                 });
     }
 
+    /**
+     * The options of the HTTP server, which every instance of this verticle shares: Vert.x binds the port once and
+     * spreads the accepted connections over the instances, one event loop each.
+     *
+     * TCP_FASTOPEN and SO_REUSEPORT are only supported by the native transport, which Vert.x uses when it is created
+     * with preferNativeTransport (e.g. -Dvertx.options.preferNativeTransport=true with the launcher) and the native
+     * library for the platform is on the classpath; the NIO transport ignores them. Idle connections are closed after
+     * the idle timeout in seconds, 0 for none: keep it above the heartbeat interval of the change streams. Cleartext
+     * HTTP/2 needs no option: the server always accepts it through the upgrade mechanism or prior knowledge.
+     */
+    private HttpServerOptions serverOptions() {
+        HttpServerOptions options = new HttpServerOptions()
+                .setTcpNoDelay(config().getBoolean(CONFIG_HTTP_SERVER_TCP_NO_DELAY, true))
+                .setTcpFastOpen(config().getBoolean(CONFIG_HTTP_SERVER_TCP_FAST_OPEN, false))
+                .setReusePort(config().getBoolean(CONFIG_HTTP_SERVER_REUSE_PORT, false))
+                .setIdleTimeout(config().getInteger(CONFIG_HTTP_SERVER_IDLE_TIMEOUT, 0))
+                .setCompressionSupported(config().getBoolean(CONFIG_HTTP_SERVER_COMPRESSION, false))
+                .setCompressionLevel(config().getInteger(CONFIG_HTTP_SERVER_COMPRESSION_LEVEL, 6));
+        if (!vertx.isNativeTransportEnabled() && (options.isTcpFastOpen() || options.isReusePort())) {
+            LOGGER.warn("TCP_FASTOPEN and SO_REUSEPORT need the native transport, which is not enabled");
+        }
+        return options;
+    }
+
+    private void readinessGate(RoutingContext context) {
+        if (databaseReady) {
+            context.next();
+            return;
+        }
+        if (startupQueue.size() >= config().getInteger(CONFIG_STARTUP_QUEUE_SIZE, 256)) {
+            serviceUnavailable(context);
+            return;
+        }
+        // the request is paused so that the body handler does not miss any data once released
+        context.request().pause();
+        startupQueue.add(context);
+        vertx.setTimer(config().getLong(CONFIG_STARTUP_QUEUE_TIMEOUT, 10_000L), id -> {
+            if (startupQueue.remove(context)) {
+                context.request().resume();
+                serviceUnavailable(context);
+            }
+        });
+    }
+
+    private void releaseStartupQueue() {
+        databaseReady = true;
+        LOGGER.info("Database ready, releasing {} queued requests", startupQueue.size());
+        RoutingContext context;
+        while ((context = startupQueue.poll()) != null) {
+            context.next();
+            context.request().resume();
+        }
+    }
+
+    private void serviceUnavailable(RoutingContext context) {
+        context.response()
+                .setStatusCode(503)
+                .putHeader("Retry-After", "1")
+                .end("Service Unavailable");
+    }
+
+    private void readinessHandler(RoutingContext context) {
+        boolean ready = Readiness.isReady(vertx, Readiness.DATABASE) && Readiness.isReady(vertx, Readiness.WARM_UP);
+        context.response()
+                .setStatusCode(ready ? 200 : 503)
+                .end(ready ? "Ready" : "Starting");
+    }
+
+    private void metricsHandler(RoutingContext context) {
+        JsonObject metrics = new JsonObject()
+                .put("pageFilter", pageFilter.metrics())
+                .put("renderedPages", new JsonObject().put("size", renderedPages.size()))
+                .put("markdownRendering", renderPool.metrics())
+                .put("pageViews", pageViews.metrics())
+                .put("changeStreams", changeStreams.metrics())
+                .put("databaseMaintenance", DatabaseMaintenance.shared(vertx).metrics());
+        context.response().putHeader("Content-Type", "application/json");
+        context.response().end(metrics.encodePrettily());
+    }
+
+    private void hotPagesHandler(RoutingContext context) {
+        String param = context.request().getParam("limit");
+        int limit;
+        try {
+            limit = param == null ? 10 : Integer.parseInt(param);
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (limit < 0) {
+            context.response().setStatusCode(400).end("Invalid limit");
+            return;
+        }
+        context.response().putHeader("Content-Type", "application/json");
+        context.response().end(pageViews.hottest(limit).encodePrettily());
+    }
+
+    private void recentChangesHandler(RoutingContext context) {
+        String param = context.request().getParam("limit");
+        int limit;
+        try {
+            limit = param == null ? 50 : Integer.parseInt(param);
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (limit < 0) {
+            context.response().setStatusCode(400).end("Invalid limit");
+            return;
+        }
+        dbService(context).fetchRecentChanges(limit, ServerTiming.call(context, reply -> {
+            if (reply.succeeded()) {
+                context.response().putHeader("Content-Type", "application/json");
+                context.response().end(reply.result().encodePrettily());
+            } else {
+                context.fail(reply.cause());
+            }
+        }));
+    }
+
+    private void orphanedPagesHandler(RoutingContext context) {
+        dbService(context).fetchOrphanedPages(ServerTiming.call(context, reply -> {
+            if (reply.succeeded()) {
+                context.response().putHeader("Content-Type", "application/json");
+                context.response().end(new JsonArray(reply.result()).encodePrettily());
+            } else {
+                context.fail(reply.cause());
+            }
+        }));
+    }
+
+    private Handler<RoutingContext> rateLimitHandler(RateLimiter.RouteClass routeClass) {
+        return context -> {
+            long waitNanos = rateLimiter.tryAcquire(routeClass, context.request().remoteAddress().host());
+            if (waitNanos == 0) {
+                context.next();
+            } else {
+                long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos));
+                context.response()
+                        .setStatusCode(429)
+                        .putHeader("Retry-After", String.valueOf(retryAfter))
+                        .end("Too Many Requests");
+            }
+        };
+    }
+
     private void backupHandler(RoutingContext context) {
-        dbService.fetchAllPagesData(reply -> {
+        dbService(context).fetchAllPagesData(ServerTiming.call(context, reply -> {
             if (reply.succeeded()) {
                 JsonArray filesObject = new JsonArray();
                 JsonObject payload = new JsonObject()
@@ -149,59 +435,147 @@ public class HttpServerVerticle extends AbstractVerticle {
             } else {
                 context.fail(reply.cause());
             }
-        });
+        }));
     }
 
     // tag::db-service-calls[]
     private void indexHandler(RoutingContext context) {
-        dbService.fetchAllPages(reply -> {
+        dbService(context).fetchAllPages(ServerTiming.call(context, reply -> {
             if (reply.succeeded()) {
                 context.put("title", "Wiki home");
                 context.put("pages", reply.result().getList());
-                templateEngine.render(context, "templates", "/index.ftl", ar -> {
-                    if (ar.succeeded()) {
-                        context.response().putHeader("Content-Type", "text/html");
-                        context.response().end(ar.result());
-                    } else {
-                        context.fail(ar.cause());
-                    }
-                });
+                renderTemplate(context, "/index.ftl");
             } else {
                 context.fail(reply.cause());
             }
-        });
+        }));
     }
 
     private void pageRenderingHandler(RoutingContext context) {
         String requestedPage = context.request().getParam("page");
-        dbService.fetchPage(requestedPage, reply -> {
-            if (reply.succeeded()) {
 
-                JsonObject payLoad = reply.result();
-                boolean found = payLoad.getBoolean("found");
-                String rawContent = payLoad.getString("rawContent", EMPTY_PAGE_MARKDOWN);
-                context.put("title", requestedPage);
-                context.put("id", payLoad.getInteger("id", -1));
-                context.put("newPage", found ? "no" : "yes");
-                context.put("rawContent", rawContent);
-                context.put("content", Processor.process(rawContent));
-                context.put("timestamp", new Date().toString());
-
-                templateEngine.render(context, "templates", "/page.ftl", ar -> {
-                    if (ar.succeeded()) {
-                        context.response().putHeader("Content-Type", "text/html");
-                        context.response().end(ar.result());
-                    } else {
-                        context.fail(ar.cause());
-                    }
-                });
+        /*
+         * Pages that are definitely missing go straight to the editor, without an event bus round trip.
+         */
+        if (!pageFilter.mightContain(requestedPage)) {
+            context.put("backlinks", Collections.emptyList());
+            pageFetched(context, requestedPage, new JsonObject().put("found", false));
+            return;
+        }
 
+        /*
+         * The pages linking to this one come from the link graph of the database service, asked for alongside the
+         * page so that they do not add a round trip.
+         */
+        Future<JsonObject> page = Future.future();
+        Future<List<String>> backlinks = Future.future();
+        WikiDatabaseService service = dbService(context);
+        service.fetchPage(requestedPage, ServerTiming.call(context, page.completer()));
+        service.fetchBacklinks(requestedPage, ServerTiming.call(context, backlinks.completer()));
+        CompositeFuture.all(page, backlinks).setHandler(reply -> {
+            if (reply.succeeded()) {
+                context.put("backlinks", backlinks.result());
+                pageFetched(context, requestedPage, page.result());
             } else {
                 context.fail(reply.cause());
             }
         });
     }
 
+    private void pageFetched(RoutingContext context, String requestedPage, JsonObject payLoad) {
+        boolean found = payLoad.getBoolean("found");
+        String rawContent = payLoad.getString("rawContent", EMPTY_PAGE_MARKDOWN);
+        context.put("title", requestedPage);
+        context.put("id", payLoad.getInteger("id", -1));
+        context.put("newPage", found ? "no" : "yes");
+        context.put("rawContent", rawContent);
+        context.put("revision", payLoad.getInteger("revision", 0));
+        context.put("crlf", rawContent.contains("\r\n") ? "yes" : "no");
+        context.put("timestamp", new Date().toString());
+        if (found && context.request().getHeader(WARM_UP_HEADER) == null) {
+            pageViews.record(requestedPage);
+        }
+
+        String cached = found ? renderedPages.get(requestedPage, rawContent) : null;
+        if (cached != null) {
+            renderPage(context, cached);
+            return;
+        }
+
+        /*
+         * Pages are rendered when they are written, so the database normally returns the HTML along with the
+         * markdown. Backends that do not store it get the page rendered here, off the event loop when it is large.
+         */
+        String html = payLoad.getString("html");
+        if (html != null) {
+            htmlAvailable(context, requestedPage, rawContent, html, found);
+            return;
+        }
+        long renderStartedAt = System.nanoTime();
+        renderPool.render(rawContent, rendered -> {
+            ServerTiming.markdownRendered(context, renderStartedAt);
+            if (rendered.succeeded()) {
+                htmlAvailable(context, requestedPage, rawContent, rendered.result(), found);
+            } else {
+                context.fail(rendered.cause());
+            }
+        });
+    }
+
+    private void htmlAvailable(RoutingContext context, String requestedPage, String rawContent, String html,
+                               boolean found) {
+        /*
+         * Every [[link]] of the page is resolved with one batched lookup, so the number of round trips
+         * does not depend on how many links the page contains.
+         */
+        Set<String> linkTargets = WikiLinks.targets(rawContent);
+        if (linkTargets.isEmpty()) {
+            pageRendered(context, requestedPage, rawContent, html, found);
+        } else {
+            dbService(context).fetchExistingPages(new ArrayList<>(linkTargets), ServerTiming.call(context, existing -> {
+                if (existing.succeeded()) {
+                    String marked = WikiLinks.markMissing(html, new HashSet<>(existing.result()));
+                    pageRendered(context, requestedPage, rawContent, marked, found);
+                } else {
+                    context.fail(existing.cause());
+                }
+            }));
+        }
+    }
+
+    private void pageRendered(RoutingContext context, String requestedPage, String rawContent, String html,
+                              boolean found) {
+        if (found) {
+            renderedPages.put(requestedPage, rawContent, html);
+        }
+        renderPage(context, html);
+    }
+
+    private void renderPage(RoutingContext context, String html) {
+        context.put("content", html);
+        renderTemplate(context, "/page.ftl");
+    }
+
+    private void renderTemplate(RoutingContext context, String template) {
+        TemplateRenderEvent event = new TemplateRenderEvent();
+        event.begin();
+        long startedAt = System.nanoTime();
+        templateEngine.render(context, "templates", template, ar -> {
+            event.end();
+            ServerTiming.templateRendered(context, startedAt);
+            if (event.shouldCommit()) {
+                event.complete(template, context.get("title"), ar.succeeded() ? ar.result().length() : 0,
+                        ar.succeeded());
+            }
+            if (ar.succeeded()) {
+                context.response().putHeader("Content-Type", "text/html");
+                context.response().end(ar.result());
+            } else {
+                context.fail(ar.cause());
+            }
+        });
+    }
+
     private void pageUpdateHandler(RoutingContext context) {
         String title = context.request().getParam("title");
 
@@ -217,10 +591,108 @@ public class HttpServerVerticle extends AbstractVerticle {
 
         String markdown = context.request().getParam("markdown");
         if ("yes".equals(context.request().getParam("newPage"))) {
-            dbService.createPage(title, markdown, handler);
+            // links to the new page that were rendered as missing are now stale
+            dbService(context).createPage(title, markdown, ServerTiming.call(context, reply -> {
+                if (reply.succeeded()) {
+                    renderedPages.clear();
+                }
+                handler.handle(reply);
+            }));
         } else {
-            dbService.savePage(Integer.valueOf(context.request().getParam("id")), markdown, handler);
+            dbService(context).savePage(Integer.valueOf(context.request().getParam("id")), markdown,
+                    ServerTiming.call(context, reply -> handler.handle(reply.mapEmpty())));
+        }
+    }
+
+    /**
+     * Saves a page from a JSON patch, {"baseRevision": revision, "edits": [...]} (see WikiDatabaseService#patchPage).
+     * A patch against an outdated revision gets a 409 along with the current revision, and one that does not apply a
+     * 422: the editor then falls back to posting the whole content.
+     */
+    private void pagePatchHandler(RoutingContext context) {
+        int id;
+        JsonObject patch;
+        try {
+            id = Integer.parseInt(context.request().getParam("id"));
+            patch = context.getBodyAsJson();
+        } catch (RuntimeException e) {
+            context.response().setStatusCode(400).end("Invalid patch");
+            return;
         }
+        if (patch == null || !(patch.getValue("baseRevision") instanceof Integer)
+                || !(patch.getValue("edits") instanceof JsonArray)) {
+            context.response().setStatusCode(400).end("Invalid patch");
+            return;
+        }
+        JsonArray edits = patch.getJsonArray("edits");
+        dbService(context).patchPage(id, patch.getInteger("baseRevision"), edits, ServerTiming.call(context, reply -> {
+            if (reply.succeeded()) {
+                JsonObject outcome = reply.result();
+                context.response()
+                        .setStatusCode(outcome.getBoolean("saved") ? 200 : 409)
+                        .putHeader("Content-Type", "application/json")
+                        .end(new JsonObject().put("revision", outcome.getInteger("revision")).encode());
+            } else if (reply.cause() instanceof ReplyException
+                    && ((ReplyException) reply.cause()).failureCode() == ErrorCodes.PATCH_DOES_NOT_APPLY.ordinal()) {
+                context.response().setStatusCode(422).end(reply.cause().getMessage());
+            } else {
+                context.fail(reply.cause());
+            }
+        }));
+    }
+
+    /**
+     * Creates or replaces a page from a raw markdown body.
+     */
+    private void pageUploadHandler(RoutingContext context) {
+        String pageName = context.request().getParam("page");
+        String markdown = context.get(BoundedBodyHandler.BODY);
+
+        WikiDatabaseService service = dbService(context);
+        service.fetchPage(pageName, ServerTiming.call(context, fetch -> {
+            if (fetch.failed()) {
+                context.fail(fetch.cause());
+            } else if (fetch.result().getBoolean("found")) {
+                uploadSave(context, service, fetch.result().getInteger("id"), markdown);
+            } else {
+                service.createPage(pageName, markdown, ServerTiming.call(context, reply -> {
+                    if (reply.succeeded()) {
+                        renderedPages.clear();
+                        context.response()
+                                .setStatusCode(201)
+                                .putHeader("Location", WikiLinks.pagePath(pageName))
+                                .end();
+                    } else {
+                        uploadCreateFailed(context, service, pageName, markdown, reply.cause());
+                    }
+                }));
+            }
+        }));
+    }
+
+    /**
+     * A page created by a concurrent upload between the fetch and the creation makes the creation fail: the upload
+     * is then saved over it, as if the page had been found. Any other failure is reported as is.
+     */
+    private void uploadCreateFailed(RoutingContext context, WikiDatabaseService service, String pageName,
+                                    String markdown, Throwable cause) {
+        service.fetchPage(pageName, ServerTiming.call(context, fetch -> {
+            if (fetch.succeeded() && fetch.result().getBoolean("found")) {
+                uploadSave(context, service, fetch.result().getInteger("id"), markdown);
+            } else {
+                context.fail(cause);
+            }
+        }));
+    }
+
+    private void uploadSave(RoutingContext context, WikiDatabaseService service, int id, String markdown) {
+        service.savePage(id, markdown, ServerTiming.call(context, reply -> {
+            if (reply.succeeded()) {
+                context.response().setStatusCode(204).end();
+            } else {
+                context.fail(reply.cause());
+            }
+        }));
     }
 
     private void pageCreateHandler(RoutingContext context) {
@@ -235,15 +707,30 @@ public class HttpServerVerticle extends AbstractVerticle {
     }
 
     private void pageDeletionHandler(RoutingContext context) {
-        dbService.deletePage(Integer.valueOf(context.request().getParam("id")), reply -> {
+        int id = Integer.valueOf(context.request().getParam("id"));
+        dbService(context).deletePage(id, ServerTiming.call(context, reply -> {
             if (reply.succeeded()) {
+                renderedPages.clear();
                 context.response().setStatusCode(303);
                 context.response().putHeader("Location", "/");
                 context.response().end();
             } else {
                 context.fail(reply.cause());
             }
-        });
+        }));
     }
     // end::db-service-calls[]
+
+    /**
+     * Returns a proxy whose calls carry the correlation id of the request, for the database service to log, time and
+     * answer them with it (see ServerTiming).
+     */
+    private WikiDatabaseService dbService(RoutingContext context) {
+        String requestId = ServerTiming.requestId(context);
+        if (requestId == null) {
+            return dbService;
+        }
+        return WikiDatabaseService.createProxy(vertx, wikiDbQueue,
+                new DeliveryOptions().addHeader(ServiceHeaders.REQUEST_ID, requestId));
+    }
 }
@@ -0,0 +1,93 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Streams every page as newline-delimited JSON, one {"name": ..., "content": ...} object per line.
+ *
+ * The response is chunked and pages are fetched from the database in id order, one bounded batch at a time. The next
+ * batch is only requested once the previous one has been written and the response write queue has drained, so a slow
+ * client slows the export down instead of making the server buffer the whole wiki.
+ */
+public class NdjsonExportHandler implements Handler<RoutingContext> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NdjsonExportHandler.class);
+
+    private final WikiDatabaseService dbService;
+    private final int batchSize;
+
+    public NdjsonExportHandler(WikiDatabaseService dbService, int batchSize) {
+        this.dbService = dbService;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        new Export(context.response()).start();
+    }
+
+    private class Export {
+        private final HttpServerResponse response;
+        private boolean closed;
+        private long exported;
+
+        Export(HttpServerResponse response) {
+            this.response = response;
+        }
+
+        void start() {
+            response.setChunked(true);
+            response.putHeader("Content-Type", "application/x-ndjson");
+            response.closeHandler(v -> closed = true);
+            // identity columns start at 0
+            nextBatch(-1);
+        }
+
+        private void nextBatch(int afterId) {
+            dbService.fetchPagesAfter(afterId, batchSize, ar -> {
+                if (closed) {
+                    LOGGER.info("Export interrupted by the client after {} pages", exported);
+                    return;
+                }
+                if (ar.failed()) {
+                    // the status line is already sent, closing the connection is the only way to signal the error
+                    LOGGER.error("Export failed after {} pages", exported, ar.cause());
+                    response.close();
+                    return;
+                }
+                List<JsonObject> pages = ar.result();
+                Buffer chunk = Buffer.buffer();
+                for (JsonObject page : pages) {
+                    chunk.appendString(new JsonObject()
+                            .put("name", page.getString("NAME"))
+                            .put("content", page.getString("CONTENT"))
+                            .encode());
+                    chunk.appendString("\n");
+                }
+                response.write(chunk);
+                exported += pages.size();
+
+                if (pages.size() < batchSize) {
+                    response.end();
+                    LOGGER.info("Exported {} pages", exported);
+                    return;
+                }
+                int lastId = pages.get(pages.size() - 1).getInteger("ID");
+                if (response.writeQueueFull()) {
+                    response.drainHandler(v -> nextBatch(lastId));
+                } else {
+                    nextBatch(lastId);
+                }
+            });
+        }
+    }
+}
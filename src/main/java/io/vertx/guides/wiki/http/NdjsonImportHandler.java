@@ -0,0 +1,229 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports pages from a newline-delimited JSON upload, one {"name": ..., "content": ...} object per line, creating or
+ * replacing each page.
+ *
+ * The body is split into lines as it arrives and never buffered as a whole. Valid lines are sent to the database in
+ * batches, each imported in one transaction, and the request is paused while a batch is in flight, so memory use is
+ * bounded by the batch size and the maximum line length whatever the size of the upload.
+ *
+ * Invalid lines do not stop the import: the response reports the number of imported pages, the throughput and the
+ * line number and cause of the first failures.
+ */
+public class NdjsonImportHandler implements Handler<RoutingContext> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NdjsonImportHandler.class);
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final WikiDatabaseService dbService;
+    private final RenderedPageCache renderedPages;
+    private final int batchSize;
+    private final int maxLineSize;
+
+    public NdjsonImportHandler(WikiDatabaseService dbService, RenderedPageCache renderedPages, int batchSize,
+                               int maxLineSize) {
+        this.dbService = dbService;
+        this.renderedPages = renderedPages;
+        this.batchSize = batchSize;
+        this.maxLineSize = maxLineSize;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        new Import(context).start();
+    }
+
+    private class Import {
+        private final RoutingContext context;
+        private final HttpServerRequest request;
+        private final long startedAt = System.nanoTime();
+
+        private Buffer line = Buffer.buffer();
+        private boolean lineTooLong;
+        private long lineNumber;
+
+        private final List<JsonObject> pending = new ArrayList<>();
+        private final List<Long> pendingLines = new ArrayList<>();
+        private boolean importing;
+        private boolean ended;
+        private boolean failed;
+
+        private long imported;
+        private long failedLines;
+        private final JsonArray errors = new JsonArray();
+
+        Import(RoutingContext context) {
+            this.context = context;
+            this.request = context.request();
+        }
+
+        void start() {
+            request.handler(this::chunk);
+            request.exceptionHandler(this::fail);
+            request.endHandler(v -> {
+                ended = true;
+                if (line.length() > 0 || lineTooLong) {
+                    endOfLine();
+                }
+                flush();
+            });
+            request.resume();
+        }
+
+        private void chunk(Buffer chunk) {
+            if (failed) {
+                return;
+            }
+            int from = 0;
+            for (int i = 0; i < chunk.length(); i++) {
+                if (chunk.getByte(i) == '\n') {
+                    append(chunk, from, i);
+                    endOfLine();
+                    from = i + 1;
+                }
+            }
+            append(chunk, from, chunk.length());
+            flush();
+        }
+
+        private void append(Buffer chunk, int from, int to) {
+            if (lineTooLong || from == to) {
+                return;
+            }
+            if (line.length() + to - from > maxLineSize) {
+                // the rest of the line is skipped rather than buffered
+                lineTooLong = true;
+                line = Buffer.buffer();
+            } else {
+                line.appendBuffer(chunk, from, to - from);
+            }
+        }
+
+        private void endOfLine() {
+            lineNumber++;
+            if (lineTooLong) {
+                lineTooLong = false;
+                error(lineNumber, "Line longer than " + maxLineSize + " bytes");
+                return;
+            }
+            String text = line.toString("UTF-8").trim();
+            line = Buffer.buffer();
+            if (text.isEmpty()) {
+                return;
+            }
+
+            JsonObject page;
+            try {
+                page = new JsonObject(text);
+            } catch (DecodeException | ClassCastException e) {
+                error(lineNumber, "Invalid JSON object");
+                return;
+            }
+            Object name = page.getValue("name");
+            Object content = page.getValue("content");
+            if (!(name instanceof String) || ((String) name).isEmpty()) {
+                error(lineNumber, "Missing page name");
+            } else if (!(content instanceof String)) {
+                error(lineNumber, "Missing page content");
+            } else {
+                pending.add(new JsonObject().put("name", name).put("content", content));
+                pendingLines.add(lineNumber);
+            }
+        }
+
+        /**
+         * Sends the next batch once it is full (or the upload is complete) and no other batch is in flight.
+         */
+        private void flush() {
+            if (importing || failed) {
+                return;
+            }
+            if (pending.isEmpty() && ended) {
+                done();
+                return;
+            }
+            if (pending.isEmpty() || (!ended && pending.size() < batchSize)) {
+                return;
+            }
+
+            int size = Math.min(batchSize, pending.size());
+            List<JsonObject> batchPages = new ArrayList<>(pending.subList(0, size));
+            List<Long> batchLines = new ArrayList<>(pendingLines.subList(0, size));
+            pending.subList(0, size).clear();
+            pendingLines.subList(0, size).clear();
+
+            importing = true;
+            request.pause();
+            dbService.importPages(new JsonArray(batchPages), ar -> {
+                importing = false;
+                if (ar.failed()) {
+                    fail(ar.cause());
+                    return;
+                }
+                JsonObject outcome = ar.result();
+                imported += outcome.getLong("imported");
+                JsonArray batchErrors = outcome.getJsonArray("errors");
+                for (int i = 0; i < batchErrors.size(); i++) {
+                    JsonObject batchError = batchErrors.getJsonObject(i);
+                    error(batchLines.get(batchError.getInteger("index")), batchError.getString("error"));
+                }
+                request.resume();
+                flush();
+            });
+        }
+
+        private void error(long lineNumber, String message) {
+            failedLines++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new JsonObject().put("line", lineNumber).put("error", message));
+            }
+        }
+
+        private void done() {
+            if (imported > 0) {
+                renderedPages.clear();
+            }
+            long elapsedNanos = System.nanoTime() - startedAt;
+            double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            LOGGER.info("Imported {} pages ({} failed lines) in {} ms", imported, failedLines,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            context.response().putHeader("Content-Type", "application/json");
+            context.response().end(new JsonObject()
+                    .put("lines", lineNumber)
+                    .put("imported", imported)
+                    .put("failed", failedLines)
+                    .put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                    .put("pagesPerSecond", Math.round(imported / seconds))
+                    .put("errors", errors)
+                    .encodePrettily());
+        }
+
+        private void fail(Throwable cause) {
+            if (!failed) {
+                failed = true;
+                LOGGER.error("Import failed after {} pages", imported, cause);
+                if (imported > 0) {
+                    renderedPages.clear();
+                }
+                context.fail(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estimates how often each page is viewed, in fixed memory, and keeps track of the most viewed ones.
+ *
+ * Views are counted in a count-min sketch: a few rows of counters, each page incrementing one counter per row, and
+ * the smallest of its counters being the estimate (never below the real count, above it only by the collisions of
+ * the least collided row). Counters are independent atomic cells, so concurrent recording from every event loop
+ * never takes a lock.
+ *
+ * The top-K pages are tracked next to the sketch with their last estimate. A page enters when its estimate is above
+ * the coldest tracked one, which is then dropped; this is a linear scan over K entries, only done when the top-K
+ * changes.
+ *
+ * Every decay interval all counters are halved, so that the estimates follow the current traffic rather than the
+ * whole history. The sketch is Shareable so that all HttpServerVerticle instances record into the same one, and the
+ * estimates are available to caches as an admission and eviction signal (see RenderedPageCache).
+ */
+public class PageViewSketch implements Shareable {
+
+    private static final String SHARED_MAP_NAME = "wiki.http.pageviews";
+    private static final int DEPTH = 4;
+
+    private final AtomicLongArray counters;
+    private final int width;
+    private final int topK;
+    private final long decayIntervalNanos;
+    private final AtomicLong nextDecay;
+
+    private final Map<String, Long> top = new ConcurrentHashMap<>();
+    private volatile long topThreshold;
+    private final LongAdder views = new LongAdder();
+
+    /**
+     * @param width number of counters per row, rounded up to a power of two
+     */
+    public PageViewSketch(int width, int topK, long decayIntervalMillis) {
+        int rounded = Integer.highestOneBit(Math.max(16, width));
+        this.width = rounded < width ? rounded << 1 : rounded;
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+        this.topK = topK;
+        this.decayIntervalNanos = TimeUnit.MILLISECONDS.toNanos(decayIntervalMillis);
+        this.nextDecay = new AtomicLong(System.nanoTime() + decayIntervalNanos);
+    }
+
+    public static PageViewSketch shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, PageViewSketch> map = vertx.sharedData().getLocalMap(SHARED_MAP_NAME);
+        PageViewSketch sketch = map.get(SHARED_MAP_NAME);
+        if (sketch == null) {
+            PageViewSketch created = new PageViewSketch(
+                    config.getInteger(HttpServerVerticle.CONFIG_HOTPAGES_SKETCH_WIDTH, 4096),
+                    config.getInteger(HttpServerVerticle.CONFIG_HOTPAGES_TOP_K, 100),
+                    config.getLong(HttpServerVerticle.CONFIG_HOTPAGES_DECAY_INTERVAL, 60_000L));
+            sketch = map.putIfAbsent(SHARED_MAP_NAME, created);
+            if (sketch == null) {
+                sketch = created;
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * Records one view of the page.
+     *
+     * @return the estimated number of views of the page, this one included
+     */
+    public long record(String name) {
+        decayIfDue();
+        views.increment();
+        int hash = spread(name.hashCode());
+        int step = spread(hash ^ 0x5bd1e995) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(cell(row, hash, step)));
+        }
+
+        if (top.replace(name, estimate) == null && (estimate > topThreshold || top.size() < topK)) {
+            top.put(name, estimate);
+            if (top.size() > topK) {
+                evictColdest();
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * @return the estimated number of recent views of the page
+     */
+    public long frequency(String name) {
+        int hash = spread(name.hashCode());
+        int step = spread(hash ^ 0x5bd1e995) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(cell(row, hash, step)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @return the most viewed pages, most viewed first, as objects with a name and an estimated number of views
+     */
+    public JsonArray hottest(int limit) {
+        decayIfDue();
+        JsonArray hottest = new JsonArray();
+        top.keySet()
+                .stream()
+                .map(name -> new JsonObject().put("name", name).put("views", frequency(name)))
+                .sorted((a, b) -> Long.compare(b.getLong("views"), a.getLong("views")))
+                .limit(limit)
+                .forEach(hottest::add);
+        return hottest;
+    }
+
+    public JsonObject metrics() {
+        return new JsonObject()
+                .put("views", views.sum())
+                .put("tracked", top.size())
+                .put("sketchCounters", counters.length());
+    }
+
+    private int cell(int row, int hash, int step) {
+        return row * width + ((hash + row * step) & (width - 1));
+    }
+
+    private void evictColdest() {
+        while (top.size() > topK) {
+            String coldest = null;
+            long coldestViews = Long.MAX_VALUE;
+            long secondViews = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : top.entrySet()) {
+                long value = entry.getValue();
+                if (value < coldestViews) {
+                    secondViews = coldestViews;
+                    coldestViews = value;
+                    coldest = entry.getKey();
+                } else if (value < secondViews) {
+                    secondViews = value;
+                }
+            }
+            if (coldest == null) {
+                return;
+            }
+            top.remove(coldest, coldestViews);
+            topThreshold = secondViews == Long.MAX_VALUE ? 0 : secondViews;
+        }
+    }
+
+    /**
+     * Halves every counter once per decay interval. Whichever event loop notices first does it, the others go on.
+     */
+    private void decayIfDue() {
+        long due = nextDecay.get();
+        long now = System.nanoTime();
+        if (now - due < 0 || !nextDecay.compareAndSet(due, now + decayIntervalNanos)) {
+            return;
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            long value;
+            do {
+                value = counters.get(i);
+            } while (value != 0 && !counters.compareAndSet(i, value, value >>> 1));
+        }
+        top.replaceAll((name, value) -> value >>> 1);
+        topThreshold = topThreshold >>> 1;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,170 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A per-client token bucket rate limiter.
+ *
+ * Each bucket is a single AtomicLong holding the "theoretical arrival time" of the next request (the generic cell
+ * rate algorithm), which behaves exactly like a token bucket but can be updated with one compare-and-set, so no lock
+ * is ever taken on the event loop.
+ *
+ * Buckets live in a fixed number of stripes, each capped to a bounded number of entries. A bucket whose arrival time
+ * is in the past is full again and therefore indistinguishable from a fresh one, so it can be evicted at any time.
+ * When a stripe is still full after that, the bucket with the earliest arrival time makes room for the new client:
+ * it is the least recently used one, closest to full, so evicting it gives back the fewest tokens. The clients being
+ * throttled have the latest arrival times and keep their buckets, even under a flood of new clients.
+ *
+ * The limiter is Shareable so that all HttpServerVerticle instances use the same one through a local map.
+ */
+public class RateLimiter implements Shareable {
+
+    public enum RouteClass {
+        WRITE,
+        BACKUP
+    }
+
+    private static final String SHARED_MAP_NAME = "wiki.http.ratelimiter";
+    private static final int STRIPES = 16;
+
+    private final long[] emissionIntervals = new long[RouteClass.values().length];
+    private final long[] burstWindows = new long[RouteClass.values().length];
+    private final int maxEntriesPerStripe;
+    private final LongSupplier clock;
+
+    private final List<Map<String, AtomicLong>> stripes = new ArrayList<>(STRIPES);
+
+    public RateLimiter(int maxEntries, LongSupplier clock) {
+        this.maxEntriesPerStripe = Math.max(1, maxEntries / STRIPES);
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Returns the limiter shared by every verticle of this Vert.x instance, creating it from the given configuration
+     * on first use. The verticle that creates it also evicts its idle buckets every minute, for all of them.
+     */
+    public static RateLimiter shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, RateLimiter> map = vertx.sharedData().getLocalMap(SHARED_MAP_NAME);
+        RateLimiter limiter = map.get(SHARED_MAP_NAME);
+        if (limiter == null) {
+            RateLimiter created = new RateLimiter(
+                    config.getInteger(HttpServerVerticle.CONFIG_RATELIMIT_MAX_CLIENTS, 10_000), System::nanoTime)
+                    .configure(RouteClass.WRITE,
+                            config.getInteger(HttpServerVerticle.CONFIG_RATELIMIT_WRITE_PER_MINUTE, 60),
+                            config.getInteger(HttpServerVerticle.CONFIG_RATELIMIT_WRITE_BURST, 10))
+                    .configure(RouteClass.BACKUP,
+                            config.getInteger(HttpServerVerticle.CONFIG_RATELIMIT_BACKUP_PER_MINUTE, 1),
+                            config.getInteger(HttpServerVerticle.CONFIG_RATELIMIT_BACKUP_BURST, 1));
+            limiter = map.putIfAbsent(SHARED_MAP_NAME, created);
+            if (limiter == null) {
+                limiter = created;
+                vertx.setPeriodic(60_000, id -> created.evictIdle());
+            }
+        }
+        return limiter;
+    }
+
+    public RateLimiter configure(RouteClass routeClass, int permitsPerMinute, int burst) {
+        long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, permitsPerMinute);
+        emissionIntervals[routeClass.ordinal()] = interval;
+        burstWindows[routeClass.ordinal()] = interval * Math.max(1, burst);
+        return this;
+    }
+
+    /**
+     * Tries to take one token for the client.
+     *
+     * @return 0 when the request is allowed, otherwise the number of nanoseconds to wait before retrying
+     */
+    public long tryAcquire(RouteClass routeClass, String client) {
+        int c = routeClass.ordinal();
+        long interval = emissionIntervals[c];
+        long window = burstWindows[c];
+        AtomicLong bucket = bucketFor(routeClass, client);
+        while (true) {
+            long now = clock.getAsLong();
+            long tat = bucket.get();
+            long next = (tat == Long.MIN_VALUE || tat - now < 0 ? now : tat) + interval;
+            long excess = next - now - window;
+            if (excess > 0) {
+                return excess;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Removes every bucket that has refilled completely. A concurrent request may still spend a token on a bucket
+     * that is being removed; that token is simply forgotten, which errs on the permissive side.
+     */
+    public void evictIdle() {
+        long now = clock.getAsLong();
+        for (Map<String, AtomicLong> stripe : stripes) {
+            evictIdle(stripe, now);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private AtomicLong bucketFor(RouteClass routeClass, String client) {
+        String key = routeClass.ordinal() + client;
+        Map<String, AtomicLong> stripe = stripes.get((key.hashCode() & 0x7fffffff) % STRIPES);
+        AtomicLong bucket = stripe.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.size() >= maxEntriesPerStripe) {
+            evictIdle(stripe, clock.getAsLong());
+            if (stripe.size() >= maxEntriesPerStripe) {
+                evictLeastRecentlyUsed(stripe);
+            }
+        }
+        AtomicLong created = new AtomicLong(Long.MIN_VALUE);
+        bucket = stripe.putIfAbsent(key, created);
+        return bucket != null ? bucket : created;
+    }
+
+    private static void evictIdle(Map<String, AtomicLong> stripe, long now) {
+        stripe.entrySet().removeIf(entry -> {
+            long tat = entry.getValue().get();
+            return tat == Long.MIN_VALUE || tat - now <= 0;
+        });
+    }
+
+    private static void evictLeastRecentlyUsed(Map<String, AtomicLong> stripe) {
+        Map.Entry<String, AtomicLong> oldest = null;
+        long oldestTat = 0;
+        for (Map.Entry<String, AtomicLong> entry : stripe.entrySet()) {
+            long tat = entry.getValue().get();
+            if (oldest == null || tat - oldestTat < 0) {
+                oldest = entry;
+                oldestTat = tat;
+            }
+        }
+        if (oldest != null) {
+            stripe.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+}
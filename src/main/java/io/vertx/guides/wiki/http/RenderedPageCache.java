@@ -0,0 +1,163 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the HTML rendered from the markdown of pages, shared by all HttpServerVerticle instances.
+ *
+ * An entry is only used when the markdown fetched from the database is still the one it was rendered from, so saves
+ * never serve stale content. Rendered wiki links also depend on which other pages exist, hence creating or deleting a
+ * page clears the whole cache.
+ *
+ * Each entry counts its hits: the most requested entries form the hot set that is snapshotted to disk (see
+ * HotSetSnapshot), and when the cache is full a small sample of entries is inspected to evict the least requested one.
+ * When a PageViewSketch is attached, its recent view estimates are used instead of the hits, and a new page is only
+ * admitted when it is viewed more often than the entry it would evict, so that a scan over rarely viewed pages does
+ * not flush the popular ones.
+ */
+public class RenderedPageCache implements Shareable {
+
+    private static final String SHARED_MAP_NAME = "wiki.http.renderedpages";
+    private static final int EVICTION_SAMPLE = 8;
+
+    public static final class Entry {
+        private final String name;
+        private final String markdown;
+        private final String html;
+        private final LongAdder hits = new LongAdder();
+
+        Entry(String name, String markdown, String html) {
+            this.name = name;
+            this.markdown = markdown;
+            this.html = html;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public String markdown() {
+            return markdown;
+        }
+
+        public String html() {
+            return html;
+        }
+
+        public long hits() {
+            return hits.sum();
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile int maxEntries = 1_000;
+    private volatile PageViewSketch popularity;
+
+    public static RenderedPageCache shared(Vertx vertx) {
+        LocalMap<String, RenderedPageCache> map = vertx.sharedData().getLocalMap(SHARED_MAP_NAME);
+        RenderedPageCache cache = map.get(SHARED_MAP_NAME);
+        if (cache == null) {
+            RenderedPageCache created = new RenderedPageCache();
+            cache = map.putIfAbsent(SHARED_MAP_NAME, created);
+            if (cache == null) {
+                cache = created;
+            }
+        }
+        return cache;
+    }
+
+    public RenderedPageCache setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    public RenderedPageCache setPopularity(PageViewSketch popularity) {
+        this.popularity = popularity;
+        return this;
+    }
+
+    /**
+     * @return the cached HTML if it was rendered from exactly this markdown, null otherwise
+     */
+    public String get(String name, String markdown) {
+        Entry entry = entries.get(name);
+        if (entry == null || !entry.markdown.equals(markdown)) {
+            return null;
+        }
+        entry.hits.increment();
+        return entry.html;
+    }
+
+    public void put(String name, String markdown, String html) {
+        Entry previous = entries.get(name);
+        Entry entry = new Entry(name, markdown, html);
+        if (previous != null) {
+            entry.hits.add(previous.hits());
+        } else if (entries.size() >= maxEntries) {
+            Entry victim = sampleVictim();
+            if (victim != null) {
+                PageViewSketch sketch = popularity;
+                if (sketch != null && sketch.frequency(victim.name) >= sketch.frequency(name)) {
+                    return;
+                }
+                entries.remove(victim.name, victim);
+            }
+        }
+        entries.put(name, entry);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the most requested entries, then halves every hit count so that the hot set follows traffic changes.
+     */
+    public List<Entry> hotSet(int limit) {
+        List<Entry> hot = entries.values()
+                .stream()
+                .sorted(Comparator.comparingLong(Entry::hits).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+        for (Entry entry : entries.values()) {
+            long hits = entry.hits.sumThenReset();
+            entry.hits.add(hits / 2);
+        }
+        return new ArrayList<>(hot);
+    }
+
+    private Entry sampleVictim() {
+        Entry victim = null;
+        long victimPopularity = Long.MAX_VALUE;
+        Iterator<Entry> iterator = entries.values().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE && iterator.hasNext(); i++) {
+            Entry candidate = iterator.next();
+            long candidatePopularity = popularity(candidate);
+            if (candidatePopularity < victimPopularity) {
+                victim = candidate;
+                victimPopularity = candidatePopularity;
+            }
+        }
+        return victim;
+    }
+
+    private long popularity(Entry entry) {
+        PageViewSketch sketch = popularity;
+        return sketch != null ? sketch.frequency(entry.name) : entry.hits();
+    }
+}
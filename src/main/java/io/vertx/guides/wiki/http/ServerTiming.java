@@ -0,0 +1,180 @@
+package io.vertx.guides.wiki.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.SendContext;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.guides.wiki.database.ServiceHeaders;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives every request a correlation id, returned in the X-Request-Id response header, and optionally breaks the time
+ * spent on it down into stages in a Server-Timing header:
+ *
+ * - bus: event bus round trips to the database service, minus the time the service spent on the calls,
+ * - db: the time the database service spent on the calls, as reported in the headers of its replies,
+ * - md: markdown rendering,
+ * - tpl: template rendering,
+ * - total: from routing to the response headers.
+ *
+ * Service calls carry the correlation id of their request in a header of the delivery options of the proxy they are
+ * made through, and the service answers them with the same header along with the time it spent on them, which an
+ * event bus interceptor credits to the request the reply is for. Correlation ids are generated here, unique for this
+ * process, rather than taken from the client, so that they can key the requests in flight.
+ *
+ * The instance is Shareable so that all HttpServerVerticle instances use the same interceptor through a local map.
+ */
+public class ServerTiming implements Handler<RoutingContext>, Shareable {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private static final String SHARED_MAP_NAME = "wiki.server-timing";
+    private static final String REQUEST_ID = "requestId";
+    private static final String STAGES = "serverTiming";
+
+    private final String idPrefix = Long.toString(ThreadLocalRandom.current().nextInt() & 0xffffffffL, 36) + "-";
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Stages> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+
+    private ServerTiming(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the instance shared by every verticle of this Vert.x instance, creating it from the given configuration
+     * on first use.
+     */
+    public static ServerTiming shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, ServerTiming> map = vertx.sharedData().getLocalMap(SHARED_MAP_NAME);
+        ServerTiming timing = map.get(SHARED_MAP_NAME);
+        if (timing == null) {
+            ServerTiming created = new ServerTiming(
+                    config.getBoolean(HttpServerVerticle.CONFIG_SERVER_TIMING_ENABLED, false));
+            timing = map.putIfAbsent(SHARED_MAP_NAME, created);
+            if (timing == null) {
+                timing = created;
+                vertx.eventBus().addInterceptor(created::intercept);
+            }
+        }
+        return timing;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        String id = idPrefix + Long.toString(sequence.incrementAndGet(), 36);
+        context.put(REQUEST_ID, id);
+        context.response().putHeader(REQUEST_ID_HEADER, id);
+        if (enabled) {
+            Stages stages = new Stages();
+            context.put(STAGES, stages);
+            inFlight.put(id, stages);
+            context.addHeadersEndHandler(v -> {
+                inFlight.remove(id);
+                context.response().putHeader("Server-Timing", stages.header());
+            });
+            context.response().closeHandler(v -> inFlight.remove(id));
+        }
+        context.next();
+    }
+
+    public static String requestId(RoutingContext context) {
+        return context.get(REQUEST_ID);
+    }
+
+    /**
+     * Wraps the reply handler of a database service call made for the request, to time its round trip.
+     */
+    public static <T> Handler<AsyncResult<T>> call(RoutingContext context, Handler<AsyncResult<T>> handler) {
+        Stages stages = context.get(STAGES);
+        if (stages == null) {
+            return handler;
+        }
+        long sentAt = System.nanoTime();
+        return res -> {
+            stages.roundTrips += System.nanoTime() - sentAt;
+            handler.handle(res);
+        };
+    }
+
+    public static void markdownRendered(RoutingContext context, long startedAt) {
+        Stages stages = context.get(STAGES);
+        if (stages != null) {
+            stages.markdown += System.nanoTime() - startedAt;
+        }
+    }
+
+    public static void templateRendered(RoutingContext context, long startedAt) {
+        Stages stages = context.get(STAGES);
+        if (stages != null) {
+            stages.template += System.nanoTime() - startedAt;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void intercept(SendContext sendContext) {
+        try {
+            MultiMap headers = sendContext.message().headers();
+            if (headers == null) {
+                return;
+            }
+            String serviceTime = headers.get(ServiceHeaders.SERVICE_TIME);
+            String id = headers.get(ServiceHeaders.REQUEST_ID);
+            if (serviceTime != null && id != null) {
+                // replies are sent by the service thread, before the reply handler of the request gets them
+                Stages stages = inFlight.get(id);
+                if (stages != null) {
+                    stages.serviceMicros.addAndGet(Long.parseLong(serviceTime));
+                }
+            }
+        } finally {
+            sendContext.next();
+        }
+    }
+
+    private static final class Stages {
+
+        private final long startedAt = System.nanoTime();
+        private final AtomicLong serviceMicros = new AtomicLong();
+        private long roundTrips;
+        private long markdown;
+        private long template;
+
+        String header() {
+            StringBuilder header = new StringBuilder(128);
+            if (roundTrips > 0) {
+                long service = serviceMicros.get();
+                append(header, "bus", "event bus", Math.max(0, roundTrips / 1000 - service));
+                append(header, "db", "database", service);
+            }
+            if (markdown > 0) {
+                append(header, "md", "markdown", markdown / 1000);
+            }
+            if (template > 0) {
+                append(header, "tpl", "template", template / 1000);
+            }
+            append(header, "total", "total", (System.nanoTime() - startedAt) / 1000);
+            return header.toString();
+        }
+
+        private static void append(StringBuilder header, String name, String description, long micros) {
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            long fraction = micros % 1000;
+            header.append(name).append(";desc=\"").append(description).append("\";dur=")
+                    .append(micros / 1000).append('.')
+                    .append(fraction < 100 ? (fraction < 10 ? "00" : "0") : "")
+                    .append(fraction);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.vertx.guides.wiki.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The rendering of page markdown to HTML by txtmark. Renderings happen on the worker threads of the render pool for
+ * large pages, so the thread of the event tells whether the page was rendered inline or offloaded.
+ */
+@Name("io.vertx.guides.wiki.MarkdownRender")
+@Label("Wiki Markdown Render")
+@Category({"Vert.x Wiki", "Rendering"})
+@Description("Page markdown processed to HTML")
+public class MarkdownRenderEvent extends Event {
+
+    @Label("Markdown Size")
+    @Description("Characters of markdown")
+    long markdownSize;
+
+    @Label("HTML Size")
+    @Description("Characters of HTML")
+    long htmlSize;
+
+    public void complete(long markdownSize, long htmlSize) {
+        this.markdownSize = markdownSize;
+        this.htmlSize = htmlSize;
+        commit();
+    }
+}
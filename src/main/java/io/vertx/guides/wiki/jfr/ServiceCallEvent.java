@@ -0,0 +1,43 @@
+package io.vertx.guides.wiki.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A WikiDatabaseService action, from the call on the database verticle to its result.
+ *
+ * Like the other wiki events, it is recorded with the usual JFR idiom: begin() when the operation starts, then the
+ * fields are only computed and the event committed when shouldCommit() says it is enabled and over its threshold, so
+ * that it costs an allocation and a couple of checks when not recording.
+ */
+@Name("io.vertx.guides.wiki.ServiceCall")
+@Label("Wiki Service Call")
+@Category({"Vert.x Wiki", "Database"})
+@Description("WikiDatabaseService action served by the database verticle")
+public class ServiceCallEvent extends Event {
+
+    @Label("Action")
+    String action;
+
+    @Label("Page")
+    @Description("Name or id of the page, when the action is about one page")
+    String page;
+
+    @Label("Payload Size")
+    @Description("Characters of page content received or returned")
+    long payloadSize;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    public void complete(String action, String page, long payloadSize, boolean succeeded) {
+        this.action = action;
+        this.page = page;
+        this.payloadSize = payloadSize;
+        this.succeeded = succeeded;
+        commit();
+    }
+}
@@ -0,0 +1,44 @@
+package io.vertx.guides.wiki.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The execution of a SqlQuery statement by the JDBC client, including the wait for a pooled connection.
+ */
+@Name("io.vertx.guides.wiki.SqlQuery")
+@Label("Wiki SQL Query")
+@Category({"Vert.x Wiki", "Database"})
+@Description("SqlQuery statement executed through the JDBC client")
+public class SqlQueryEvent extends Event {
+
+    @Label("Query")
+    String query;
+
+    @Label("Page")
+    @Description("Name or id of the page, when the statement is about one page")
+    String page;
+
+    @Label("Payload Size")
+    @Description("Characters of the string parameters and of the string columns of the returned rows")
+    long payloadSize;
+
+    @Label("Rows")
+    @Description("Rows returned or updated")
+    int rows;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    public void complete(String query, String page, long payloadSize, int rows, boolean succeeded) {
+        this.query = query;
+        this.page = page;
+        this.payloadSize = payloadSize;
+        this.rows = rows;
+        this.succeeded = succeeded;
+        commit();
+    }
+}
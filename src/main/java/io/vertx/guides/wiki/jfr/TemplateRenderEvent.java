@@ -0,0 +1,38 @@
+package io.vertx.guides.wiki.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The rendering of a FreeMarker template into a response.
+ */
+@Name("io.vertx.guides.wiki.TemplateRender")
+@Label("Wiki Template Render")
+@Category({"Vert.x Wiki", "Rendering"})
+@Description("FreeMarker template rendered by the HTTP verticle")
+public class TemplateRenderEvent extends Event {
+
+    @Label("Template")
+    String template;
+
+    @Label("Page")
+    String page;
+
+    @Label("Payload Size")
+    @Description("Characters of the rendered document")
+    long payloadSize;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    public void complete(String template, String page, long payloadSize, boolean succeeded) {
+        this.template = template;
+        this.page = page;
+        this.payloadSize = payloadSize;
+        this.succeeded = succeeded;
+        commit();
+    }
+}
@@ -0,0 +1,130 @@
+package io.vertx.guides.wiki.markdown;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders markdown without blocking the event loop on large pages.
+ *
+ * Small pages render in a few microseconds, which is cheaper than a hand-off to another thread, so they are rendered
+ * inline. Pages above the offload threshold are rendered on a dedicated named worker pool of bounded size, so that a
+ * burst of huge pages neither stalls the event loop nor takes every thread of the default worker pool. Renders are
+ * independent of each other, hence executeBlocking is called with ordered=false.
+ *
+ * The pool is Shareable so that the database and HTTP verticles use the same workers and report the same metrics.
+ */
+public class MarkdownRenderPool implements Shareable {
+
+    public static final String CONFIG_RENDER_OFFLOAD_THRESHOLD = "markdown.render.offload_threshold";
+    public static final String CONFIG_RENDER_POOL_SIZE = "markdown.render.pool_size";
+
+    public static final String POOL_NAME = "wiki-markdown-render";
+
+    private static final String SHARED_MAP_NAME = "wiki.markdown.renderpool";
+
+    private final WorkerExecutor executor;
+    private final int offloadThreshold;
+    private final int poolSize;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final Timing inline = new Timing();
+    private final Timing offloaded = new Timing();
+    private final Timing waiting = new Timing();
+
+    public MarkdownRenderPool(Vertx vertx, int offloadThreshold, int poolSize) {
+        this.executor = vertx.createSharedWorkerExecutor(POOL_NAME, poolSize);
+        this.offloadThreshold = offloadThreshold;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Returns the pool shared by every verticle of this Vert.x instance, creating it from the given configuration on
+     * first use.
+     */
+    public static MarkdownRenderPool shared(Vertx vertx, JsonObject config) {
+        LocalMap<String, MarkdownRenderPool> map = vertx.sharedData().getLocalMap(SHARED_MAP_NAME);
+        MarkdownRenderPool pool = map.get(SHARED_MAP_NAME);
+        if (pool == null) {
+            MarkdownRenderPool created = new MarkdownRenderPool(vertx,
+                    config.getInteger(CONFIG_RENDER_OFFLOAD_THRESHOLD, 64 * 1024),
+                    config.getInteger(CONFIG_RENDER_POOL_SIZE, 2));
+            pool = map.putIfAbsent(SHARED_MAP_NAME, created);
+            if (pool == null) {
+                pool = created;
+            } else {
+                created.executor.close();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Renders the markdown, inline when it is below the offload threshold, otherwise on the render pool. The handler
+     * is always called on the caller's context.
+     */
+    public void render(String markdown, Handler<AsyncResult<String>> resultHandler) {
+        // the length in chars is a cheap lower bound of the length in bytes
+        if (markdown.length() < offloadThreshold) {
+            long start = System.nanoTime();
+            String html = MarkdownRenderer.render(markdown);
+            inline.record(System.nanoTime() - start);
+            resultHandler.handle(Future.succeededFuture(html));
+            return;
+        }
+
+        long submittedAt = System.nanoTime();
+        int depth = queued.incrementAndGet();
+        maxQueued.accumulateAndGet(depth, Math::max);
+        executor.<String>executeBlocking(future -> {
+            long start = System.nanoTime();
+            queued.decrementAndGet();
+            waiting.record(start - submittedAt);
+            String html = MarkdownRenderer.render(markdown);
+            offloaded.record(System.nanoTime() - start);
+            future.complete(html);
+        }, false, resultHandler);
+    }
+
+    public JsonObject metrics() {
+        return new JsonObject()
+                .put("offloadThreshold", offloadThreshold)
+                .put("poolSize", poolSize)
+                .put("queueDepth", queued.get())
+                .put("maxQueueDepth", maxQueued.get())
+                .put("inline", inline.toJson())
+                .put("offloaded", offloaded.toJson())
+                .put("queueWait", waiting.toJson());
+    }
+
+    private static class Timing {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        JsonObject toJson() {
+            long n = count.sum();
+            return new JsonObject()
+                    .put("count", n)
+                    .put("avgMicros", n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / n))
+                    .put("maxMicros", TimeUnit.NANOSECONDS.toMicros(maxNanos.get()));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.vertx.guides.wiki.markdown;
+
+import com.github.rjeschke.txtmark.Processor;
+import io.vertx.guides.wiki.jfr.MarkdownRenderEvent;
+
+/**
+ * Renders page markdown to HTML. Pages are rendered when they are written and the HTML is stored next to the
+ * markdown, so VERSION must be bumped whenever the output changes (txtmark upgrade, different configuration, new
+ * wiki-link markup): rows rendered with another version are then rendered again.
+ */
+public final class MarkdownRenderer {
+
+    public static final int VERSION = 1;
+
+    private MarkdownRenderer() {
+    }
+
+    public static String render(String markdown) {
+        MarkdownRenderEvent event = new MarkdownRenderEvent();
+        event.begin();
+        String html = Processor.process(WikiLinks.render(markdown));
+        event.end();
+        if (event.shouldCommit()) {
+            event.complete(markdown.length(), html.length());
+        }
+        return html;
+    }
+}
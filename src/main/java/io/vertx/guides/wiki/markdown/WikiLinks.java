@@ -0,0 +1,120 @@
+package io.vertx.guides.wiki.markdown;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Support for the [[Page Name]] and [[Page Name|label]] link syntax.
+ *
+ * Links are rewritten to HTML anchors before the markdown is processed (txtmark passes inline HTML through
+ * untouched), all of them styled as existing pages and tagged with the target page name. Which pages exist changes
+ * independently of the page being rendered, so the missing ones are only marked when the page is served: every link
+ * target is collected, their existence is resolved in one batched lookup, and the anchors of missing pages get the
+ * missing-page style. A page therefore costs the same number of database round trips whatever the number of links
+ * it contains.
+ */
+public final class WikiLinks {
+
+    public static final String CSS_CLASS = "wikilink";
+    public static final String CSS_CLASS_MISSING = "wikilink-missing";
+
+    private static final Pattern LINK = Pattern.compile("\\[\\[([^\\[\\]|\\n]+?)(?:\\|([^\\[\\]\\n]+?))?]]");
+    private static final Pattern RENDERED_LINK = Pattern.compile("class=\"" + CSS_CLASS + "\" data-page=\"([^\"]*)\"");
+
+    private WikiLinks() {
+    }
+
+    public static Set<String> targets(String markdown) {
+        Set<String> targets = new LinkedHashSet<>();
+        Matcher matcher = LINK.matcher(markdown);
+        while (matcher.find()) {
+            targets.add(matcher.group(1).trim());
+        }
+        return targets;
+    }
+
+    public static String render(String markdown) {
+        Matcher matcher = LINK.matcher(markdown);
+        if (!matcher.find()) {
+            return markdown;
+        }
+        StringBuffer rendered = new StringBuffer(markdown.length() + 64);
+        do {
+            String target = matcher.group(1).trim();
+            String label = matcher.group(2) != null ? matcher.group(2).trim() : target;
+            String anchor = "<a href=\"" + escapeHtml(pagePath(target)) + "\" class=\"" + CSS_CLASS
+                    + "\" data-page=\"" + escapeHtml(target) + "\">" + escapeHtml(label) + "</a>";
+            matcher.appendReplacement(rendered, Matcher.quoteReplacement(anchor));
+        } while (matcher.find());
+        matcher.appendTail(rendered);
+        return rendered.toString();
+    }
+
+    /**
+     * Gives the missing-page style to the rendered links whose target is not among the existing pages.
+     */
+    public static String markMissing(String html, Set<String> existingPages) {
+        Matcher matcher = RENDERED_LINK.matcher(html);
+        StringBuffer marked = null;
+        while (matcher.find()) {
+            if (!existingPages.contains(unescapeHtml(matcher.group(1)))) {
+                if (marked == null) {
+                    marked = new StringBuffer(html.length() + 64);
+                }
+                matcher.appendReplacement(marked, Matcher.quoteReplacement(
+                        "class=\"" + CSS_CLASS_MISSING + "\" data-page=\"" + matcher.group(1) + "\""));
+            }
+        }
+        if (marked == null) {
+            return html;
+        }
+        matcher.appendTail(marked);
+        return marked.toString();
+    }
+
+    /**
+     * @return the percent-encoded path of a page
+     */
+    public static String pagePath(String name) {
+        try {
+            return "/wiki/" + URLEncoder.encode(name, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String unescapeHtml(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&amp;", "&");
+    }
+
+    private static String escapeHtml(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -15,19 +15,35 @@
         </h1>
     </div>
 
+    <div class="col-md-12 mt-1 alert alert-info" id="changed" hidden>
+        This page has been changed since it was loaded. <a href="" class="alert-link">Reload it</a>
+    </div>
+
     <div class="col-md-12 mt-1 clearfix">
     ${context.content}
     </div>
 
+  <#list context.backlinks>
+    <div class="col-md-12 mt-1">
+        <h2 class="h5">Pages linking here</h2>
+        <ul>
+          <#items as backlink>
+            <li><a href="/wiki/${backlink}">${backlink}</a></li>
+          </#items>
+        </ul>
+    </div>
+  </#list>
+
     <div class="col-md-12 collapsable collapse clearfix" id="editor">
         <form action="/save" method="post">
             <div class="form-group">
                 <input type="hidden" name="id" value="${context.id}">
                 <input type="hidden" name="title" value="${context.title}">
                 <input type="hidden" name="newPage" value="${context.newPage}">
+                <input type="hidden" name="revision" value="${context.revision?c}">
                 <textarea class="form-control" id="markdown" name="markdown" rows="15">${context.rawContent}</textarea>
             </div>
-            <button type="submit" class="btn btn-primary">Save</button>
+            <button type="submit" class="btn btn-primary" id="save">Save</button>
     <#if context.id != -1>
       <button type="submit" formaction="/delete" class="btn btn-danger float-xs-right">Delete</button>
     </#if>
@@ -41,4 +57,63 @@
 
 </div>
 
+<#if context.id != -1>
+<script>
+    /*
+     * Saves send the edited range only, as a patch against the revision of the page being edited. The whole content
+     * is posted as before when patches are not supported or do not apply.
+     */
+    if (window.fetch) {
+        document.getElementById('save').addEventListener('click', function (event) {
+            var form = this.form;
+            var markdown = form.elements.markdown;
+            var base = markdown.defaultValue;
+            var text = markdown.value;
+            if ('${context.crlf}' === 'yes') {
+                base = base.replace(/\r?\n/g, '\r\n');
+                text = text.replace(/\r?\n/g, '\r\n');
+            }
+            var start = 0;
+            while (start < base.length && start < text.length && base[start] === text[start]) {
+                start++;
+            }
+            var end = 0;
+            while (end < base.length - start && end < text.length - start
+                    && base[base.length - 1 - end] === text[text.length - 1 - end]) {
+                end++;
+            }
+            var patch = {
+                baseRevision: parseInt(form.elements.revision.value, 10),
+                edits: [{at: start, remove: base.substring(start, base.length - end), insert: text.substring(start, text.length - end)}]
+            };
+            event.preventDefault();
+            fetch('/api/pages/${context.id?c}', {
+                method: 'PATCH',
+                credentials: 'same-origin',
+                headers: {'Content-Type': 'application/json'},
+                body: JSON.stringify(patch)
+            }).then(function (response) {
+                if (response.status === 200) {
+                    window.location.reload();
+                } else if (response.status === 409) {
+                    window.alert('This page has been changed by someone else since it was loaded: '
+                            + 'copy your changes, then reload it.');
+                } else {
+                    form.submit();
+                }
+            }, function () {
+                form.submit();
+            });
+        });
+    }
+
+    if (window.EventSource) {
+        var title = document.querySelector('#editor input[name=title]').value;
+        new EventSource('/api/changes/' + encodeURIComponent(title)).addEventListener('change', function () {
+            document.getElementById('changed').hidden = false;
+        });
+    }
+</script>
+</#if>
+
 <#include "footer.ftl">
\ No newline at end of file
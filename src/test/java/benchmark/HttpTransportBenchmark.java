@@ -0,0 +1,124 @@
+package benchmark;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+import io.vertx.guides.wiki.http.HttpServerVerticle;
+import io.vertx.guides.wiki.markdown.WikiLinks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the NIO and native transports of the HTTP server across HTTP verticle instance counts, by fetching a page
+ * over a fixed number of keep-alive connections.
+ *
+ * The client runs in a Vert.x instance of its own, on the NIO transport. The native runs are skipped when the native
+ * transport is not available on the platform.
+ *
+ * Run with: gradle benchmark -Pbenchmark=HttpTransportBenchmark -PbenchmarkArgs="-Dinstances=1,2,4,8 -Dconnections=256"
+ */
+public class HttpTransportBenchmark {
+
+    private static final int PORT = Integer.getInteger("port", 18080);
+    private static final int REQUESTS = Integer.getInteger("requests", 200_000);
+    private static final int CONNECTIONS = Integer.getInteger("connections", 128);
+    private static final String INSTANCES = System.getProperty("instances",
+            "1,2," + Runtime.getRuntime().availableProcessors());
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("wiki-bench").toFile();
+        int run = 0;
+        for (String instances : INSTANCES.split(",")) {
+            for (boolean nativeTransport : new boolean[]{false, true}) {
+                run(nativeTransport, Integer.parseInt(instances.trim()), new File(dir, "run-" + run++));
+            }
+        }
+    }
+
+    private static void run(boolean nativeTransport, int instances, File dir) throws Exception {
+        String label = (nativeTransport ? "native" : "nio") + ", " + instances + " HTTP instances";
+        Vertx server = Vertx.vertx(new VertxOptions().setPreferNativeTransport(nativeTransport));
+        Vertx client = Vertx.vertx();
+        try {
+            if (nativeTransport && !server.isNativeTransportEnabled()) {
+                System.out.println(String.format("%-40s skipped, the native transport is not available", label));
+                return;
+            }
+            JsonObject config = new JsonObject()
+                    .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:" + dir + "/wiki;shutdown=true")
+                    .put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, PORT);
+            CompletableFuture<Void> deployed = new CompletableFuture<>();
+            server.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(config), db ->
+                    server.deployVerticle(HttpServerVerticle.class.getName(),
+                            new DeploymentOptions().setInstances(instances).setConfig(config), http -> {
+                                if (db.failed() || http.failed()) {
+                                    deployed.completeExceptionally(db.failed() ? db.cause() : http.cause());
+                                } else {
+                                    deployed.complete(null);
+                                }
+                            }));
+            deployed.get();
+
+            CompletableFuture<Void> created = new CompletableFuture<>();
+            WikiDatabaseService.createProxy(server, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE)
+                    .createPage("Benchmark", content(4096), ar -> created.complete(null));
+            created.get();
+
+            WebClient webClient = WebClient.create(client, new WebClientOptions()
+                    .setKeepAlive(true)
+                    .setMaxPoolSize(CONNECTIONS));
+            String path = WikiLinks.pagePath("Benchmark");
+            Latencies latencies = new Latencies(REQUESTS);
+            AtomicInteger remaining = new AtomicInteger(REQUESTS);
+            AtomicInteger failures = new AtomicInteger();
+            AtomicInteger connections = new AtomicInteger(CONNECTIONS);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            for (int c = 0; c < CONNECTIONS; c++) {
+                client.runOnContext(v -> next(webClient, path, remaining, failures, latencies, () -> {
+                    if (connections.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                }));
+            }
+            done.get();
+            System.out.println(latencies.report(label)
+                    + (failures.get() > 0 ? "   " + failures.get() + " failed" : ""));
+        } finally {
+            CompletableFuture<Void> closed = new CompletableFuture<>();
+            client.close(c -> server.close(s -> closed.complete(null)));
+            closed.get();
+        }
+    }
+
+    private static void next(WebClient webClient, String path, AtomicInteger remaining, AtomicInteger failures,
+                             Latencies latencies, Runnable finished) {
+        if (remaining.decrementAndGet() < 0) {
+            finished.run();
+            return;
+        }
+        long start = System.nanoTime();
+        webClient.get(PORT, "localhost", path).send(ar -> {
+            latencies.record(System.nanoTime() - start);
+            if (ar.failed() || ar.result().statusCode() != 200) {
+                failures.incrementAndGet();
+            }
+            next(webClient, path, remaining, failures, latencies, finished);
+        });
+    }
+
+    private static String content(int size) {
+        StringBuilder builder = new StringBuilder(size);
+        while (builder.length() < size) {
+            builder.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+        }
+        return builder.substring(0, size);
+    }
+}
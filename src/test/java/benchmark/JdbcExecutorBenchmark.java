@@ -0,0 +1,36 @@
+package benchmark;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Compares running the blocking JDBC calls on the Vert.x worker pool with running each of them on a virtual thread,
+ * for both pool providers, under the concurrent fetchPage and savePage load of StorageBackendBenchmark (which reads
+ * the same system properties, plus poolSize). The worker pool only limits throughput once there are more concurrent
+ * clients than worker threads, so the comparison is most telling with a high concurrency.
+ *
+ * Needs a JDK with virtual threads. Run with:
+ * gradle benchmark -Pbenchmark=JdbcExecutorBenchmark -PbenchmarkArgs="-Dconcurrency=256 -DpoolSize=30"
+ */
+public class JdbcExecutorBenchmark {
+
+    private static final int POOL_SIZE = Integer.getInteger("poolSize", 30);
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("wiki-bench").toFile();
+
+        for (String pool : new String[]{WikiDatabaseVerticle.POOL_C3P0, WikiDatabaseVerticle.POOL_HIKARI}) {
+            for (String executor : new String[]{WikiDatabaseVerticle.EXECUTOR_WORKER, WikiDatabaseVerticle.EXECUTOR_VIRTUAL}) {
+                StorageBackendBenchmark.run(pool + ", " + executor + " threads", new JsonObject()
+                        .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL,
+                                "jdbc:hsqldb:file:" + dir + "/" + pool + "-" + executor + ";shutdown=true")
+                        .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, POOL_SIZE)
+                        .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_POOL_PROVIDER, pool)
+                        .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_EXECUTOR, executor));
+            }
+        }
+    }
+}
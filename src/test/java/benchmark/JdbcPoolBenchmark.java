@@ -0,0 +1,36 @@
+package benchmark;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Compares the JDBC pool providers, with and without the prepared statement cache, under the concurrent fetchPage and
+ * savePage load of StorageBackendBenchmark (which reads the same system properties, plus poolSize).
+ *
+ * Run with: gradle benchmark -Pbenchmark=JdbcPoolBenchmark -PbenchmarkArgs="-Dconcurrency=128 -DpoolSize=16"
+ */
+public class JdbcPoolBenchmark {
+
+    private static final int POOL_SIZE = Integer.getInteger("poolSize", 30);
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("wiki-bench").toFile();
+
+        StorageBackendBenchmark.run("c3p0, no statement cache", config(dir, "c3p0-nocache")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_POOL_PROVIDER, WikiDatabaseVerticle.POOL_C3P0)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_STATEMENT_CACHE_SIZE, 0));
+        StorageBackendBenchmark.run("c3p0, statement cache", config(dir, "c3p0")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_POOL_PROVIDER, WikiDatabaseVerticle.POOL_C3P0));
+        StorageBackendBenchmark.run("hikari", config(dir, "hikari")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_POOL_PROVIDER, WikiDatabaseVerticle.POOL_HIKARI));
+    }
+
+    private static JsonObject config(File dir, String name) {
+        return new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:" + dir + "/" + name + ";shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, POOL_SIZE);
+    }
+}
@@ -0,0 +1,119 @@
+package benchmark;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+
+import java.io.File;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares saving small edits of a large page by posting the whole content with savePage, as the editor form does,
+ * and by sending a patch with patchPage.
+ *
+ * Each run makes the same number of one word edits, one after the other, and reports the save latencies along with
+ * the bytes of the request bodies: the URL-encoded form for full saves, the JSON patch for patches.
+ *
+ * Run with: gradle benchmark -Pbenchmark=PatchSaveBenchmark -PbenchmarkArgs=-DpageSize=1048576
+ */
+public class PatchSaveBenchmark {
+
+    private static final int PAGE_SIZE = Integer.getInteger("pageSize", 256 * 1024);
+    private static final int EDITS = Integer.getInteger("edits", 500);
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("wiki-bench").toFile();
+        Vertx vertx = Vertx.vertx();
+        try {
+            CompletableFuture<String> deployed = new CompletableFuture<>();
+            vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(new JsonObject()
+                    .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:" + dir + "/hsqldb;shutdown=true")), ar -> {
+                if (ar.succeeded()) {
+                    deployed.complete(ar.result());
+                } else {
+                    deployed.completeExceptionally(ar.cause());
+                }
+            });
+            deployed.get();
+            WikiDatabaseService service = WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+
+            StringBuilder content = new StringBuilder(PAGE_SIZE);
+            while (content.length() < PAGE_SIZE) {
+                content.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+            }
+            content.setLength(PAGE_SIZE);
+            CompletableFuture<Void> created = new CompletableFuture<>();
+            service.createPage("Large", content.toString(), ar -> created.complete(null));
+            created.get();
+            int id = fetch(service).getInteger("id");
+
+            Latencies full = new Latencies(EDITS);
+            long fullBytes = 0;
+            for (int i = 0; i < EDITS; i++) {
+                edit(content);
+                String body = "id=" + id + "&title=Large&newPage=no&markdown="
+                        + URLEncoder.encode(content.toString(), "UTF-8");
+                fullBytes += body.getBytes(StandardCharsets.UTF_8).length;
+                long start = System.nanoTime();
+                CompletableFuture<Void> saved = new CompletableFuture<>();
+                service.savePage(id, content.toString(), ar -> saved.complete(null));
+                saved.get();
+                full.record(System.nanoTime() - start);
+            }
+            System.out.println(full.report("full content saves") + String.format("   %10d bytes/save", fullBytes / EDITS));
+
+            int revision = fetch(service).getInteger("revision");
+            Latencies patched = new Latencies(EDITS);
+            long patchBytes = 0;
+            for (int i = 0; i < EDITS; i++) {
+                JsonArray edits = new JsonArray().add(edit(content));
+                String body = new JsonObject().put("baseRevision", revision).put("edits", edits).encode();
+                patchBytes += body.getBytes(StandardCharsets.UTF_8).length;
+                long start = System.nanoTime();
+                CompletableFuture<JsonObject> saved = new CompletableFuture<>();
+                service.patchPage(id, revision, edits, ar -> {
+                    if (ar.succeeded() && ar.result().getBoolean("saved")) {
+                        saved.complete(ar.result());
+                    } else {
+                        saved.completeExceptionally(new IllegalStateException("Patch not saved"));
+                    }
+                });
+                revision = saved.get().getInteger("revision");
+                patched.record(System.nanoTime() - start);
+            }
+            System.out.println(patched.report("patches") + String.format("   %10d bytes/save", patchBytes / EDITS));
+
+            if (!fetch(service).getString("rawContent").equals(content.toString())) {
+                throw new IllegalStateException("The patched page differs from the edited content");
+            }
+        } finally {
+            CompletableFuture<Void> closed = new CompletableFuture<>();
+            vertx.close(ar -> closed.complete(null));
+            closed.get();
+        }
+    }
+
+    private static JsonObject fetch(WikiDatabaseService service) throws Exception {
+        CompletableFuture<JsonObject> page = new CompletableFuture<>();
+        service.fetchPage("Large", ar -> page.complete(ar.result()));
+        return page.get();
+    }
+
+    /**
+     * Replaces a word at a random place of the content, and returns the corresponding patch edit.
+     */
+    private static JsonObject edit(StringBuilder content) {
+        int at = ThreadLocalRandom.current().nextInt(content.length() - 5);
+        String removed = content.substring(at, at + 5);
+        String inserted = removed.toUpperCase();
+        content.replace(at, at + 5, inserted);
+        return new JsonObject().put("at", at).put("remove", removed).put("insert", inserted);
+    }
+}
@@ -0,0 +1,129 @@
+package benchmark;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the HSQLDB backend with the log-structured backend through the event bus service proxy.
+ *
+ * Each backend is loaded with the same pages, then hit by a fixed number of concurrent clients issuing a mix of
+ * fetchPage and savePage calls.
+ *
+ * Run with: gradle benchmark -Pbenchmark=StorageBackendBenchmark
+ */
+public class StorageBackendBenchmark {
+
+    private static final int PAGES = Integer.getInteger("pages", 1_000);
+    private static final int OPERATIONS = Integer.getInteger("operations", 50_000);
+    private static final int CONCURRENCY = Integer.getInteger("concurrency", 64);
+    private static final int WRITE_PERCENT = Integer.getInteger("writePercent", 10);
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("wiki-bench").toFile();
+
+        run("hsqldb (file, cached)", new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:" + dir + "/hsqldb;shutdown=true"));
+        run("log-structured", new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_BACKEND, WikiDatabaseVerticle.BACKEND_LOG)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_LOG_FILE, dir + "/wiki.log"));
+    }
+
+    static void run(String label, JsonObject config) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            CompletableFuture<String> deployed = new CompletableFuture<>();
+            vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(config), ar -> {
+                if (ar.succeeded()) {
+                    deployed.complete(ar.result());
+                } else {
+                    deployed.completeExceptionally(ar.cause());
+                }
+            });
+            deployed.get();
+            WikiDatabaseService service = WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+
+            String content = content(4096);
+            CompletableFuture<Void> loaded = new CompletableFuture<>();
+            load(service, content, 0, loaded);
+            loaded.get();
+
+            int[] ids = new int[PAGES];
+            for (int i = 0; i < PAGES; i++) {
+                CompletableFuture<Integer> id = new CompletableFuture<>();
+                service.fetchPage("Page " + i, ar -> id.complete(ar.result().getInteger("id")));
+                ids[i] = id.get();
+            }
+
+            Latencies latencies = new Latencies(OPERATIONS);
+            AtomicInteger remaining = new AtomicInteger(OPERATIONS);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            AtomicInteger clients = new AtomicInteger(CONCURRENCY);
+            for (int c = 0; c < CONCURRENCY; c++) {
+                vertx.runOnContext(v -> next(service, ids, content, remaining, latencies, () -> {
+                    if (clients.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                }));
+            }
+            done.get();
+            System.out.println(latencies.report(label));
+        } finally {
+            CompletableFuture<Void> closed = new CompletableFuture<>();
+            vertx.close(ar -> closed.complete(null));
+            closed.get();
+        }
+    }
+
+    private static void load(WikiDatabaseService service, String content, int i, CompletableFuture<Void> loaded) {
+        if (i == PAGES) {
+            loaded.complete(null);
+            return;
+        }
+        service.createPage("Page " + i, content, ar -> {
+            if (ar.failed()) {
+                loaded.completeExceptionally(ar.cause());
+            } else {
+                load(service, content, i + 1, loaded);
+            }
+        });
+    }
+
+    private static void next(WikiDatabaseService service, int[] ids, String content, AtomicInteger remaining,
+                             Latencies latencies, Runnable finished) {
+        if (remaining.decrementAndGet() < 0) {
+            finished.run();
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int page = random.nextInt(PAGES);
+        long start = System.nanoTime();
+        Future<Object> future = Future.future();
+        future.setHandler(ar -> {
+            latencies.record(System.nanoTime() - start);
+            next(service, ids, content, remaining, latencies, finished);
+        });
+        if (random.nextInt(100) < WRITE_PERCENT) {
+            service.savePage(ids[page], content, ar -> future.complete());
+        } else {
+            service.fetchPage("Page " + page, ar -> future.complete());
+        }
+    }
+
+    private static String content(int size) {
+        StringBuilder builder = new StringBuilder(size);
+        while (builder.length() < size) {
+            builder.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+        }
+        return builder.substring(0, size);
+    }
+}
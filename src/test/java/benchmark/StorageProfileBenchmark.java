@@ -0,0 +1,177 @@
+package benchmark;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.StorageProfile;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the HSQLDB storage profiles across dataset sizes.
+ *
+ * For each profile and size, a database is loaded with distinct pages and closed, then reopened: the startup time is
+ * the time the database verticle takes to deploy on the loaded database, recovery included. The reopened database
+ * then serves the fetchPage and savePage mix of StorageBackendBenchmark, and the heap in use once the pages have been
+ * served is reported next to the throughput and latencies. The ephemeral profile loses the pages on shutdown, so it
+ * starts empty and is loaded again after the startup.
+ *
+ * Run with: gradle benchmark -Pbenchmark=StorageProfileBenchmark -PbenchmarkArgs="-Dsizes=1000,100000 -Xmx1g"
+ */
+public class StorageProfileBenchmark {
+
+    private static final String SIZES = System.getProperty("sizes", "1000,10000");
+    private static final String PROFILES = System.getProperty("profiles", "default,durable-memory,large-cached,ephemeral");
+    private static final int OPERATIONS = Integer.getInteger("operations", 50_000);
+    private static final int CONCURRENCY = Integer.getInteger("concurrency", 64);
+    private static final int WRITE_PERCENT = Integer.getInteger("writePercent", 10);
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("wiki-bench").toFile();
+        for (String size : SIZES.split(",")) {
+            for (String profile : PROFILES.split(",")) {
+                run(StorageProfile.named(profile.trim()), Integer.parseInt(size.trim()), dir);
+            }
+        }
+    }
+
+    private static void run(StorageProfile profile, int pages, File dir) throws Exception {
+        JsonObject config = new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL,
+                        "jdbc:hsqldb:file:" + dir + "/" + profile.configName() + "-" + pages + ";shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_STORAGE_PROFILE, profile.configName())
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_MAINTENANCE_ENABLED, false);
+
+        Vertx loading = Vertx.vertx();
+        try {
+            deploy(loading, config);
+            load(service(loading), pages);
+        } finally {
+            close(loading);
+        }
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        Vertx vertx = Vertx.vertx();
+        try {
+            long startedAt = System.nanoTime();
+            deploy(vertx, config);
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            WikiDatabaseService service = service(vertx);
+            if (profile == StorageProfile.EPHEMERAL) {
+                load(service, pages);
+            }
+
+            int[] ids = new int[pages];
+            for (int i = 0; i < pages; i++) {
+                CompletableFuture<Integer> id = new CompletableFuture<>();
+                service.fetchPage("Page " + i, ar -> id.complete(ar.result().getInteger("id")));
+                ids[i] = id.get();
+            }
+
+            Latencies latencies = new Latencies(OPERATIONS);
+            AtomicInteger remaining = new AtomicInteger(OPERATIONS);
+            AtomicInteger clients = new AtomicInteger(CONCURRENCY);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            for (int c = 0; c < CONCURRENCY; c++) {
+                vertx.runOnContext(v -> next(service, ids, remaining, latencies, () -> {
+                    if (clients.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                }));
+            }
+            done.get();
+            String report = latencies.report(profile.configName() + ", " + pages + " pages");
+
+            System.gc();
+            long heapMegabytes = (runtime.totalMemory() - runtime.freeMemory() - heapBefore) / (1024 * 1024);
+            System.out.println(String.format("%s   startup %6d ms   heap %5d MB", report, startupMillis, heapMegabytes));
+        } finally {
+            close(vertx);
+        }
+    }
+
+    private static void deploy(Vertx vertx, JsonObject config) throws Exception {
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(config), ar -> {
+            if (ar.succeeded()) {
+                deployed.complete(ar.result());
+            } else {
+                deployed.completeExceptionally(ar.cause());
+            }
+        });
+        deployed.get();
+    }
+
+    private static WikiDatabaseService service(Vertx vertx) {
+        return WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+    }
+
+    private static void close(Vertx vertx) throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(ar -> closed.complete(null));
+        closed.get();
+    }
+
+    /**
+     * Imports distinct pages in batches, so that each page has a blob of its own.
+     */
+    private static void load(WikiDatabaseService service, int pages) throws Exception {
+        for (int first = 0; first < pages; first += IMPORT_BATCH_SIZE) {
+            JsonArray batch = new JsonArray();
+            for (int i = first; i < Math.min(pages, first + IMPORT_BATCH_SIZE); i++) {
+                batch.add(new JsonObject().put("name", "Page " + i).put("content", content(i, 4096)));
+            }
+            CompletableFuture<JsonObject> imported = new CompletableFuture<>();
+            service.importPages(batch, ar -> {
+                if (ar.succeeded()) {
+                    imported.complete(ar.result());
+                } else {
+                    imported.completeExceptionally(ar.cause());
+                }
+            });
+            imported.get();
+        }
+    }
+
+    private static void next(WikiDatabaseService service, int[] ids, AtomicInteger remaining, Latencies latencies,
+                             Runnable finished) {
+        if (remaining.decrementAndGet() < 0) {
+            finished.run();
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int page = random.nextInt(ids.length);
+        long start = System.nanoTime();
+        Future<Object> future = Future.future();
+        future.setHandler(ar -> {
+            latencies.record(System.nanoTime() - start);
+            next(service, ids, remaining, latencies, finished);
+        });
+        if (random.nextInt(100) < WRITE_PERCENT) {
+            service.savePage(ids[page], content(random.nextInt(), 4096), ar -> future.complete());
+        } else {
+            service.fetchPage("Page " + page, ar -> future.complete());
+        }
+    }
+
+    private static String content(int seed, int size) {
+        StringBuilder builder = new StringBuilder(size);
+        builder.append("# Page ").append(seed).append("\n\n");
+        while (builder.length() < size) {
+            builder.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+        }
+        return builder.substring(0, size);
+    }
+}
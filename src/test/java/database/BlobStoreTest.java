@@ -0,0 +1,81 @@
+package database;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+@RunWith(VertxUnitRunner.class)
+public class BlobStoreTest {
+
+    private static final String JDBC_URL = "jdbc:hsqldb:mem:blobtest;shutdown=true";
+
+    private Vertx vertx;
+    private WikiDatabaseService service;
+
+    @Before
+    public void prepare(TestContext context) {
+        vertx = Vertx.vertx();
+        JsonObject conf = new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, JDBC_URL)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_BLOB_GC_INTERVAL, 100L);
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                context.asyncAssertSuccess(id ->
+                        service = WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE)));
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void identical_contents_share_a_blob_until_collected(TestContext context) {
+        Async async = context.async();
+
+        service.createPage("A", "# Shared", context.asyncAssertSuccess(a ->
+                service.createPage("B", "# Shared", context.asyncAssertSuccess(b -> {
+                    context.assertEquals(1, blobCount());
+
+                    service.fetchPage("B", context.asyncAssertSuccess(page ->
+                            service.savePage(page.getInteger("id"), "# Own", context.asyncAssertSuccess(saved -> {
+                                context.assertEquals(2, blobCount());
+
+                                service.fetchPage("A", context.asyncAssertSuccess(shared ->
+                                        service.deletePage(shared.getInteger("id"), context.asyncAssertSuccess(deleted ->
+                                                vertx.setTimer(500, id -> {
+                                                    context.assertEquals(1, blobCount());
+                                                    async.complete();
+                                                })))));
+                            }))));
+                }))));
+
+        async.awaitSuccess(5000);
+    }
+
+    private static int blobCount() {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL);
+             Statement statement = connection.createStatement();
+             ResultSet count = statement.executeQuery("select count(*) from Blobs")) {
+            count.next();
+            return count.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package database;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.StorageProfile;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs the service contract of WikiDatabaseVerticleTest over CACHED tables, with the large-cached storage profile.
+ */
+public class CachedWikiDatabaseVerticleTest extends WikiDatabaseVerticleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    protected JsonObject configuration() throws Exception {
+        return super.configuration()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL,
+                        "jdbc:hsqldb:file:" + folder.getRoot() + "/wiki;shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_STORAGE_PROFILE, StorageProfile.LARGE_CACHED.configName());
+    }
+}
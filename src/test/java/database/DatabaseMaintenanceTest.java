@@ -0,0 +1,70 @@
+package database;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.guides.wiki.database.DatabaseMaintenance;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.nio.file.Files;
+
+@RunWith(VertxUnitRunner.class)
+public class DatabaseMaintenanceTest {
+
+    private Vertx vertx;
+    private String deploymentId;
+
+    @Before
+    public void prepare(TestContext context) throws Exception {
+        vertx = Vertx.vertx();
+        File dir = Files.createTempDirectory("wiki-maintenance").toFile();
+        JsonObject conf = new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:" + dir + "/wiki;shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_MAINTENANCE_CHECK_INTERVAL, 100L)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_MAINTENANCE_CHECKPOINT_INTERVAL, 0L)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_MAINTENANCE_DEFRAG_INTERVAL, 0L);
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                context.asyncAssertSuccess(id -> deploymentId = id));
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void quiet_file_databases_are_checkpointed(TestContext context) {
+        Async async = context.async();
+
+        vertx.setPeriodic(100, id -> {
+            JsonObject metrics = DatabaseMaintenance.shared(vertx).metrics();
+            if (metrics.getLong("defrags") > 0 && !metrics.getJsonArray("databases").isEmpty()
+                    && metrics.getJsonArray("databases").getJsonObject(0).getJsonObject("sizes").containsKey("script")) {
+                vertx.cancelTimer(id);
+                context.assertTrue(metrics.getLong("checkpoints") > 0);
+                context.assertNotNull(metrics.getLong("lastCheckpoint"));
+                context.assertEquals(0L, metrics.getLong("failures"));
+                async.complete();
+            }
+        });
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void undeployed_databases_are_no_longer_maintained(TestContext context) {
+        context.assertEquals(1, DatabaseMaintenance.shared(vertx).metrics().getJsonArray("databases").size());
+
+        vertx.undeploy(deploymentId, context.asyncAssertSuccess(v ->
+                context.assertTrue(DatabaseMaintenance.shared(vertx).metrics().getJsonArray("databases").isEmpty())));
+    }
+}
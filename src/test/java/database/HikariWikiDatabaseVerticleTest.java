@@ -0,0 +1,17 @@
+package database;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+
+/**
+ * Runs the service contract of WikiDatabaseVerticleTest over a HikariCP connection pool.
+ */
+public class HikariWikiDatabaseVerticleTest extends WikiDatabaseVerticleTest {
+
+    @Override
+    protected JsonObject configuration() throws Exception {
+        return super.configuration()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:hikaritest;shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_POOL_PROVIDER, WikiDatabaseVerticle.POOL_HIKARI);
+    }
+}
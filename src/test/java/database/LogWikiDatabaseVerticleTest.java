@@ -0,0 +1,104 @@
+package database;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.guides.wiki.database.WikiDatabaseService;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+/**
+ * Runs the service contract of WikiDatabaseVerticleTest against the log-structured backend.
+ */
+public class LogWikiDatabaseVerticleTest extends WikiDatabaseVerticleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String logFile;
+
+    @Override
+    protected JsonObject configuration() throws Exception {
+        if (logFile == null) {
+            logFile = folder.newFile("wiki.log").getPath();
+        }
+        return new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_BACKEND, WikiDatabaseVerticle.BACKEND_LOG)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_LOG_FILE, logFile)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_RECENT_CHANGES_FILE, recentChangesFile());
+    }
+
+    @Test
+    public void pages_survive_restart(TestContext context) throws Exception {
+        Async async = context.async();
+        JsonObject conf = configuration();
+
+        service.createPage("Durable", "Still here", context.asyncAssertSuccess(v -> {
+            vertx.close(context.asyncAssertSuccess(closed -> {
+
+                vertx = Vertx.vertx();
+                vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                        context.asyncAssertSuccess(id -> {
+
+                            service = WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+                            service.fetchPage("Durable", context.asyncAssertSuccess(json -> {
+                                context.assertTrue(json.getBoolean("found"));
+                                context.assertEquals("Still here", json.getString("rawContent"));
+                                async.complete();
+                            }));
+                        }));
+            }));
+        }));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void revisions_and_page_ids_survive_compaction_and_restart(TestContext context) throws Exception {
+        Async async = context.async();
+        JsonObject conf = configuration();
+        // three large saves of one page make the log more than twice its live size, which starts a compaction
+        char[] large = new char[600 * 1024];
+        Arrays.fill(large, 'a');
+        String content = new String(large);
+
+        service.createPage("Kept", content, context.asyncAssertSuccess(v1 -> {
+            service.fetchPage("Kept", context.asyncAssertSuccess(kept -> {
+                int keptId = kept.getInteger("id");
+                service.createPage("Deleted", "Soon gone", context.asyncAssertSuccess(v2 -> {
+                    service.fetchPage("Deleted", context.asyncAssertSuccess(deleted -> {
+                        // the highest id so far, which the compacted log no longer has a page for
+                        int deletedId = deleted.getInteger("id");
+                        context.assertTrue(deletedId > keptId);
+                        service.deletePage(deletedId, context.asyncAssertSuccess(v3 -> {
+                            service.savePage(keptId, content + "b", context.asyncAssertSuccess(v4 -> {
+                                service.savePage(keptId, content + "c", context.asyncAssertSuccess(v5 -> {
+                                    vertx.setTimer(500, t -> restart(context, conf, restarted -> {
+
+                                        service.fetchPage("Kept", context.asyncAssertSuccess(json -> {
+                                            context.assertEquals(2, json.getInteger("revision"));
+                                            service.createPage("New", "Fresh id", context.asyncAssertSuccess(v6 -> {
+                                                service.fetchPage("New", context.asyncAssertSuccess(created -> {
+                                                    context.assertTrue(created.getInteger("id") > deletedId);
+                                                    async.complete();
+                                                }));
+                                            }));
+                                        }));
+                                    }));
+                                }));
+                            }));
+                        }));
+                    }));
+                }));
+            }));
+        }));
+
+        async.awaitSuccess(10000);
+    }
+}
@@ -0,0 +1,49 @@
+package database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+import org.junit.Test;
+
+/**
+ * Runs the service contract of WikiDatabaseVerticleTest against pages spread over several database shards.
+ */
+public class ShardedWikiDatabaseVerticleTest extends WikiDatabaseVerticleTest {
+
+    @Override
+    protected JsonObject configuration() throws Exception {
+        return super.configuration()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:shardtest;shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_SHARDS, 3);
+    }
+
+    @Test
+    public void listings_are_merged_across_shards(TestContext context) {
+        Async async = context.async();
+        JsonArray pages = new JsonArray();
+        for (String name : new String[]{"Foxtrot", "Alpha", "Echo", "Charlie", "Delta", "Bravo"}) {
+            pages.add(new JsonObject().put("name", name).put("content", "# " + name));
+        }
+
+        service.importPages(pages, context.asyncAssertSuccess(outcome -> {
+            context.assertEquals(6, outcome.getInteger("imported"));
+            service.fetchAllPages(context.asyncAssertSuccess(names -> {
+                context.assertEquals(new JsonArray()
+                        .add("Alpha").add("Bravo").add("Charlie").add("Delta").add("Echo").add("Foxtrot"), names);
+
+                service.fetchPage("Delta", context.asyncAssertSuccess(page -> {
+                    service.savePage(page.getInteger("id"), "Updated", context.asyncAssertSuccess(saved -> {
+                        service.fetchPage("Delta", context.asyncAssertSuccess(updated -> {
+                            context.assertEquals("Updated", updated.getString("rawContent"));
+                            async.complete();
+                        }));
+                    }));
+                }));
+            }));
+        }));
+
+        async.awaitSuccess(5000);
+    }
+}
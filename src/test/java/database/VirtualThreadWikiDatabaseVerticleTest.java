@@ -0,0 +1,17 @@
+package database;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
+
+/**
+ * Runs the service contract of WikiDatabaseVerticleTest with the JDBC calls on virtual threads.
+ */
+public class VirtualThreadWikiDatabaseVerticleTest extends WikiDatabaseVerticleTest {
+
+    @Override
+    protected JsonObject configuration() throws Exception {
+        return super.configuration()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:virtualtest;shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_EXECUTOR, WikiDatabaseVerticle.EXECUTOR_VIRTUAL);
+    }
+}
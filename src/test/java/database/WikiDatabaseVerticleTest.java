@@ -1,11 +1,17 @@
 package database;
 
 import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.guides.wiki.database.ErrorCodes;
+import io.vertx.guides.wiki.database.ServiceHeaders;
 import io.vertx.guides.wiki.database.WikiDatabaseService;
 import io.vertx.guides.wiki.database.WikiDatabaseVerticle;
 import org.junit.After;
@@ -13,18 +19,44 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @RunWith(VertxUnitRunner.class)
 public class WikiDatabaseVerticleTest {
 
-    private Vertx vertx;
-    private WikiDatabaseService service;
+    protected Vertx vertx;
+    protected WikiDatabaseService service;
+    private File recentChangesFile;
+
+    protected JsonObject configuration() throws Exception {
+        return new JsonObject()
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_RECENT_CHANGES_FILE, recentChangesFile());
+    }
+
+    /**
+     * The recent changes log of the test, which outlives the restarts within the test.
+     */
+    protected String recentChangesFile() throws IOException {
+        if (recentChangesFile == null) {
+            recentChangesFile = File.createTempFile("recent-changes", ".log");
+            recentChangesFile.deleteOnExit();
+        }
+        return recentChangesFile.getPath();
+    }
 
     @Before
-    public void prepare(TestContext context) throws InterruptedException {
+    public void prepare(TestContext context) throws Exception {
         vertx = Vertx.vertx();
-        JsonObject conf = new JsonObject()
-                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
-                .put(WikiDatabaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4);
+        JsonObject conf = configuration();
         vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
                 context.asyncAssertSuccess(id ->
                         service = WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE)));
@@ -95,4 +127,363 @@ public class WikiDatabaseVerticleTest {
 
         async.awaitSuccess(5000);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test_fetchExistingPages(TestContext context) {
+        Async async = context.async();
+
+        service.createPage("A", "abc", context.asyncAssertSuccess(p1 -> {
+            service.createPage("B", "123", context.asyncAssertSuccess(p2 -> {
+                service.fetchExistingPages(Arrays.asList("A", "B", "Missing"), context.asyncAssertSuccess(names -> {
+
+                    context.assertEquals(2, names.size());
+                    context.assertTrue(names.contains("A"));
+                    context.assertTrue(names.contains("B"));
+
+                    async.complete();
+                }));
+            }));
+        }));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void missing_pages_are_not_found(TestContext context) {
+        Async async = context.async();
+
+        service.fetchPage("Missing", context.asyncAssertSuccess(json1 -> {
+            context.assertFalse(json1.getBoolean("found"));
+
+            service.createPage("Missing", "Not anymore", context.asyncAssertSuccess(v -> {
+                service.fetchPage("Missing", context.asyncAssertSuccess(json2 -> {
+                    context.assertTrue(json2.getBoolean("found"));
+                    async.complete();
+                }));
+            }));
+        }));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void imported_pages_are_exported_in_batches(TestContext context) {
+        Async async = context.async();
+
+        service.createPage("A", "old", context.asyncAssertSuccess(created -> {
+            JsonArray pages = new JsonArray()
+                    .add(new JsonObject().put("name", "A").put("content", "new"))
+                    .add(new JsonObject().put("name", "B").put("content", "# B"))
+                    .add(new JsonObject().put("name", "C").put("content", "# C"));
+            service.importPages(pages, context.asyncAssertSuccess(outcome -> {
+                context.assertEquals(3, outcome.getInteger("imported"));
+                context.assertTrue(outcome.getJsonArray("errors").isEmpty());
+
+                service.fetchPagesAfter(-1, 2, context.asyncAssertSuccess(first -> {
+                    context.assertEquals(2, first.size());
+                    service.fetchPagesAfter(first.get(1).getInteger("ID"), 2, context.asyncAssertSuccess(second -> {
+                        context.assertEquals(1, second.size());
+
+                        Map<String, String> exported = new HashMap<>();
+                        first.forEach(page -> exported.put(page.getString("NAME"), page.getString("CONTENT")));
+                        second.forEach(page -> exported.put(page.getString("NAME"), page.getString("CONTENT")));
+                        context.assertEquals(3, exported.size());
+                        context.assertEquals("new", exported.get("A"));
+                        context.assertEquals("# C", exported.get("C"));
+                        async.complete();
+                    }));
+                }));
+            }));
+        }));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void writes_publish_change_events(TestContext context) {
+        Async async = context.async();
+        List<String> changes = new ArrayList<>();
+        vertx.eventBus().<JsonObject>consumer("wikidb.changes", message -> {
+            changes.add(message.body().getString("type") + " " + message.body().getString("name"));
+            if (changes.size() == 3) {
+                context.assertEquals(Arrays.asList("created Live", "updated Live", "deleted Live"), changes);
+                async.complete();
+            }
+        });
+
+        service.createPage("Live", "v1", context.asyncAssertSuccess(created ->
+                service.fetchPage("Live", context.asyncAssertSuccess(page ->
+                        service.savePage(page.getInteger("id"), "v2", context.asyncAssertSuccess(saved ->
+                                service.deletePage(page.getInteger("id"), context.asyncAssertSuccess())))))));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void patches_apply_to_their_base_revision_only(TestContext context) {
+        Async async = context.async();
+        JsonArray fix = new JsonArray().add(new JsonObject().put("at", 8).put("remove", "wrold").put("insert", "world"));
+
+        service.createPage("Patched", "# Hello wrold", context.asyncAssertSuccess(created ->
+                service.fetchPage("Patched", context.asyncAssertSuccess(page -> {
+                    int id = page.getInteger("id");
+                    int revision = page.getInteger("revision");
+                    service.patchPage(id, revision, fix, context.asyncAssertSuccess(patched -> {
+                        context.assertTrue(patched.getBoolean("saved"));
+                        context.assertEquals(revision + 1, patched.getInteger("revision"));
+
+                        service.patchPage(id, revision, fix, context.asyncAssertSuccess(stale -> {
+                            context.assertFalse(stale.getBoolean("saved"));
+                            context.assertEquals(revision + 1, stale.getInteger("revision"));
+
+                            service.patchPage(id, revision + 1, fix, context.asyncAssertFailure(misplaced -> {
+                                context.assertEquals(ErrorCodes.PATCH_DOES_NOT_APPLY.ordinal(),
+                                        ((ReplyException) misplaced).failureCode());
+                                service.fetchPage("Patched", context.asyncAssertSuccess(updated -> {
+                                    context.assertEquals("# Hello world", updated.getString("rawContent"));
+                                    context.assertEquals(revision + 1, updated.getInteger("revision"));
+                                    async.complete();
+                                }));
+                            }));
+                        }));
+                    }));
+                }))));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void saving_an_unchanged_content_writes_nothing(TestContext context) {
+        Async async = context.async();
+
+        service.createPage("Same", "# Same", context.asyncAssertSuccess(created ->
+                service.fetchPage("Same", context.asyncAssertSuccess(page ->
+                        service.savePage(page.getInteger("id"), "# Same", context.asyncAssertSuccess(saved ->
+                                service.fetchPage("Same", context.asyncAssertSuccess(unchanged -> {
+                                    context.assertEquals(page.getInteger("revision"), unchanged.getInteger("revision"));
+                                    context.assertEquals("# Same", unchanged.getString("rawContent"));
+                                    async.complete();
+                                }))))))));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void backlinks_follow_the_links_of_each_write(TestContext context) {
+        Async async = context.async();
+
+        service.createPage("A", "See [[B]] and [[C|the C page]]", context.asyncAssertSuccess(v1 -> {
+            service.createPage("B", "Back to [[C]], and [[B]] itself", context.asyncAssertSuccess(v2 -> {
+                service.createPage("C", "No links", context.asyncAssertSuccess(v3 -> {
+                    service.fetchBacklinks("C", context.asyncAssertSuccess(backlinks -> {
+                        context.assertEquals(Arrays.asList("A", "B"), backlinks);
+
+                        service.fetchPage("A", context.asyncAssertSuccess(a -> {
+                            service.savePage(a.getInteger("id"), "Only [[B]] now", context.asyncAssertSuccess(v4 -> {
+                                service.fetchBacklinks("C", context.asyncAssertSuccess(fewer -> {
+                                    context.assertEquals(Arrays.asList("B"), fewer);
+
+                                    service.fetchPage("B", context.asyncAssertSuccess(b -> {
+                                        service.deletePage(b.getInteger("id"), context.asyncAssertSuccess(v5 -> {
+                                            service.fetchOrphanedPages(context.asyncAssertSuccess(orphans -> {
+                                                context.assertEquals(Arrays.asList("A", "C"), orphans);
+                                                service.fetchBacklinks("B", context.asyncAssertSuccess(missing -> {
+                                                    context.assertEquals(Arrays.asList("A"), missing);
+                                                    async.complete();
+                                                }));
+                                            }));
+                                        }));
+                                    }));
+                                }));
+                            }));
+                        }));
+                    }));
+                }));
+            }));
+        }));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void recent_changes_list_the_latest_writes_first(TestContext context) {
+        Async async = context.async();
+
+        service.createPage("First", "12345", context.asyncAssertSuccess(v1 -> {
+            service.createPage("Second", "ab", context.asyncAssertSuccess(v2 -> {
+                service.fetchPage("First", context.asyncAssertSuccess(first -> {
+                    service.savePage(first.getInteger("id"), "1234567890", context.asyncAssertSuccess(saved -> {
+                        context.assertEquals("First", saved.getString("name"));
+                        context.assertEquals(5, saved.getInteger("previousSize"));
+                        context.assertEquals(10, saved.getInteger("size"));
+                        service.fetchPage("Second", context.asyncAssertSuccess(second -> {
+                            service.deletePage(second.getInteger("id"), context.asyncAssertSuccess(removed -> {
+                                context.assertEquals("Second", removed.getString("name"));
+                                context.assertEquals(2, removed.getInteger("previousSize"));
+                                service.fetchRecentChanges(3, context.asyncAssertSuccess(changes -> {
+                                    context.assertEquals(3, changes.size());
+
+                                    JsonObject deleted = changes.getJsonObject(0);
+                                    context.assertEquals("Second", deleted.getString("name"));
+                                    context.assertEquals("deleted", deleted.getString("action"));
+                                    context.assertEquals(-2, deleted.getInteger("delta"));
+
+                                    JsonObject updated = changes.getJsonObject(1);
+                                    context.assertEquals("First", updated.getString("name"));
+                                    context.assertEquals("updated", updated.getString("action"));
+                                    context.assertEquals(10, updated.getInteger("size"));
+                                    context.assertEquals(5, updated.getInteger("delta"));
+
+                                    context.assertEquals("created", changes.getJsonObject(2).getString("action"));
+                                    async.complete();
+                                }));
+                            }));
+                        }));
+                    }));
+                }));
+            }));
+        }));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void recent_changes_survive_restart(TestContext context) throws Exception {
+        Async async = context.async();
+        JsonObject conf = configuration();
+
+        service.createPage("Remembered", "Once", context.asyncAssertSuccess(v ->
+                vertx.close(context.asyncAssertSuccess(closed -> {
+
+                    vertx = Vertx.vertx();
+                    vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                            context.asyncAssertSuccess(id -> {
+
+                                service = WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+                                service.fetchRecentChanges(10, context.asyncAssertSuccess(changes -> {
+                                    context.assertEquals(1, changes.size());
+                                    context.assertEquals("Remembered", changes.getJsonObject(0).getString("name"));
+                                    context.assertEquals("created", changes.getJsonObject(0).getString("action"));
+                                    async.complete();
+                                }));
+                            }));
+                }))));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void recent_changes_survive_a_record_torn_mid_name(TestContext context) throws Exception {
+        recentChangesSurviveTornTail(context, log -> log.setLength(log.length() - 2));
+    }
+
+    @Test
+    public void recent_changes_survive_a_malformed_last_name(TestContext context) throws Exception {
+        recentChangesSurviveTornTail(context, log -> {
+            // a lead byte without its continuation byte
+            log.seek(log.length() - 1);
+            log.write(0xC3);
+        });
+    }
+
+    private interface Tear {
+        void apply(RandomAccessFile log) throws IOException;
+    }
+
+    /**
+     * Tears the last record of the recent changes log while the verticle is stopped, then checks that the changes
+     * before it are listed, and that the changes recorded next survive another restart.
+     */
+    private void recentChangesSurviveTornTail(TestContext context, Tear tear) throws Exception {
+        Async async = context.async();
+        JsonObject conf = configuration();
+
+        service.createPage("Remembered", "Once", context.asyncAssertSuccess(v1 ->
+                service.createPage("Torn", "Twice", context.asyncAssertSuccess(v2 ->
+                        vertx.close(context.asyncAssertSuccess(closed -> {
+                            try (RandomAccessFile log = new RandomAccessFile(recentChangesFile(), "rw")) {
+                                tear.apply(log);
+                            } catch (IOException e) {
+                                context.fail(e);
+                            }
+                            deploy(context, conf, deployed -> fetchRecentNames(context, names -> {
+                                context.assertEquals(Arrays.asList("Remembered"), names);
+
+                                service.createPage("After", "Thrice", context.asyncAssertSuccess(v3 ->
+                                        restart(context, conf, restarted -> fetchRecentNames(context, again -> {
+                                            context.assertEquals(Arrays.asList("After", "Remembered"), again);
+                                            async.complete();
+                                        }))));
+                            }));
+                        }))))));
+
+        async.awaitSuccess(5000);
+    }
+
+    private void fetchRecentNames(TestContext context, Handler<List<String>> namesHandler) {
+        service.fetchRecentChanges(10, context.asyncAssertSuccess(changes -> {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < changes.size(); i++) {
+                names.add(changes.getJsonObject(i).getString("name"));
+            }
+            namesHandler.handle(names);
+        }));
+    }
+
+    /**
+     * Stops the verticle and deploys it again with the given configuration.
+     */
+    protected void restart(TestContext context, JsonObject conf, Handler<Void> restarted) {
+        vertx.close(context.asyncAssertSuccess(closed -> deploy(context, conf, restarted)));
+    }
+
+    private void deploy(TestContext context, JsonObject conf, Handler<Void> deployed) {
+        vertx = Vertx.vertx();
+        vertx.deployVerticle(new WikiDatabaseVerticle(), new DeploymentOptions().setConfig(conf),
+                context.asyncAssertSuccess(id -> {
+                    service = WikiDatabaseService.createProxy(vertx, WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE);
+                    deployed.handle(null);
+                }));
+    }
+
+    @Test
+    public void replies_carry_service_time_and_request_id(TestContext context) {
+        Async async = context.async();
+        DeliveryOptions options = new DeliveryOptions()
+                .addHeader("action", "fetchAllPages")
+                .addHeader(ServiceHeaders.REQUEST_ID, "test-42");
+
+        vertx.eventBus().<JsonArray>send(WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE, new JsonObject(), options,
+                context.asyncAssertSuccess(reply -> {
+                    context.assertEquals("test-42", reply.headers().get(ServiceHeaders.REQUEST_ID));
+                    context.assertTrue(Long.parseLong(reply.headers().get(ServiceHeaders.SERVICE_TIME)) >= 0);
+                    context.assertNotNull(reply.body());
+                    async.complete();
+                }));
+
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void failed_calls_are_answered_with_service_time_and_request_id(TestContext context) {
+        Async async = context.async();
+        Map<String, String> replyHeaders = new HashMap<>();
+        vertx.eventBus().addInterceptor(send -> {
+            if (send.message().headers().contains(ServiceHeaders.SERVICE_TIME)) {
+                replyHeaders.put(ServiceHeaders.REQUEST_ID, send.message().headers().get(ServiceHeaders.REQUEST_ID));
+            }
+            send.next();
+        });
+        DeliveryOptions options = new DeliveryOptions()
+                .addHeader("action", "noSuchAction")
+                .addHeader(ServiceHeaders.REQUEST_ID, "test-43");
+
+        vertx.eventBus().send(WikiDatabaseVerticle.CONFIG_WIKIDB_QUEUE, new JsonObject(), options,
+                context.asyncAssertFailure(failure -> {
+                    context.assertEquals("test-43", replyHeaders.get(ServiceHeaders.REQUEST_ID));
+                    async.complete();
+                }));
+
+        async.awaitSuccess(5000);
+    }
+}
@@ -0,0 +1,100 @@
+package http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.guides.wiki.http.BoundedBodyHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@RunWith(VertxUnitRunner.class)
+public class BoundedBodyHandlerTest {
+
+    private static final int PORT = 8082;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Vertx vertx;
+    private WebClient webClient;
+    private File uploads;
+
+    @Before
+    public void prepare(TestContext context) throws Exception {
+        vertx = Vertx.vertx();
+        uploads = folder.newFolder("uploads");
+
+        Router router = Router.router(vertx);
+        router.put("/echo").handler(new BoundedBodyHandler(vertx, 64 * 1024, 1024, uploads.getPath()));
+        router.put("/echo").handler(ctx -> ctx.response().end((String) ctx.get(BoundedBodyHandler.BODY)));
+
+        webClient = WebClient.create(vertx);
+        vertx.createHttpServer()
+                .requestHandler(router::accept)
+                .listen(PORT, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void finish(TestContext context) {
+        webClient.close();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void small_bodies_stay_in_memory(TestContext context) {
+        Async async = context.async();
+
+        webClient.put(PORT, "localhost", "/echo").sendBuffer(Buffer.buffer("# Hello"), context.asyncAssertSuccess(response -> {
+            context.assertEquals(200, response.statusCode());
+            context.assertEquals("# Hello", response.bodyAsString());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void large_bodies_are_spilled_then_cleaned_up(TestContext context) {
+        Async async = context.async();
+        String markdown = repeat("Lorem ipsum dolor sit amet, é à ü. ", 1000);
+
+        webClient.put(PORT, "localhost", "/echo").sendBuffer(Buffer.buffer(markdown), context.asyncAssertSuccess(response -> {
+            context.assertEquals(200, response.statusCode());
+            context.assertEquals(markdown, response.bodyAsString());
+            vertx.setTimer(200, id -> {
+                context.assertEquals(0, uploads.list().length);
+                async.complete();
+            });
+        }));
+    }
+
+    @Test
+    public void oversized_bodies_are_rejected(TestContext context) {
+        Async async = context.async();
+        String markdown = repeat("x", 65 * 1024);
+
+        webClient.put(PORT, "localhost", "/echo").sendBuffer(Buffer.buffer(markdown), ar -> {
+            if (ar.succeeded()) {
+                context.assertEquals(413, ar.result().statusCode());
+            }
+            // the server may also close the connection before the client finished sending
+            async.complete();
+        });
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
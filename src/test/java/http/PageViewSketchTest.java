@@ -0,0 +1,71 @@
+package http;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.guides.wiki.http.PageViewSketch;
+import io.vertx.guides.wiki.http.RenderedPageCache;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PageViewSketchTest {
+
+    @Test
+    public void hottest_pages_come_first() {
+        PageViewSketch sketch = new PageViewSketch(1024, 3, 60_000);
+        for (int i = 0; i < 1000; i++) {
+            sketch.record("Cold " + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            sketch.record("Home");
+            if (i % 2 == 0) {
+                sketch.record("News");
+            }
+        }
+
+        JsonArray hottest = sketch.hottest(2);
+        assertEquals(2, hottest.size());
+        assertEquals("Home", hottest.getJsonObject(0).getString("name"));
+        assertEquals("News", hottest.getJsonObject(1).getString("name"));
+        // estimates never undercount
+        assertTrue(hottest.getJsonObject(0).getLong("views") >= 50);
+        assertTrue(sketch.frequency("News") >= 25);
+    }
+
+    @Test
+    public void counts_decay_over_time() throws InterruptedException {
+        PageViewSketch sketch = new PageViewSketch(1024, 10, 1);
+        for (int i = 0; i < 64; i++) {
+            sketch.record("Home");
+        }
+        Thread.sleep(5);
+
+        JsonArray hottest = sketch.hottest(1);
+        assertTrue(hottest.getJsonObject(0).getLong("views") < 64);
+    }
+
+    @Test
+    public void cache_admits_pages_viewed_more_often_than_its_victim() {
+        PageViewSketch sketch = new PageViewSketch(1024, 10, 60_000);
+        RenderedPageCache cache = new RenderedPageCache().setMaxEntries(1).setPopularity(sketch);
+
+        for (int i = 0; i < 5; i++) {
+            sketch.record("Home");
+        }
+        cache.put("Home", "# Home", "<h1>Home</h1>");
+
+        sketch.record("Rare");
+        cache.put("Rare", "# Rare", "<h1>Rare</h1>");
+        assertNotNull(cache.get("Home", "# Home"));
+        assertNull(cache.get("Rare", "# Rare"));
+
+        for (int i = 0; i < 10; i++) {
+            sketch.record("Popular");
+        }
+        cache.put("Popular", "# Popular", "<h1>Popular</h1>");
+        assertNull(cache.get("Home", "# Home"));
+        assertNotNull(cache.get("Popular", "# Popular"));
+    }
+}
@@ -0,0 +1,80 @@
+package http;
+
+import io.vertx.guides.wiki.http.RateLimiter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private RateLimiter limiter;
+
+    @Before
+    public void prepare() {
+        limiter = new RateLimiter(64, now::get)
+                .configure(RateLimiter.RouteClass.WRITE, 60, 3)
+                .configure(RateLimiter.RouteClass.BACKUP, 1, 1);
+    }
+
+    @Test
+    public void burst_then_refill() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.1"));
+        }
+        assertTrue(limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.1") > 0);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.1"));
+        assertTrue(limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.1") > 0);
+    }
+
+    @Test
+    public void budgets_are_per_client_and_per_class() {
+        assertEquals(0, limiter.tryAcquire(RateLimiter.RouteClass.BACKUP, "10.0.0.1"));
+        assertTrue(limiter.tryAcquire(RateLimiter.RouteClass.BACKUP, "10.0.0.1") > 0);
+
+        assertEquals(0, limiter.tryAcquire(RateLimiter.RouteClass.BACKUP, "10.0.0.2"));
+        assertEquals(0, limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.1"));
+    }
+
+    @Test
+    public void idle_buckets_are_evicted() {
+        for (int i = 0; i < 32; i++) {
+            limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.1." + i);
+        }
+        assertTrue(limiter.size() > 0);
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        limiter.evictIdle();
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    public void memory_stays_bounded() {
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.1." + (i / 256) + "." + (i % 256));
+        }
+        assertTrue(limiter.size() <= 64);
+    }
+
+    @Test
+    public void a_flood_of_new_clients_does_not_share_or_reset_budgets() {
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.1");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.1." + (i / 256) + "." + (i % 256));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.2"));
+        }
+        assertTrue(limiter.tryAcquire(RateLimiter.RouteClass.WRITE, "10.0.0.1") > 0);
+    }
+}
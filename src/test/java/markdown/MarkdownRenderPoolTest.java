@@ -0,0 +1,91 @@
+package markdown;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.guides.wiki.markdown.MarkdownRenderPool;
+import io.vertx.guides.wiki.markdown.MarkdownRenderer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(VertxUnitRunner.class)
+public class MarkdownRenderPoolTest {
+
+    private static final String SMALL_PAGE = "# Small page\n\nSome *markdown* and a [[Wiki link]].\n";
+    private static final int LARGE_PAGES = 8;
+
+    private Vertx vertx;
+    private MarkdownRenderPool pool;
+
+    @Before
+    public void prepare() {
+        vertx = Vertx.vertx();
+        pool = new MarkdownRenderPool(vertx, 16 * 1024, 2);
+    }
+
+    @After
+    public void finish(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void small_pages_are_rendered_inline(TestContext context) {
+        Async async = context.async();
+
+        vertx.runOnContext(v -> pool.render(SMALL_PAGE, context.asyncAssertSuccess(html -> {
+            context.assertEquals(MarkdownRenderer.render(SMALL_PAGE), html);
+            JsonObject metrics = pool.metrics();
+            context.assertEquals(1L, metrics.getJsonObject("inline").getLong("count"));
+            context.assertEquals(0L, metrics.getJsonObject("offloaded").getLong("count"));
+            async.complete();
+        })));
+    }
+
+    @Test
+    public void small_pages_render_inline_while_large_pages_are_offloaded(TestContext context) {
+        Async async = context.async();
+        String largePage = largePage(1024 * 1024);
+
+        vertx.runOnContext(v -> {
+            AtomicInteger remaining = new AtomicInteger(LARGE_PAGES);
+            for (int i = 0; i < LARGE_PAGES; i++) {
+                pool.render(largePage, context.asyncAssertSuccess(html -> {
+                    context.assertTrue(Vertx.currentContext().isEventLoopContext());
+                    if (remaining.decrementAndGet() == 0) {
+                        JsonObject metrics = pool.metrics();
+                        context.assertEquals((long) LARGE_PAGES, metrics.getJsonObject("offloaded").getLong("count"));
+                        context.assertEquals(1L, metrics.getJsonObject("inline").getLong("count"));
+                        context.assertTrue(metrics.getInteger("maxQueueDepth") > 2);
+                        context.assertEquals(0, metrics.getInteger("queueDepth"));
+                        async.complete();
+                    }
+                }));
+            }
+
+            // the pool has two threads for the large pages, so most of them are still queued: the small page does not
+            // wait behind them, it is rendered before render returns
+            context.assertTrue(pool.metrics().getInteger("queueDepth") > 0);
+            AtomicBoolean rendered = new AtomicBoolean();
+            pool.render(SMALL_PAGE, context.asyncAssertSuccess(html -> rendered.set(true)));
+            context.assertTrue(rendered.get());
+            context.assertTrue(remaining.get() > 0);
+        });
+    }
+
+    private static String largePage(int size) {
+        String section = "## Section\n\nSome *emphasis*, some `code`, a [link](/wiki/Home) and a [[Wiki link]].\n\n"
+                + "- one\n- two\n- three\n\n";
+        StringBuilder builder = new StringBuilder(size + section.length());
+        while (builder.length() < size) {
+            builder.append(section);
+        }
+        return builder.toString();
+    }
+}